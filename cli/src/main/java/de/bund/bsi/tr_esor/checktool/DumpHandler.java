@@ -15,6 +15,7 @@ import de.bund.bsi.tr_esor.checktool.out.XaipObjectWriter;
 import de.bund.bsi.tr_esor.checktool.validation.signatures.DetachedSignatureValidationContextBuilder;
 import de.bund.bsi.tr_esor.checktool.xml.ComprehensiveXaipSerializer;
 import de.bund.bsi.tr_esor.checktool.xml.LXaipReader;
+import de.bund.bsi.tr_esor.checktool.xml.XaipSerializer;
 import de.bund.bsi.tr_esor.checktool.xml.XmlHelper;
 import de.bund.bsi.tr_esor.xaip.PackageHeaderType;
 import de.bund.bsi.tr_esor.xaip.XAIPType;
@@ -43,6 +44,19 @@ public class DumpHandler
         this.outputFolder = outputFolder;
     }
 
+    /**
+     * Writes the content of the XAIP (if present) and the verification report to the output folder.
+     */
+    public void dump(VerificationReportType report, XAIPType xaip, XaipSerializer serializer, LXaipReader lXaipReader, String profile)
+        throws IOException, JAXBException
+    {
+        if (xaip != null && serializer != null)
+        {
+            dumpXaip(xaip, (ComprehensiveXaipSerializer)serializer, lXaipReader, profile);
+        }
+        dumpReport(report);
+    }
+
     /**
      * Extracts data from XAIP and writes them to the output folder.
      */
@@ -25,32 +25,50 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.bund.bsi.tr_esor.checktool.batch.ArchiveInput;
+import de.bund.bsi.tr_esor.checktool.batch.BatchInput;
+import de.bund.bsi.tr_esor.checktool.batch.BatchJournal;
+import de.bund.bsi.tr_esor.checktool.batch.BatchRunner;
+import de.bund.bsi.tr_esor.checktool.batch.FolderWatcher;
+import de.bund.bsi.tr_esor.checktool.batch.Warmup;
+import de.bund.bsi.tr_esor.checktool.batch.Worker;
+import de.bund.bsi.tr_esor.checktool.batch.WorkerPool;
 import de.bund.bsi.tr_esor.checktool.conf.Configurator;
 import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+import de.bund.bsi.tr_esor.checktool.conf.StartupInitializer;
 import de.bund.bsi.tr_esor.checktool.entry.FileParameterFinder;
 import de.bund.bsi.tr_esor.checktool.entry.InputPreparator;
-import de.bund.bsi.tr_esor.checktool.entry.ParameterFinder;
 import de.bund.bsi.tr_esor.checktool.entry.S4VerifyOnly;
 import de.bund.bsi.tr_esor.checktool.out.OutputFolder;
+import de.bund.bsi.tr_esor.checktool.out.SummaryWriter;
+import de.bund.bsi.tr_esor.checktool.server.S4Server;
 import de.bund.bsi.tr_esor.checktool.validation.ValidationScheduler;
-import de.bund.bsi.tr_esor.checktool.xml.ComprehensiveXaipSerializer;
 import de.bund.bsi.tr_esor.checktool.xml.LXaipReader;
+import de.bund.bsi.tr_esor.checktool.xml.VRCreator;
 import de.bund.bsi.tr_esor.checktool.xml.XaipSerializer;
 import de.bund.bsi.tr_esor.checktool.xml.XmlHelper;
 import de.bund.bsi.tr_esor.xaip.XAIPType;
 
 import jakarta.xml.bind.JAXBException;
-import jakarta.xml.ws.Endpoint;
 import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.VerificationReportType;
 
 
@@ -66,6 +84,42 @@ public final class Main
 
     private static final String PROFILE_NAME = "profile";
 
+    private static final String THREADS = "threads";
+
+    private static final String JOURNAL = "journal";
+
+    private static final String JOURNAL_TRUST_MTIME = "journal-trust-mtime";
+
+    private static final String SUMMARY = "summary";
+
+    private static final String OUT = "out";
+
+    private static final String DIGESTS = "digests";
+
+    private static final String SERVICE_PATH = "/ErVerifyTool/esor13/exec";
+
+    private static final String QUEUE = "queue";
+
+    private static final String MAX_CONCURRENT = "max-concurrent";
+
+    private static final String WARMUP = "warmup";
+
+    private static final String DUMP_CDS = "dump-cds";
+
+    private static final String WORKERS = "workers";
+
+    private static final String WORKER = "worker";
+
+    private static final String WORKER_HEAP = "worker-heap";
+
+    private static final String LARGE_INPUT = "large-input";
+
+    private static final String ITEM_TIMEOUT = "item-timeout";
+
+    private static final Pattern HEAP_SIZE = Pattern.compile("[0-9]+[kKmMgG]?");
+
+    private static final long WATCH_SETTLE_MILLIS = 2000L;
+
     private static final Logger LOG = LoggerFactory.getLogger(Main.class);
 
     static PrintStream out = System.out;
@@ -95,17 +149,43 @@ public final class Main
                 {
                     return;
                 }
+                StartupInitializer.initializeInBackground();
                 if (cmd.hasOption("server"))
                 {
-                    runServer(cmd.getOptionValue("host", "localhost"), cmd.getOptionValue("port", "9999"));
+                    runServer(cmd);
                     return;
                 }
                 var profile =
                     cmd.hasOption(PROFILE_NAME) ? cmd.getOptionValue(PROFILE_NAME) : Configurator.getInstance().getDefaultProfileName();
                 checkGivenProfile(profile);
+                if (cmd.hasOption(WORKER))
+                {
+                    runWorker(cmd);
+                    return;
+                }
+                if (cmd.hasOption(WARMUP))
+                {
+                    runWarmup(cmd, profile);
+                    return;
+                }
+                if (cmd.hasOption("watch"))
+                {
+                    runWatch(cmd, profile);
+                    return;
+                }
+                if (cmd.hasOption("batch"))
+                {
+                    runBatch(cmd, profile);
+                    return;
+                }
                 if (cmd.hasOption("data") || cmd.hasOption("er"))
                 {
-                    runValidation(cmd.getOptionValue("data"), cmd.getOptionValue("er"), cmd.getOptionValue("out"), profile);
+                    runValidation(Optional.ofNullable(cmd.getOptionValues("data")).map(Arrays::asList).orElse(List.of()),
+                        cmd.getOptionValue("er"),
+                        cmd.getOptionValue(DIGESTS),
+                        cmd.getOptionValue(OUT),
+                        parseSummaryFormat(cmd.getOptionValue(SUMMARY)),
+                        profile);
                     return;
                 }
             }
@@ -162,7 +242,10 @@ public final class Main
     private static Options getCliOptions()
     {
         var options = new Options();
-        options.addOption("server", false, "start as web service (optional, ignores all other parameters except -conf and -port)");
+        options.addOption("server",
+            false,
+            "start as web service (optional, ignores all other parameters except -conf, -host, -port, -threads, -queue and "
+                + "-max-concurrent)");
         options.addOption("port", true, "listen port for server mode, defaults to 9999");
         options.addOption("host", true, "hostname for the server mode, default is localhost");
         options.addOption("conf", true, "path to the configuration file");
@@ -173,8 +256,72 @@ public final class Main
         options.addOption("data",
             true,
             "path to the file containing the secured data (optional if parameter -er is specified), "
-                + "if omitted, the ER will be validated in itself but result will be indetermined at best.");
-        options.addOption("out", true, "path to the output folder (optional, default is standard out)");
+                + "if omitted, the ER will be validated in itself but result will be indetermined at best. A directory or several files "
+                + "given by repeating -data are treated as group of binary documents protected by the detached ER given by -er.");
+        options.addOption(DIGESTS,
+            true,
+            "path to a manifest of precomputed digests of documents protected by the detached ER given by -er (optional), "
+                + "each line has the form reference;algorithm;value with algorithm OID or URI and hex encoded value");
+        options.addOption(OUT, true, "path to the output folder (optional, default is standard out)");
+        options.addOption(SUMMARY,
+            true,
+            "additionally write one summary record per validated object in format ndjson or csv (optional), records are written to "
+                + "the file summary.ndjson or summary.csv in the output folder or to standard out instead of the verification report");
+        options.addOption("batch",
+            true,
+            "path to a directory, zip or tar archive or manifest file listing many inputs to verify within one run, requires -out, "
+                + "manifest lines have the form data;er;profile, archives are read as stream without extracting them");
+        options.addOption(Option.builder("watch")
+            .hasArgs()
+            .valueSeparator(',')
+            .desc("comma separated list of spool directories to watch, each new file is verified, requires -out, "
+                  + "processed files are moved to the sub folders " + FolderWatcher.DONE + " and " + FolderWatcher.FAILED)
+            .build());
+        options.addOption(THREADS,
+            true,
+            "number of worker threads for batch, watch and server mode (optional, default is number of processors)");
+        options.addOption(QUEUE,
+            true,
+            "maximum number of requests waiting for a worker thread in server mode (optional, default is four times the number of "
+                + "threads), further requests are rejected with HTTP status 503");
+        options.addOption(MAX_CONCURRENT,
+            true,
+            "maximum number of verify requests processed at the same time in server mode (optional, default is the number of threads), "
+                + "further requests are rejected with HTTP status 503");
+        options.addOption(JOURNAL,
+            true,
+            "path to a journal file for batch mode (optional), items journaled by an earlier run with unchanged input are skipped, "
+                + "input files are hashed to detect changes");
+        options.addOption(JOURNAL_TRUST_MTIME,
+            false,
+            "consider journaled input files with unchanged size and modification time unchanged without hashing them (optional), "
+                + "faster but does not detect content changed without changing these attributes");
+        options.addOption(WORKERS,
+            true,
+            "number of worker JVMs for batch mode (optional), each item is verified in a separate JVM with small heap, inputs larger "
+                + "than -large-input go to an additional worker with large heap, not supported for archives and -summary");
+        options.addOption(Option.builder(WORKER_HEAP)
+            .hasArgs()
+            .valueSeparator(',')
+            .desc("maximum heap of the small and the large worker JVMs separated by comma (optional, default is 1g,8g)")
+            .build());
+        options.addOption(LARGE_INPUT,
+            true,
+            "size in MB from which on data and ER of an item are verified by the large heap worker (optional, default is "
+                + WorkerPool.DEFAULT_LARGE_INPUT / (1024 * 1024) + ")");
+        options.addOption(ITEM_TIMEOUT,
+            true,
+            "time budget in seconds for one item in a worker JVM (optional, default is " + WorkerPool.DEFAULT_ITEM_TIMEOUT
+                + "), a worker exceeding it is restarted and the item fails");
+        options.addOption(WORKER, false, "internal: serve items of a supervising batch run on standard in and out");
+        options.addOption(WARMUP,
+            true,
+            "path to a directory or manifest file with representative inputs, verifies them without writing reports and prints the "
+                + "elapsed time");
+        options.addOption(DUMP_CDS,
+            true,
+            "path to a class data sharing archive to create by running -warmup in a new JVM (requires Java 13 or later), "
+                + "start later runs with java -XX:SharedArchiveFile=<archive> for faster start up");
         options.addOption("h", false, "print this message and exit");
         return options;
     }
@@ -182,26 +329,49 @@ public final class Main
     /**
      * Runs ER validation as configured.
      *
-     * @param data path to data file (optional if er is a CMS embedded signature)
+     * @param data paths to data file or files or directory (may be empty if er is a CMS embedded signature)
      * @param er path to ER file (optional if data is XAIP with embedded ER(s))
+     * @param digests path to manifest of precomputed document digests (optional)
      * @param destination path to output file (application uses {@link System#out} if missing)
+     * @param summaryFormat format of summary records (optional)
      * @param profile name of the profile to use for verification (optional, defaults to configured value)
      */
-    private static void runValidation(String data, String er, String destination, String profile)
+    private static void runValidation(List<String> data, String er, String digests, String destination,
+        SummaryWriter.Format summaryFormat, String profile)
     {
         try
         {
-            ParameterFinder params = new FileParameterFinder(Optional.ofNullable(data).map(Paths::get).orElse(null),
+            var params = new FileParameterFinder(data.stream().map(Paths::get).collect(Collectors.toList()),
                 Optional.ofNullable(er).map(Paths::get).orElse(null),
                 profile);
+            if (digests != null)
+            {
+                params.addDocumentDigests(Paths.get(digests));
+            }
             var prep = new InputPreparator(params);
-            var report = ValidationScheduler.validate(prep.getValidations());
+            var parts = ValidationScheduler.validateToReportParts(prep.getValidations());
+            var input = data.isEmpty() ? er : String.join(",", data);
             if (destination == null)
             {
-                XmlHelper.serialize(report, out);
+                if (summaryFormat == null)
+                {
+                    XmlHelper.serialize(VRCreator.createReport(parts, params.getReturnVerificationReport()), out);
+                }
+                else
+                {
+                    new SummaryWriter(out, summaryFormat).write(input, params.getXaip(), parts);
+                }
             }
             else
             {
+                try (var summary = openSummary(Paths.get(destination), summaryFormat))
+                {
+                    if (summary != null)
+                    {
+                        summary.write(input, params.getXaip(), parts);
+                    }
+                }
+                var report = VRCreator.createReport(parts, params.getReturnVerificationReport());
                 var lXaipReader = new LXaipReader(Configurator.getInstance().getLXaipDataDirectory(profile));
                 dump(destination, report, params.getXaip(), params.getSerializer(), lXaipReader, profile);
             }
@@ -214,27 +384,275 @@ public final class Main
         }
     }
 
-    private static void dump(String destination, VerificationReportType report, XAIPType xaip, XaipSerializer serializer,
-        LXaipReader lXaipReader, String profile) throws IOException, JAXBException
+    /**
+     * Runs ER validation for all items of a batch as specified by the parameters -batch, -out, -threads, -journal and -summary.
+     *
+     * @param cmd parsed command line
+     * @param profile name of the profile to use where the item does not specify one
+     */
+    private static void runBatch(CommandLine cmd, String profile) throws ParseException
+    {
+        if (!cmd.hasOption(OUT))
+        {
+            throw new ParseException("batch mode requires parameter -out");
+        }
+        var destination = Paths.get(cmd.getOptionValue(OUT));
+        var numberThreads = parseThreads(cmd.getOptionValue(THREADS));
+        var summaryFormat = parseSummaryFormat(cmd.getOptionValue(SUMMARY));
+        var journal = cmd.getOptionValue(JOURNAL);
+        var source = Paths.get(cmd.getOptionValue("batch"));
+        var archive = ArchiveInput.isArchive(source) && Files.isRegularFile(source);
+        if (archive && journal != null)
+        {
+            throw new ParseException("parameter -journal is not supported for archives");
+        }
+        if (journal == null && cmd.hasOption(JOURNAL_TRUST_MTIME))
+        {
+            throw new ParseException("parameter -" + JOURNAL_TRUST_MTIME + " requires parameter -journal");
+        }
+        var pool = createWorkerPool(cmd, destination);
+        if (pool != null && (archive || summaryFormat != null))
+        {
+            throw new ParseException("parameter -workers is not supported for archives and together with -summary");
+        }
+        try (var workers = pool;
+            var batchJournal = journal == null ? null : new BatchJournal(Paths.get(journal), cmd.hasOption(JOURNAL_TRUST_MTIME));
+            var summary = openSummary(destination, summaryFormat))
+        {
+            var runner = new BatchRunner(destination, pool == null ? numberThreads : pool.getCapacity()).withJournal(batchJournal)
+                .withSummary(summary)
+                .withWorkers(workers);
+            var result = archive ? runner.run(new ArchiveInput(source, profile)) : runner.run(BatchInput.read(source, profile));
+            result.print(out);
+            Files.createDirectories(destination);
+            try (var summaryText = new PrintStream(Files.newOutputStream(destination.resolve("batch_summary.txt")),
+                true,
+                StandardCharsets.UTF_8))
+            {
+                result.print(summaryText);
+            }
+        }
+        catch (IOException e)
+        {
+            err.println(e.getMessage());
+            LOG.error("cannot run batch", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            err.println("batch run interrupted");
+        }
+    }
+
+    /**
+     * Watches spool directories and verifies incoming files until the process is terminated, as specified by the parameters -watch, -out,
+     * -threads and -summary.
+     *
+     * @param cmd parsed command line
+     * @param profile name of the profile to use
+     */
+    private static void runWatch(CommandLine cmd, String profile) throws ParseException
+    {
+        if (!cmd.hasOption(OUT))
+        {
+            throw new ParseException("watch mode requires parameter -out");
+        }
+        var destination = Paths.get(cmd.getOptionValue(OUT));
+        var numberThreads = parseThreads(cmd.getOptionValue(THREADS));
+        var summaryFormat = parseSummaryFormat(cmd.getOptionValue(SUMMARY));
+        var paths = Arrays.stream(cmd.getOptionValues("watch")).map(Paths::get).collect(Collectors.toList());
+        try (var summary = openSummary(destination, summaryFormat);
+            var watcher = new FolderWatcher(paths, destination, numberThreads, profile, WATCH_SETTLE_MILLIS).withSummary(summary))
+        {
+            out.println("Watching " + paths + " for input files");
+            watcher.run();
+        }
+        catch (IOException e)
+        {
+            err.println(e.getMessage());
+            LOG.error("cannot watch spool directories", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            err.println("watching interrupted");
+        }
+    }
+
+    /**
+     * Creates the pool of worker JVMs as specified by the parameters -workers, -worker-heap, -large-input and -item-timeout, returns null
+     * if no workers are requested.
+     */
+    private static WorkerPool createWorkerPool(CommandLine cmd, Path destination) throws ParseException
+    {
+        if (!cmd.hasOption(WORKERS))
+        {
+            return null;
+        }
+        var heaps = Optional.ofNullable(cmd.getOptionValues(WORKER_HEAP)).orElse(new String[]{"1g", "8g"});
+        if (heaps.length != 2 || !HEAP_SIZE.matcher(heaps[0]).matches() || !HEAP_SIZE.matcher(heaps[1]).matches())
+        {
+            throw new ParseException("parameter -" + WORKER_HEAP + " requires two heap sizes, for instance 1g,8g");
+        }
+        var pool = new WorkerPool(Paths.get(cmd.getOptionValue("conf")),
+            destination,
+            parsePositive(cmd.getOptionValue(WORKERS), WORKERS),
+            heaps[0],
+            heaps[1]);
+        if (cmd.hasOption(LARGE_INPUT))
+        {
+            pool.withLargeInput(parsePositive(cmd.getOptionValue(LARGE_INPUT), LARGE_INPUT) * 1024L * 1024L);
+        }
+        if (cmd.hasOption(ITEM_TIMEOUT))
+        {
+            pool.withItemTimeout(parsePositive(cmd.getOptionValue(ITEM_TIMEOUT), ITEM_TIMEOUT));
+        }
+        return pool;
+    }
+
+    /**
+     * Serves items of a supervising batch run, see {@link WorkerPool}. Standard out is reserved for the results, any other output goes to
+     * standard error.
+     *
+     * @param cmd parsed command line
+     */
+    private static void runWorker(CommandLine cmd) throws ParseException
+    {
+        if (!cmd.hasOption(OUT))
+        {
+            throw new ParseException("worker mode requires parameter -out");
+        }
+        var results = System.out;
+        System.setOut(System.err);
+        try
+        {
+            new Worker(Paths.get(cmd.getOptionValue(OUT))).serve(System.in, results);
+        }
+        catch (IOException e)
+        {
+            err.println(e.getMessage());
+            LOG.error("worker failed", e);
+        }
+    }
+
+    /**
+     * Verifies representative inputs as specified by the parameters -warmup and -dump-cds.
+     *
+     * @param cmd parsed command line
+     * @param profile name of the profile to use where the item does not specify one
+     */
+    private static void runWarmup(CommandLine cmd, String profile)
+    {
+        try
+        {
+            if (cmd.hasOption(DUMP_CDS))
+            {
+                var archive = Paths.get(cmd.getOptionValue(DUMP_CDS));
+                var exitCode = Warmup.dumpCds(archive, cmd.getOptionValue("conf"), profile, cmd.getOptionValue(WARMUP));
+                if (exitCode == 0)
+                {
+                    out.println("CDS archive written to " + archive + ", use it with java -XX:SharedArchiveFile=" + archive);
+                }
+                else
+                {
+                    err.println("creating CDS archive failed with exit code " + exitCode);
+                }
+                return;
+            }
+            var items = BatchInput.read(Paths.get(cmd.getOptionValue(WARMUP)), profile);
+            var millis = new Warmup(items).run();
+            out.println("warmup of " + items.size() + " items took " + millis + " ms");
+        }
+        catch (IOException e)
+        {
+            err.println(e.getMessage());
+            LOG.error("cannot run warmup", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            err.println("warmup interrupted");
+        }
+    }
+
+    private static SummaryWriter.Format parseSummaryFormat(String format) throws ParseException
+    {
+        try
+        {
+            return format == null ? null : SummaryWriter.Format.fromString(format);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new ParseException("unsupported summary format " + format + ", supported values are ndjson and csv");
+        }
+    }
+
+    /**
+     * Opens the summary file within the output folder, returns null if no summary is requested.
+     */
+    private static SummaryWriter openSummary(Path destination, SummaryWriter.Format format) throws IOException
+    {
+        if (format == null)
+        {
+            return null;
+        }
+        Files.createDirectories(destination);
+        return new SummaryWriter(Files.newOutputStream(destination.resolve(SUMMARY + "." + format.getExtension())), format);
+    }
+
+    private static int parseThreads(String threads) throws ParseException
+    {
+        return threads == null ? Runtime.getRuntime().availableProcessors() : parsePositive(threads, THREADS);
+    }
+
+    private static int parsePositive(String value, String name) throws ParseException
     {
-        var outputFolder = new OutputFolder(Paths.get(destination));
-        var dumpHandler = new DumpHandler(outputFolder);
-        if (xaip != null && serializer != null)
+        try
         {
-            dumpHandler.dumpXaip(xaip, (ComprehensiveXaipSerializer)serializer, lXaipReader, profile);
+            var result = Integer.parseInt(value);
+            if (result > 0)
+            {
+                return result;
+            }
         }
-        dumpHandler.dumpReport(report);
+        catch (NumberFormatException e)
+        {
+            LOG.debug("invalid value of " + name, e);
+        }
+        throw new ParseException("value of parameter -" + name + " must be a positive integer");
+    }
+
+    private static void dump(String destination, VerificationReportType report, XAIPType xaip, XaipSerializer serializer,
+        LXaipReader lXaipReader, String profile) throws IOException, JAXBException
+    {
+        new DumpHandler(new OutputFolder(Paths.get(destination))).dump(report, xaip, serializer, lXaipReader, profile);
     }
 
 
     /**
-     * Runs the web service.
+     * Runs the web service as specified by the parameters -host, -port, -threads, -queue and -max-concurrent.
+     *
+     * @param cmd parsed command line
      */
-    private static void runServer(String host, String port)
+    private static void runServer(CommandLine cmd) throws ParseException
     {
-        var address = "http://" + host + ":" + port + "/ErVerifyTool/esor13/exec";
+        var host = cmd.getOptionValue("host", "localhost");
+        var port = parsePositive(cmd.getOptionValue("port", "9999"), "port");
+        var numberThreads = parseThreads(cmd.getOptionValue(THREADS));
+        var queue = cmd.hasOption(QUEUE) ? parsePositive(cmd.getOptionValue(QUEUE), QUEUE) : 4 * numberThreads;
+        var maxConcurrent = cmd.hasOption(MAX_CONCURRENT) ? parsePositive(cmd.getOptionValue(MAX_CONCURRENT), MAX_CONCURRENT)
+            : numberThreads;
+        var address = "http://" + host + ":" + port + SERVICE_PATH;
         out.println("Running S4 webservice on address " + address);
-        Endpoint.publish(address, new S4VerifyOnly());
+        try
+        {
+            new S4Server(numberThreads, queue, maxConcurrent).publish(host, port, SERVICE_PATH, new S4VerifyOnly());
+        }
+        catch (IOException e)
+        {
+            err.println("cannot start web service: " + e.getMessage());
+            LOG.error("cannot start web service", e);
+        }
     }
 
 }
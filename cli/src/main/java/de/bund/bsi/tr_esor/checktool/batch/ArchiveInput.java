@@ -0,0 +1,197 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.bund.bsi.tr_esor.checktool.entry.ParameterFinder;
+import de.bund.bsi.tr_esor.checktool.entry.StreamParameterFinder;
+
+
+/**
+ * Reads the items of a batch run from a zip or tar archive without extracting it. Each entry is read exactly once and parsed while
+ * streaming. Detached evidence records are paired with their data by the same naming convention as in a directory (see
+ * {@link BatchInput}). An entry waits in memory until its counterpart is found or the archive ends, entries without counterpart are
+ * verified alone at the end.
+ *
+ * @author TT
+ */
+public class ArchiveInput
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveInput.class);
+
+    private final Path archive;
+
+    private final String profile;
+
+    /**
+     * Creates an instance.
+     *
+     * @param archive zip, tar, tar.gz or tgz file
+     * @param profile name of the profile to use for all items
+     */
+    public ArchiveInput(Path archive, String profile)
+    {
+        this.archive = archive;
+        this.profile = profile;
+    }
+
+    /**
+     * Returns true if the given file is an archive supported by this class.
+     */
+    public static boolean isArchive(Path file)
+    {
+        return ArchiveReader.isArchive(file);
+    }
+
+    /**
+     * Handles a complete item.
+     */
+    @FunctionalInterface
+    interface ItemHandler
+    {
+
+        /**
+         * Called for each item as soon as all its entries have been read.
+         */
+        void handle(BatchItem item, ParameterFinder params) throws IOException;
+    }
+
+    /**
+     * Reads the archive and passes each item to the handler.
+     */
+    void read(ItemHandler handler) throws IOException
+    {
+        Map<String, Entry> pendingErs = new LinkedHashMap<>();
+        Map<String, Entry> pendingData = new LinkedHashMap<>();
+        Set<Entry> unpairedData = new LinkedHashSet<>();
+        try (var reader = ArchiveReader.open(archive))
+        {
+            for (var name = reader.nextEntry(); name != null; name = reader.nextEntry())
+            {
+                var path = Paths.get(name);
+                if (isIgnored(path))
+                {
+                    continue;
+                }
+                LOG.debug("parsing archive entry {}", name);
+                var entry = new Entry(name, path, StreamParameterFinder.parse(reader.getEntryStream(), profile));
+                var stem = BatchInput.erStem(path);
+                if (stem == null)
+                {
+                    var er = pendingErs.remove(name);
+                    if (er == null)
+                    {
+                        er = pendingErs.remove(stripExtension(name));
+                    }
+                    if (er == null)
+                    {
+                        pendingData.putIfAbsent(name, entry);
+                        pendingData.putIfAbsent(stripExtension(name), entry);
+                        unpairedData.add(entry);
+                    }
+                    else
+                    {
+                        handle(handler, entry, er);
+                    }
+                }
+                else
+                {
+                    var key = name.substring(0, name.lastIndexOf('/') + 1) + stem;
+                    var data = pendingData.get(key);
+                    if (data == null)
+                    {
+                        pendingErs.put(key, entry);
+                    }
+                    else
+                    {
+                        pendingData.remove(data.name, data);
+                        pendingData.remove(stripExtension(data.name), data);
+                        unpairedData.remove(data);
+                        handle(handler, data, entry);
+                    }
+                }
+            }
+        }
+        for (var data : unpairedData)
+        {
+            handle(handler, data, null);
+        }
+        for (var er : pendingErs.values())
+        {
+            handle(handler, null, er);
+        }
+    }
+
+    private void handle(ItemHandler handler, Entry data, Entry er) throws IOException
+    {
+        var item = new BatchItem(data == null ? null : data.path, er == null ? null : er.path, profile);
+        handler.handle(item,
+            new StreamParameterFinder(data == null ? null : data.path.toString(),
+                data == null ? null : data.parsed,
+                er == null ? null : er.path.toString(),
+                er == null ? null : er.parsed,
+                profile));
+    }
+
+    private static boolean isIgnored(Path path)
+    {
+        var name = path.getFileName().toString();
+        return name.startsWith(".") || name.startsWith("__MACOSX");
+    }
+
+    private static String stripExtension(String name)
+    {
+        var pos = name.lastIndexOf('.');
+        return pos > name.lastIndexOf('/') + 1 ? name.substring(0, pos) : name;
+    }
+
+    /**
+     * Parsed content of an archive entry.
+     */
+    private static final class Entry
+    {
+
+        final String name;
+
+        final Path path;
+
+        final Object parsed;
+
+        Entry(String name, Path path, Object parsed)
+        {
+            this.name = name;
+            this.path = path;
+            this.parsed = parsed;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+
+/**
+ * Iterates the regular files within a zip or tar archive, the latter possibly gzip compressed, as streams without extracting them. Tar
+ * archives in ustar, GNU and POSIX (pax) format are supported as far as file names are concerned.
+ *
+ * @author TT
+ */
+abstract class ArchiveReader implements Closeable
+{
+
+    /**
+     * Returns true if the file name denotes a supported archive format.
+     */
+    static boolean isArchive(Path file)
+    {
+        var name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    /**
+     * Opens an archive.
+     *
+     * @param archive zip or tar file, see {@link #isArchive(Path)}
+     */
+    static ArchiveReader open(Path archive) throws IOException
+    {
+        var name = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+        var ins = new BufferedInputStream(Files.newInputStream(archive));
+        try
+        {
+            if (name.endsWith(".zip"))
+            {
+                return new Zip(new ZipInputStream(ins));
+            }
+            return new Tar(name.endsWith(".tar") ? ins : new GZIPInputStream(ins));
+        }
+        catch (IOException e)
+        {
+            ins.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves to the next regular file and returns its path within the archive or null if there is no further file.
+     */
+    abstract String nextEntry() throws IOException;
+
+    /**
+     * Returns the content of the current file. The stream ends with the file and must not be closed.
+     */
+    abstract InputStream getEntryStream();
+
+    private static final class Zip extends ArchiveReader
+    {
+
+        private final ZipInputStream ins;
+
+        Zip(ZipInputStream ins)
+        {
+            this.ins = ins;
+        }
+
+        @Override
+        String nextEntry() throws IOException
+        {
+            for (var entry = ins.getNextEntry(); entry != null; entry = ins.getNextEntry())
+            {
+                if (!entry.isDirectory())
+                {
+                    return entry.getName();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        InputStream getEntryStream()
+        {
+            return ins;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            ins.close();
+        }
+    }
+
+    private static final class Tar extends ArchiveReader
+    {
+
+        private static final int BLOCK_SIZE = 512;
+
+        private final InputStream ins;
+
+        private final InputStream entryStream = new EntryStream();
+
+        private long remaining;
+
+        private long padding;
+
+        Tar(InputStream ins)
+        {
+            this.ins = ins;
+        }
+
+        @Override
+        String nextEntry() throws IOException
+        {
+            String longName = null;
+            var header = new byte[BLOCK_SIZE];
+            while (true)
+            {
+                skip(remaining + padding);
+                remaining = 0;
+                padding = 0;
+                if (!readBlock(header) || isZero(header))
+                {
+                    return null;
+                }
+                var size = parseSize(header);
+                remaining = size;
+                padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+                var type = header[156];
+                if (type == 'L')
+                {
+                    longName = trimNul(new String(readContent(size), StandardCharsets.UTF_8));
+                }
+                else if (type == 'x')
+                {
+                    longName = parsePaxPath(readContent(size), longName);
+                }
+                else if (type == '0' || type == 0)
+                {
+                    return longName == null ? parseName(header) : longName;
+                }
+                else
+                {
+                    longName = null;
+                }
+            }
+        }
+
+        @Override
+        InputStream getEntryStream()
+        {
+            return entryStream;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            ins.close();
+        }
+
+        private boolean readBlock(byte[] block) throws IOException
+        {
+            var read = ins.readNBytes(block, 0, block.length);
+            if (read == 0)
+            {
+                return false;
+            }
+            if (read < block.length)
+            {
+                throw new EOFException("truncated tar header");
+            }
+            return true;
+        }
+
+        private byte[] readContent(long size) throws IOException
+        {
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("tar header entry too large");
+            }
+            var result = ins.readNBytes((int)size);
+            if (result.length < size)
+            {
+                throw new EOFException("truncated tar entry");
+            }
+            remaining = 0;
+            return result;
+        }
+
+        private void skip(long count) throws IOException
+        {
+            var left = count;
+            while (left > 0)
+            {
+                var skipped = ins.skip(left);
+                if (skipped <= 0)
+                {
+                    if (ins.read() < 0)
+                    {
+                        throw new EOFException("truncated tar entry");
+                    }
+                    skipped = 1;
+                }
+                left -= skipped;
+            }
+        }
+
+        private static boolean isZero(byte[] block)
+        {
+            for (var b : block)
+            {
+                if (b != 0)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long parseSize(byte[] header) throws IOException
+        {
+            if ((header[124] & 0x80) != 0)
+            {
+                // base-256 encoding used for files of 8 GB and more
+                long result = 0;
+                for (var i = 125; i < 136; i++)
+                {
+                    result = (result << 8) | (header[i] & 0xff);
+                }
+                return result;
+            }
+            var value = trimNul(new String(header, 124, 12, StandardCharsets.US_ASCII)).trim();
+            try
+            {
+                return value.isEmpty() ? 0 : Long.parseLong(value, 8);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("invalid size in tar header: " + value, e);
+            }
+        }
+
+        private static String parseName(byte[] header)
+        {
+            var name = trimNul(new String(header, 0, 100, StandardCharsets.UTF_8));
+            if ("ustar".equals(trimNul(new String(header, 257, 6, StandardCharsets.US_ASCII)).trim()))
+            {
+                var prefix = trimNul(new String(header, 345, 155, StandardCharsets.UTF_8));
+                if (!prefix.isEmpty())
+                {
+                    return prefix + "/" + name;
+                }
+            }
+            return name;
+        }
+
+        /**
+         * Returns the path given by a pax extended header, records have the form "length key=value\n".
+         */
+        private static String parsePaxPath(byte[] content, String defaultValue)
+        {
+            for (var record : new String(content, StandardCharsets.UTF_8).split("\n"))
+            {
+                var pos = record.indexOf(" path=");
+                if (pos > 0)
+                {
+                    return record.substring(pos + " path=".length());
+                }
+            }
+            return defaultValue;
+        }
+
+        private static String trimNul(String value)
+        {
+            var pos = value.indexOf('\0');
+            return pos < 0 ? value : value.substring(0, pos);
+        }
+
+        /**
+         * Content of the current entry, ends at the end of the entry.
+         */
+        private final class EntryStream extends InputStream
+        {
+
+            @Override
+            public int read() throws IOException
+            {
+                if (remaining <= 0)
+                {
+                    return -1;
+                }
+                var result = ins.read();
+                if (result < 0)
+                {
+                    throw new EOFException("truncated tar entry");
+                }
+                remaining--;
+                return result;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException
+            {
+                if (remaining <= 0)
+                {
+                    return -1;
+                }
+                var result = ins.read(b, off, (int)Math.min(len, remaining));
+                if (result < 0)
+                {
+                    throw new EOFException("truncated tar entry");
+                }
+                remaining -= result;
+                return result;
+            }
+
+            @Override
+            public void close()
+            {
+                // the archive stream is closed by the reader
+            }
+        }
+    }
+}
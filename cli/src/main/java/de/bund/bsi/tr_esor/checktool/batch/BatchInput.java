@@ -0,0 +1,187 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import de.bund.bsi.tr_esor.checktool.conf.Configurator;
+
+
+/**
+ * Reads the items of a batch run. The input is either
+ * <ul>
+ * <li>a directory: each file is verified, a file named {@code <name>.er.<ext>} or {@code <name>.ers.<ext>} is taken as detached evidence
+ * record for the file {@code <name>} or {@code <name>.<ext>} in the same directory,</li>
+ * <li>a manifest file: each line contains {@code data;er;profile} where each entry may be left empty, relative paths are resolved against
+ * the directory of the manifest. Empty lines and lines starting with # are ignored.</li>
+ * </ul>
+ *
+ * @author TT
+ */
+public final class BatchInput
+{
+
+    private static final Pattern ER_NAME = Pattern.compile("(.+)\\.ers?(\\.[^.]+)?");
+
+    private BatchInput()
+    {
+        // static only
+    }
+
+    /**
+     * Returns the items specified by a directory or manifest file in the order they should be reported.
+     *
+     * @param source directory or manifest file
+     * @param defaultProfile profile to use where no profile is specified
+     */
+    public static List<BatchItem> read(Path source, String defaultProfile) throws IOException
+    {
+        if (Files.isDirectory(source))
+        {
+            return readDirectory(source, defaultProfile);
+        }
+        return readManifest(source, defaultProfile);
+    }
+
+    /**
+     * Pairs the files of a directory by naming convention.
+     */
+    static List<BatchItem> readDirectory(Path dir, String profile) throws IOException
+    {
+        try (var list = Files.list(dir))
+        {
+            return pair(list.filter(Files::isRegularFile)
+                .filter(p -> !p.getFileName().toString().startsWith("."))
+                .sorted()
+                .collect(Collectors.toList()), profile);
+        }
+    }
+
+    /**
+     * Pairs data files and detached evidence records of the same directory by naming convention. Evidence records without data file
+     * become items of their own and come last.
+     *
+     * @param files sorted files of one directory
+     * @param profile profile to use for all items
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    static List<BatchItem> pair(List<Path> files, String profile)
+    {
+        Map<String, Path> ersByStem = new LinkedHashMap<>();
+        List<Path> dataFiles = new ArrayList<>();
+        for (var file : files)
+        {
+            var stem = erStem(file);
+            if (stem == null)
+            {
+                dataFiles.add(file);
+            }
+            else
+            {
+                ersByStem.put(stem, file);
+            }
+        }
+        List<BatchItem> result = new ArrayList<>();
+        for (var data : dataFiles)
+        {
+            var er = ersByStem.remove(data.getFileName().toString());
+            if (er == null)
+            {
+                er = ersByStem.remove(stripExtension(data.getFileName().toString()));
+            }
+            result.add(new BatchItem(data, er, profile));
+        }
+        ersByStem.values().forEach(er -> result.add(new BatchItem(null, er, profile)));
+        return result;
+    }
+
+    /**
+     * Returns the name of the data file (with or without extension) a detached evidence record belongs to or null if the file is not
+     * named like a detached evidence record.
+     */
+    static String erStem(Path file)
+    {
+        var m = ER_NAME.matcher(file.getFileName().toString());
+        return m.matches() ? m.group(1) : null;
+    }
+
+    /**
+     * Returns true if the given file is a data file for evidence records with the given stem.
+     */
+    static boolean isDataFor(Path file, String stem)
+    {
+        var name = file.getFileName().toString();
+        return erStem(file) == null && (name.equals(stem) || stripExtension(name).equals(stem));
+    }
+
+    /**
+     * Reads a manifest file.
+     */
+    static List<BatchItem> readManifest(Path manifest, String defaultProfile) throws IOException
+    {
+        var baseDir = manifest.toAbsolutePath().getParent();
+        List<BatchItem> result = new ArrayList<>();
+        var lineNumber = 0;
+        for (var line : Files.readAllLines(manifest, StandardCharsets.UTF_8))
+        {
+            lineNumber++;
+            if (line.isBlank() || line.trim().startsWith("#"))
+            {
+                continue;
+            }
+            var parts = line.split(";", -1);
+            var data = resolve(baseDir, parts[0]);
+            var er = parts.length > 1 ? resolve(baseDir, parts[1]) : null;
+            var profile = parts.length > 2 && !parts[2].isBlank() ? parts[2].trim() : defaultProfile;
+            if (data == null && er == null)
+            {
+                throw new IOException("manifest line " + lineNumber + " specifies neither data nor evidence record");
+            }
+            if (!Configurator.getInstance().isProfileSupported(profile))
+            {
+                throw new IOException("manifest line " + lineNumber + " specifies unsupported profile " + profile);
+            }
+            result.add(new BatchItem(data, er, profile));
+        }
+        return result;
+    }
+
+    private static Path resolve(Path baseDir, String entry)
+    {
+        return entry.isBlank() ? null : baseDir.resolve(entry.trim());
+    }
+
+    private static String stripExtension(String name)
+    {
+        var pos = name.lastIndexOf('.');
+        return pos > 0 ? name.substring(0, pos) : name;
+    }
+}
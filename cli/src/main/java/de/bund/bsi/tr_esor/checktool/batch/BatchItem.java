@@ -0,0 +1,99 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+
+/**
+ * One unit of work within a batch run: the data, the evidence record and the profile to verify them with. Either data or evidence record
+ * may be missing, exactly as with the single file command line parameters.
+ *
+ * @author TT
+ */
+public class BatchItem
+{
+
+    private final Path data;
+
+    private final Path er;
+
+    private final String profile;
+
+    /**
+     * Creates an instance.
+     *
+     * @param data path to data file, may be null
+     * @param er path to evidence record file, may be null
+     * @param profile name of the profile to verify with
+     */
+    public BatchItem(Path data, Path er, String profile)
+    {
+        if (data == null && er == null)
+        {
+            throw new IllegalArgumentException("at least one of data and evidence record must be given");
+        }
+        this.data = data;
+        this.er = er;
+        this.profile = profile;
+    }
+
+    /**
+     * Path to the data file or null.
+     */
+    public Path getData()
+    {
+        return data;
+    }
+
+    /**
+     * Path to the evidence record file or null.
+     */
+    public Path getEr()
+    {
+        return er;
+    }
+
+    /**
+     * Name of the profile to verify with.
+     */
+    public String getProfile()
+    {
+        return profile;
+    }
+
+    /**
+     * Returns a human readable name of this item for summaries and log messages.
+     */
+    public String getName()
+    {
+        return Optional.ofNullable(data).map(Path::toString).orElse("")
+            + Optional.ofNullable(er).map(e -> (data == null ? "" : " + ") + e).orElse("");
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+}
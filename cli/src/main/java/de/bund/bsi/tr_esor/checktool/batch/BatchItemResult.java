@@ -0,0 +1,190 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import de.bund.bsi.tr_esor.checktool.validation.report.OasisDssResultMajor;
+import de.bund.bsi.tr_esor.checktool.validation.signatures.ECardResultMinor;
+
+import oasis.names.tc.dss._1_0.core.schema.InternationalStringType;
+import oasis.names.tc.dss._1_0.core.schema.Result;
+import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.IndividualReportType;
+import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.VerificationReportType;
+
+
+/**
+ * Overall result of one batch item. The result major is the worst major of all individual reports, the minor is the first minor given
+ * together with that major.
+ *
+ * @author TT
+ */
+public class BatchItemResult
+{
+
+    /**
+     * Result majors ordered from worst to best.
+     */
+    private static final List<OasisDssResultMajor> SEVERITY = List.of(OasisDssResultMajor.REQUESTER_ERROR,
+        OasisDssResultMajor.RESPONDER_ERROR,
+        OasisDssResultMajor.INSUFFICIENT_INFORMATION,
+        OasisDssResultMajor.SUCCESS);
+
+    private final BatchItem item;
+
+    private final OasisDssResultMajor major;
+
+    private final String minor;
+
+    private final String message;
+
+    private final boolean failed;
+
+    private final boolean journaled;
+
+    /**
+     * Creates an instance.
+     */
+    public BatchItemResult(BatchItem item, OasisDssResultMajor major, String minor, String message)
+    {
+        this(item, major, minor, message, false, false);
+    }
+
+    private BatchItemResult(BatchItem item, OasisDssResultMajor major, String minor, String message, boolean failed, boolean journaled)
+    {
+        this.item = item;
+        this.major = major;
+        this.minor = minor;
+        this.message = message;
+        this.failed = failed;
+        this.journaled = journaled;
+    }
+
+    /**
+     * Summarizes a verification report.
+     */
+    public static BatchItemResult of(BatchItem item, VerificationReportType report)
+    {
+        var results = report.getIndividualReport()
+            .stream()
+            .map(IndividualReportType::getResult)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        var worst = results.stream()
+            .map(r -> OasisDssResultMajor.fromURI(r.getResultMajor()))
+            .filter(Objects::nonNull)
+            .min((a, b) -> SEVERITY.indexOf(a) - SEVERITY.indexOf(b))
+            .orElse(OasisDssResultMajor.INSUFFICIENT_INFORMATION);
+        var minor = results.stream()
+            .filter(r -> worst.getUri().equals(r.getResultMajor()))
+            .map(Result::getResultMinor)
+            .filter(Objects::nonNull)
+            .findFirst()
+            .orElse(null);
+        var message = results.stream()
+            .map(Result::getResultMessage)
+            .filter(Objects::nonNull)
+            .map(InternationalStringType::getValue)
+            .collect(Collectors.joining("|"));
+        return new BatchItemResult(item, worst, minor, message);
+    }
+
+    /**
+     * Creates the result for an item which could not be verified at all.
+     */
+    public static BatchItemResult failed(BatchItem item, Exception e)
+    {
+        return new BatchItemResult(item,
+            OasisDssResultMajor.RESPONDER_ERROR,
+            ECardResultMinor.INTERNAL_ERROR,
+            Optional.ofNullable(e.getMessage()).orElse(e.getClass().getName()),
+            true,
+            false);
+    }
+
+    /**
+     * Creates the result for an item which has been verified by an earlier run and is taken from the journal.
+     */
+    static BatchItemResult journaled(BatchItem item, OasisDssResultMajor major, String minor)
+    {
+        return new BatchItemResult(item, major, minor, "", false, true);
+    }
+
+    /**
+     * The verified item.
+     */
+    public BatchItem getItem()
+    {
+        return item;
+    }
+
+    /**
+     * Worst result major of the item.
+     */
+    public OasisDssResultMajor getMajor()
+    {
+        return major;
+    }
+
+    /**
+     * First result minor belonging to the worst major, may be null.
+     */
+    public String getMinor()
+    {
+        return minor;
+    }
+
+    /**
+     * Collected result messages, may be empty.
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Returns true if the item could not be verified at all.
+     */
+    public boolean isFailed()
+    {
+        return failed;
+    }
+
+    /**
+     * Returns true if the result was taken from the journal of an earlier run instead of verifying the item again.
+     */
+    public boolean isJournaled()
+    {
+        return journaled;
+    }
+
+    /**
+     * Returns true if this result is worse than the given major.
+     */
+    boolean isWorseThan(OasisDssResultMajor other)
+    {
+        return SEVERITY.indexOf(major) < SEVERITY.indexOf(other);
+    }
+}
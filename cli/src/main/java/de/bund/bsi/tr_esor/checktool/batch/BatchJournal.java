@@ -0,0 +1,251 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.bund.bsi.tr_esor.checktool.hash.HashCreator;
+import de.bund.bsi.tr_esor.checktool.validation.report.OasisDssResultMajor;
+
+
+/**
+ * Append-only journal of a batch run. Each verified item is recorded in one line together with the digests, sizes and modification
+ * times of its input files and its result. A run using an existing journal takes the result of each journaled item from the journal as
+ * long as the content of its input files has not changed since, so an interrupted run can be restarted without verifying everything
+ * again. By default, each input file is hashed to compare its content. Only if explicitly requested, a file with unchanged size and
+ * modification time is trusted to have unchanged content and is not read.
+ * <p>
+ * Line format (tab separated): data path, data digest, data size, data modification time, ER path, ER digest, ER size, ER modification
+ * time, profile, result major, result minor. Missing values are empty, digests are hex encoded SHA-256 values, modification times are
+ * given in milliseconds since the epoch. Later lines override earlier ones for the same item. Lines which cannot be parsed, for instance
+ * because the previous run died while writing them, are ignored.
+ *
+ * @author TT
+ */
+public class BatchJournal implements Closeable
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchJournal.class);
+
+    private static final String SEPARATOR = "\t";
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final int NUMBER_FIELDS = 11;
+
+    private final Map<String, String[]> entries = new HashMap<>();
+
+    private final Writer writer;
+
+    private final boolean trustModificationTimes;
+
+    /**
+     * Opens the journal, reading all entries written by earlier runs. New entries are appended. Input files are always hashed.
+     *
+     * @param file journal file, is created if missing
+     */
+    public BatchJournal(Path file) throws IOException
+    {
+        this(file, false);
+    }
+
+    /**
+     * Opens the journal, reading all entries written by earlier runs. New entries are appended.
+     *
+     * @param file journal file, is created if missing
+     * @param trustModificationTimes if <code>true</code>, an input file with the size and modification time given in the journal is not
+     *            hashed again but considered unchanged, this saves reading the file but does not detect content changed without
+     *            changing these attributes
+     */
+    public BatchJournal(Path file, boolean trustModificationTimes) throws IOException
+    {
+        this.trustModificationTimes = trustModificationTimes;
+        var needsLineBreak = false;
+        if (Files.exists(file))
+        {
+            try (var lines = Files.lines(file, StandardCharsets.UTF_8))
+            {
+                lines.map(l -> l.split(SEPARATOR, -1))
+                    .filter(f -> f.length == NUMBER_FIELDS)
+                    .forEach(f -> entries.put(key(f[0], f[4], f[8]), f));
+            }
+            needsLineBreak = !endsWithLineBreak(file);
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (needsLineBreak)
+        {
+            writer.write('\n');
+        }
+        LOG.debug("journal {} contains {} items", file, entries.size());
+    }
+
+    /**
+     * Determines digest, size and modification time of the input files of an item. The digest is taken from the journal without reading
+     * the file only if modification times are trusted and size and modification time of the file are unchanged.
+     *
+     * @return array containing digest, size and modification time of data and of ER, entries are empty if the respective file is not
+     *         given
+     */
+    public String[] fingerprint(BatchItem item) throws IOException
+    {
+        var entry = trustModificationTimes ? entries.get(key(item)) : null;
+        var data = fingerprint(item.getData(), entry, 1);
+        var er = fingerprint(item.getEr(), entry, 5);
+        return new String[]{data[0], data[1], data[2], er[0], er[1], er[2]};
+    }
+
+    /**
+     * Returns the journaled result of an item if the item has been verified before with input of identical content.
+     *
+     * @param item item to look up
+     * @param fingerprint current digests, sizes and modification times of the input, see {@link #fingerprint(BatchItem)}
+     */
+    public Optional<BatchItemResult> lookup(BatchItem item, String[] fingerprint)
+    {
+        var entry = entries.get(key(item));
+        if (entry == null || !entry[1].equals(fingerprint[0]) || !entry[5].equals(fingerprint[3]))
+        {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(OasisDssResultMajor.fromURI(entry[9]))
+            .map(major -> BatchItemResult.journaled(item, major, entry[10].isEmpty() ? null : entry[10]));
+    }
+
+    /**
+     * Appends the result of an item to the journal. The entry is flushed immediately so that it survives a crash of the run.
+     *
+     * @param item verified item
+     * @param fingerprint digests, sizes and modification times of the input as determined before the verification
+     * @param result result of the verification
+     */
+    public synchronized void record(BatchItem item, String[] fingerprint, BatchItemResult result) throws IOException
+    {
+        var fields = new String[NUMBER_FIELDS];
+        fields[0] = pathName(item.getData());
+        System.arraycopy(fingerprint, 0, fields, 1, 3);
+        fields[4] = pathName(item.getEr());
+        System.arraycopy(fingerprint, 3, fields, 5, 3);
+        fields[8] = item.getProfile();
+        fields[9] = result.getMajor().getUri();
+        fields[10] = Optional.ofNullable(result.getMinor()).orElse("");
+        writer.write(String.join(SEPARATOR, fields));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        writer.close();
+    }
+
+    private static boolean endsWithLineBreak(Path file) throws IOException
+    {
+        try (var channel = Files.newByteChannel(file))
+        {
+            if (channel.size() == 0)
+            {
+                return true;
+            }
+            var last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private static String key(BatchItem item)
+    {
+        return key(pathName(item.getData()), pathName(item.getEr()), item.getProfile());
+    }
+
+    private static String key(String data, String er, String profile)
+    {
+        return data + SEPARATOR + er + SEPARATOR + profile;
+    }
+
+    private static String pathName(Path path)
+    {
+        return path == null ? "" : path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Returns digest, size and modification time of a file. The attributes are read before the content, so that a file changed while it
+     * is hashed gets a newer modification time than the journaled one.
+     *
+     * @param entry journal entry to take the digest from if size and modification time match, may be <code>null</code>
+     * @param index index of the digest of the file within the entry, size and modification time follow
+     */
+    private static String[] fingerprint(Path path, String[] entry, int index) throws IOException
+    {
+        if (path == null)
+        {
+            return new String[]{"", "", ""};
+        }
+        var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        var size = Long.toString(attributes.size());
+        var modified = Long.toString(attributes.lastModifiedTime().toMillis());
+        if (entry != null && entry[index + 1].equals(size) && entry[index + 2].equals(modified))
+        {
+            return new String[]{entry[index], size, modified};
+        }
+        return new String[]{digest(path), size, modified};
+    }
+
+    private static String digest(Path path) throws IOException
+    {
+        try (var ins = new DigestInputStream(Files.newInputStream(path), MessageDigest.getInstance(DIGEST_ALGORITHM)))
+        {
+            var buffer = new byte[HashCreator.STREAM_BUFFER_SIZE];
+            while (ins.read(buffer) != -1)
+            {
+                // just read
+            }
+            var hex = new StringBuilder();
+            for (var b : ins.getMessageDigest().digest())
+            {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " must be supported by every Java platform", e);
+        }
+    }
+}
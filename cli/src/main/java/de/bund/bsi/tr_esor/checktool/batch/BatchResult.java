@@ -0,0 +1,126 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import de.bund.bsi.tr_esor.checktool.validation.report.OasisDssResultMajor;
+
+
+/**
+ * Aggregated result of a batch run.
+ *
+ * @author TT
+ */
+public class BatchResult
+{
+
+    private final List<BatchItemResult> items = new ArrayList<>();
+
+    private final Map<OasisDssResultMajor, Integer> countByMajor = new EnumMap<>(OasisDssResultMajor.class);
+
+    private OasisDssResultMajor overallMajor = OasisDssResultMajor.SUCCESS;
+
+    private int journaled;
+
+    /**
+     * Adds the result of one item.
+     */
+    public void add(BatchItemResult result)
+    {
+        items.add(result);
+        countByMajor.merge(result.getMajor(), 1, Integer::sum);
+        if (result.isJournaled())
+        {
+            journaled++;
+        }
+        if (result.isWorseThan(overallMajor))
+        {
+            overallMajor = result.getMajor();
+        }
+    }
+
+    /**
+     * Returns the item results in the order of the input.
+     */
+    public List<BatchItemResult> getItems()
+    {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Returns the number of items having the given result major.
+     */
+    public int getCount(OasisDssResultMajor major)
+    {
+        return countByMajor.getOrDefault(major, 0);
+    }
+
+    /**
+     * Returns the number of items whose result was taken from the journal of an earlier run.
+     */
+    public int getJournaledCount()
+    {
+        return journaled;
+    }
+
+    /**
+     * Returns the worst result major of all items, success for an empty batch.
+     */
+    public OasisDssResultMajor getOverallMajor()
+    {
+        return overallMajor;
+    }
+
+    /**
+     * Writes a human readable summary, one line per item followed by the totals.
+     */
+    public void print(PrintStream out)
+    {
+        for (var item : items)
+        {
+            out.println(shortName(item.getMajor()) + "\t" + (item.getMinor() == null ? "-" : item.getMinor()) + "\t" + item.getItem());
+        }
+        var totals = new StringBuilder("items: ").append(items.size());
+        for (var major : OasisDssResultMajor.values())
+        {
+            totals.append(", ").append(shortName(major)).append(": ").append(getCount(major));
+        }
+        if (journaled > 0)
+        {
+            totals.append(", taken from journal: ").append(journaled);
+        }
+        out.println(totals);
+        out.println("overall result: " + overallMajor.getUri());
+    }
+
+    private static String shortName(OasisDssResultMajor major)
+    {
+        var uri = major.getUri();
+        return uri.substring(uri.lastIndexOf(':') + 1);
+    }
+}
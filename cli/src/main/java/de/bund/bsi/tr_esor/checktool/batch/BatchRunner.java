@@ -0,0 +1,281 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.bund.bsi.tr_esor.checktool.DumpHandler;
+import de.bund.bsi.tr_esor.checktool.conf.Configurator;
+import de.bund.bsi.tr_esor.checktool.entry.FileParameterFinder;
+import de.bund.bsi.tr_esor.checktool.entry.InputPreparator;
+import de.bund.bsi.tr_esor.checktool.entry.ParameterFinder;
+import de.bund.bsi.tr_esor.checktool.out.OutputFolder;
+import de.bund.bsi.tr_esor.checktool.out.SummaryWriter;
+import de.bund.bsi.tr_esor.checktool.validation.ValidationScheduler;
+import de.bund.bsi.tr_esor.checktool.xml.LXaipReader;
+import de.bund.bsi.tr_esor.checktool.xml.VRCreator;
+
+import jakarta.xml.bind.JAXBException;
+
+
+/**
+ * Verifies many items within one JVM using a pool of worker threads. The configuration is loaded once and all caches are shared by the
+ * whole run. Each item gets its own report within the output folder, the returned {@link BatchResult} aggregates the results.
+ *
+ * @author TT
+ */
+public class BatchRunner
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchRunner.class);
+
+    private final Path destination;
+
+    private final int threads;
+
+    private BatchJournal journal;
+
+    private SummaryWriter summary;
+
+    private WorkerPool workers;
+
+    /**
+     * Creates an instance.
+     *
+     * @param destination output folder for the reports
+     * @param threads number of worker threads
+     */
+    public BatchRunner(Path destination, int threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("number of threads must be positive");
+        }
+        this.destination = destination;
+        this.threads = threads;
+    }
+
+    /**
+     * Makes this runner record each verified item in the given journal and skip items which have been journaled before with unchanged
+     * input.
+     *
+     * @return this (fluent API)
+     */
+    public BatchRunner withJournal(BatchJournal journal)
+    {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Makes this runner write summary records for each verified item.
+     *
+     * @return this (fluent API)
+     */
+    public BatchRunner withSummary(SummaryWriter summary)
+    {
+        this.summary = summary;
+        return this;
+    }
+
+    /**
+     * Makes this runner pass each item to a worker JVM of the given pool instead of verifying it within this JVM. The number of threads
+     * should match {@link WorkerPool#getCapacity()}.
+     *
+     * @return this (fluent API)
+     */
+    public BatchRunner withWorkers(WorkerPool workers)
+    {
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * Verifies all items and returns the aggregated result. Results are given in the order of the items regardless of the order in which
+     * the workers finish.
+     */
+    public BatchResult run(List<BatchItem> items) throws InterruptedException
+    {
+        var executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<BatchItemResult>> futures = new ArrayList<>();
+            for (var item : items)
+            {
+                futures.add(executor.submit(() -> verify(item)));
+            }
+            var result = new BatchResult();
+            for (var i = 0; i < futures.size(); i++)
+            {
+                result.add(getResult(items.get(i), futures.get(i)));
+            }
+            return result;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifies all items of an archive while it is read. Items are verified in parallel as soon as all their entries have been read, the
+     * reading thread verifies items itself if all workers are busy. A journal is not supported for archives because the entries are
+     * read only once.
+     */
+    public BatchResult run(ArchiveInput archive) throws IOException, InterruptedException
+    {
+        var executor = new ThreadPoolExecutor(threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(2 * threads),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        try
+        {
+            List<BatchItem> items = new ArrayList<>();
+            List<Future<BatchItemResult>> futures = new ArrayList<>();
+            archive.read((item, params) -> {
+                items.add(item);
+                futures.add(executor.submit(() -> verifyAndDump(item, () -> params)));
+            });
+            var result = new BatchResult();
+            for (var i = 0; i < futures.size(); i++)
+            {
+                result.add(getResult(items.get(i), futures.get(i)));
+            }
+            return result;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private BatchItemResult getResult(BatchItem item, Future<BatchItemResult> future) throws InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            LOG.error("cannot verify " + item, e.getCause());
+            return BatchItemResult.failed(item, e.getCause() instanceof Exception ? (Exception)e.getCause() : e);
+        }
+    }
+
+    /**
+     * Verifies a single item unless it is already journaled.
+     */
+    BatchItemResult verify(BatchItem item) throws IOException
+    {
+        if (journal == null)
+        {
+            return verifyAndDump(item);
+        }
+        var fingerprint = journal.fingerprint(item);
+        var journaled = journal.lookup(item, fingerprint);
+        if (journaled.isPresent())
+        {
+            LOG.debug("skipping {}, already verified with unchanged input", item);
+            return journaled.get();
+        }
+        var result = verifyAndDump(item);
+        if (!result.isFailed())
+        {
+            journal.record(item, fingerprint, result);
+        }
+        return result;
+    }
+
+    /**
+     * Verifies a single item and writes its report into an own folder, either within this JVM or by a worker JVM.
+     */
+    private BatchItemResult verifyAndDump(BatchItem item)
+    {
+        if (workers != null)
+        {
+            try
+            {
+                return workers.verify(item);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return BatchItemResult.failed(item, e);
+            }
+        }
+        return verifyAndDump(item, () -> new FileParameterFinder(item.getData(), item.getEr(), item.getProfile()));
+    }
+
+    /**
+     * Verifies a single item with given parameters and writes its report into an own folder.
+     */
+    private BatchItemResult verifyAndDump(BatchItem item, ParameterSource source)
+    {
+        LOG.debug("verifying {}", item);
+        try
+        {
+            var params = source.get();
+            var parts = ValidationScheduler.validateToReportParts(new InputPreparator(params).getValidations());
+            if (summary != null)
+            {
+                summary.write(item.getName(), params.getXaip(), parts);
+            }
+            var report = VRCreator.createReport(parts, params.getReturnVerificationReport());
+            var lXaipReader = new LXaipReader(Configurator.getInstance().getLXaipDataDirectory(item.getProfile()));
+            new DumpHandler(new OutputFolder(destination)).dump(report,
+                params.getXaip(),
+                params.getSerializer(),
+                lXaipReader,
+                item.getProfile());
+            return BatchItemResult.of(item, report);
+        }
+        catch (IOException | JAXBException | ReflectiveOperationException e)
+        {
+            LOG.error("cannot handle input file(s) of " + item, e);
+            return BatchItemResult.failed(item, e);
+        }
+    }
+
+    /**
+     * Provides the parameters of an item.
+     */
+    @FunctionalInterface
+    private interface ParameterSource
+    {
+
+        ParameterFinder get() throws IOException;
+    }
+}
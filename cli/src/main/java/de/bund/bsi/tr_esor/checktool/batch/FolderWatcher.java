@@ -0,0 +1,307 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.bund.bsi.tr_esor.checktool.out.SummaryWriter;
+import de.bund.bsi.tr_esor.checktool.validation.report.OasisDssResultMajor;
+
+
+/**
+ * Watches spool directories and verifies each incoming file on a bounded pool of worker threads, reusing the configuration loaded once
+ * for the JVM. Reports are written to the output folder the same way as in batch mode. Processed inputs are moved into the sub folder
+ * {@value #DONE} of their spool directory, inputs which could not be verified or whose result major is an error are moved into
+ * {@value #FAILED}.
+ * <p>
+ * A file is processed after it has not been modified for the settle time. Producers should nevertheless write files under a name starting
+ * with "." or ending with ".tmp" or ".part" and rename them when complete. Detached evidence records are paired with their data by the
+ * naming convention of {@link BatchInput}. A data file is not processed while an evidence record for it is still pending and vice versa.
+ *
+ * @author TT
+ */
+public class FolderWatcher implements Closeable
+{
+
+    /**
+     * Sub folder for successfully processed inputs.
+     */
+    public static final String DONE = "done";
+
+    /**
+     * Sub folder for inputs which could not be processed or contain errors.
+     */
+    public static final String FAILED = "failed";
+
+    private static final Logger LOG = LoggerFactory.getLogger(FolderWatcher.class);
+
+    private final List<Path> folders;
+
+    private final BatchRunner runner;
+
+    private final String profile;
+
+    private final long settleMillis;
+
+    private final ThreadPoolExecutor executor;
+
+    private final WatchService watchService;
+
+    /** Files seen but not yet settled with time of last event, accessed by the watching thread only. */
+    private final Map<Path, Long> pending = new HashMap<>();
+
+    /** Files handed to a worker and not yet moved away. */
+    private final Set<Path> inProgress = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates an instance.
+     *
+     * @param folders spool directories to watch
+     * @param destination output folder for the reports
+     * @param threads number of worker threads, at most twice as many items wait for a free worker
+     * @param profile name of the profile to verify with
+     * @param settleMillis time in milliseconds a file must remain unmodified before it is processed
+     */
+    public FolderWatcher(List<Path> folders, Path destination, int threads, String profile, long settleMillis) throws IOException
+    {
+        this.folders = new ArrayList<>(folders);
+        this.runner = new BatchRunner(destination, threads);
+        this.profile = profile;
+        this.settleMillis = settleMillis;
+        executor = new ThreadPoolExecutor(threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(2 * threads),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Makes this watcher write summary records for each verified item.
+     *
+     * @return this (fluent API)
+     */
+    public FolderWatcher withSummary(SummaryWriter summary)
+    {
+        runner.withSummary(summary);
+        return this;
+    }
+
+    /**
+     * Processes the files already present and then watches for new ones until {@link #close()} is called or the thread is interrupted.
+     */
+    public void run() throws IOException, InterruptedException
+    {
+        for (var folder : folders)
+        {
+            Files.createDirectories(folder.resolve(DONE));
+            Files.createDirectories(folder.resolve(FAILED));
+            folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            LOG.info("watching {}", folder.toAbsolutePath());
+        }
+        rescan();
+        try
+        {
+            while (running)
+            {
+                var key = watchService.poll(Math.max(10L, settleMillis / 2), TimeUnit.MILLISECONDS);
+                if (key != null)
+                {
+                    var dir = (Path)key.watchable();
+                    for (var event : key.pollEvents())
+                    {
+                        if (event.kind() == OVERFLOW)
+                        {
+                            rescan();
+                        }
+                        else
+                        {
+                            addPending(dir.resolve((Path)event.context()));
+                        }
+                    }
+                    key.reset();
+                }
+                dispatchSettled();
+            }
+        }
+        catch (ClosedWatchServiceException e)
+        {
+            LOG.debug("watch service closed", e);
+        }
+    }
+
+    /**
+     * Stops watching and waits for the running verifications to finish.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        running = false;
+        watchService.close();
+        executor.shutdown();
+        try
+        {
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void rescan() throws IOException
+    {
+        for (var folder : folders)
+        {
+            try (Stream<Path> files = Files.list(folder))
+            {
+                files.forEach(this::addPending);
+            }
+        }
+    }
+
+    private void addPending(Path file)
+    {
+        var name = file.getFileName().toString();
+        if (name.startsWith(".") || name.endsWith(".tmp") || name.endsWith(".part") || inProgress.contains(file))
+        {
+            return;
+        }
+        pending.put(file, System.currentTimeMillis());
+    }
+
+    private void dispatchSettled()
+    {
+        var now = System.currentTimeMillis();
+        pending.keySet().removeIf(f -> !Files.isRegularFile(f));
+        var settledByDir = pending.entrySet()
+            .stream()
+            .filter(e -> now - e.getValue() >= settleMillis)
+            .map(Map.Entry::getKey)
+            .sorted()
+            .collect(Collectors.groupingBy(Path::getParent));
+        for (var settled : settledByDir.values())
+        {
+            for (var item : BatchInput.pair(settled, profile))
+            {
+                if (item.getData() == null ? isDataPending(item.getEr()) : item.getEr() == null && isErPending(item.getData()))
+                {
+                    continue;
+                }
+                var files = Stream.of(item.getData(), item.getEr()).filter(Objects::nonNull).collect(Collectors.toList());
+                files.forEach(pending::remove);
+                inProgress.addAll(files);
+                executor.execute(() -> process(item, files));
+            }
+        }
+    }
+
+    private boolean isDataPending(Path er)
+    {
+        var stem = BatchInput.erStem(er);
+        return pending.keySet().stream().anyMatch(f -> f.getParent().equals(er.getParent()) && BatchInput.isDataFor(f, stem));
+    }
+
+    private boolean isErPending(Path data)
+    {
+        return pending.keySet()
+            .stream()
+            .anyMatch(f -> f.getParent().equals(data.getParent()) && BatchInput.erStem(f) != null
+                           && BatchInput.isDataFor(data, BatchInput.erStem(f)));
+    }
+
+    private void process(BatchItem item, List<Path> files)
+    {
+        BatchItemResult result;
+        try
+        {
+            result = runner.verify(item);
+        }
+        catch (IOException e)
+        {
+            LOG.error("cannot verify " + item, e);
+            result = BatchItemResult.failed(item, e);
+        }
+        var failed = result.isFailed() || result.getMajor() == OasisDssResultMajor.REQUESTER_ERROR
+                     || result.getMajor() == OasisDssResultMajor.RESPONDER_ERROR;
+        LOG.info("{}: {}", item, result.getMajor());
+        for (var file : files)
+        {
+            try
+            {
+                moveTo(file, file.getParent().resolve(failed ? FAILED : DONE));
+            }
+            catch (IOException e)
+            {
+                LOG.error("cannot move processed file " + file, e);
+            }
+            finally
+            {
+                inProgress.remove(file);
+            }
+        }
+    }
+
+    /**
+     * Moves a file into a folder, adding a counter to its name if the folder already contains a file of that name.
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    static Path moveTo(Path file, Path folder) throws IOException
+    {
+        var name = file.getFileName().toString();
+        var target = folder.resolve(name);
+        var counter = 1;
+        while (Files.exists(target))
+        {
+            target = folder.resolve(name + "(" + counter++ + ")");
+        }
+        return Files.move(file, target);
+    }
+}
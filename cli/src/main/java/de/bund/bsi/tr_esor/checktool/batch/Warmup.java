@@ -0,0 +1,114 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.bund.bsi.tr_esor.checktool.Main;
+import de.bund.bsi.tr_esor.checktool.entry.FileParameterFinder;
+import de.bund.bsi.tr_esor.checktool.entry.InputPreparator;
+import de.bund.bsi.tr_esor.checktool.validation.ValidationScheduler;
+import de.bund.bsi.tr_esor.checktool.xml.VRCreator;
+import de.bund.bsi.tr_esor.checktool.xml.XmlHelper;
+
+import jakarta.xml.bind.JAXBException;
+
+
+/**
+ * Runs representative validations without writing any output. Serves two purposes: measuring the time the first validations of a fresh
+ * JVM take, and loading all classes a validation needs so that they can be recorded into a class data sharing (AppCDS) archive which
+ * shortens the start up of later runs.
+ *
+ * @author TT
+ */
+public class Warmup
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(Warmup.class);
+
+    private final List<BatchItem> items;
+
+    /**
+     * Creates an instance.
+     *
+     * @param items representative inputs, should cover the kinds of data usually verified
+     */
+    public Warmup(List<BatchItem> items)
+    {
+        this.items = items;
+    }
+
+    /**
+     * Verifies each item once, reports are created and serialized but discarded.
+     *
+     * @return elapsed time in milliseconds
+     */
+    public long run()
+    {
+        var start = System.nanoTime();
+        for (var item : items)
+        {
+            try
+            {
+                var params = new FileParameterFinder(item.getData(), item.getEr(), item.getProfile());
+                var parts = ValidationScheduler.validateToReportParts(new InputPreparator(params).getValidations());
+                XmlHelper.serialize(VRCreator.createReport(parts, params.getReturnVerificationReport()), OutputStream.nullOutputStream());
+            }
+            catch (IOException | JAXBException | ReflectiveOperationException e)
+            {
+                LOG.warn("warmup of {} failed", item, e);
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Runs the warmup in a new JVM which writes a dynamic AppCDS archive when it terminates. Requires Java 13 or later. Use the archive
+     * by starting later runs with <code>-XX:SharedArchiveFile=&lt;archive&gt;</code>.
+     *
+     * @param archive file to write the archive to
+     * @param conf path to the configuration file
+     * @param profile name of the profile to use for verification
+     * @param warmupInput directory or manifest file, see {@link BatchInput}
+     * @return exit code of the JVM
+     */
+    public static int dumpCds(Path archive, String conf, String profile, String warmupInput) throws IOException, InterruptedException
+    {
+        var command = new ArrayList<String>();
+        command.add(WorkerPool.javaExecutable());
+        command.add("-XX:ArchiveClassesAtExit=" + archive.toAbsolutePath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(List.of("-conf", conf, "-profile", profile, "-warmup", warmupInput));
+        LOG.debug("starting {}", command);
+        return new ProcessBuilder(command).inheritIO().start().waitFor();
+    }
+}
@@ -0,0 +1,108 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Worker side of the multi process batch mode, see {@link WorkerPool}. Reads one request per line, verifies the item and answers with one
+ * result line until the input ends.
+ *
+ * @author TT
+ */
+public class Worker
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(Worker.class);
+
+    private final BatchRunner runner;
+
+    /**
+     * Creates an instance.
+     *
+     * @param destination output folder for the reports
+     */
+    public Worker(Path destination)
+    {
+        runner = new BatchRunner(destination, 1);
+    }
+
+    /**
+     * Serves requests until the input ends.
+     *
+     * @param ins requests of the supervisor
+     * @param out stream to write results to, should not receive any other output
+     */
+    public void serve(InputStream ins, PrintStream out) throws IOException
+    {
+        var reader = new BufferedReader(new InputStreamReader(ins, StandardCharsets.UTF_8));
+        for (var line = reader.readLine(); line != null; line = reader.readLine())
+        {
+            if (line.isEmpty())
+            {
+                continue;
+            }
+            var item = WorkerProtocol.parseRequest(line);
+            BatchItemResult result;
+            try
+            {
+                result = runner.verify(item);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                LOG.error("cannot verify " + item, e);
+                result = BatchItemResult.failed(item, e);
+            }
+            out.println(WorkerProtocol.formatResponse(result, usedHeapAfterGc(), Runtime.getRuntime().maxMemory()));
+            out.flush();
+        }
+    }
+
+    /**
+     * Returns the heap occupied after the last garbage collection, which approximates the live data better than the currently used heap.
+     */
+    static long usedHeapAfterGc()
+    {
+        return ManagementFactory.getMemoryPoolMXBeans()
+            .stream()
+            .filter(p -> p.getType() == MemoryType.HEAP)
+            .map(MemoryPoolMXBean::getCollectionUsage)
+            .filter(Objects::nonNull)
+            .mapToLong(MemoryUsage::getUsed)
+            .sum();
+    }
+}
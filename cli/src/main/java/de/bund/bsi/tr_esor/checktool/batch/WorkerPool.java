@@ -0,0 +1,212 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.bund.bsi.tr_esor.checktool.Main;
+
+
+/**
+ * Distributes batch items over worker JVMs so that huge inputs do not slow down the garbage collection for all other items. Items are
+ * verified by small heap workers tuned for short pauses, inputs exceeding a size limit go to one dedicated large heap worker. Workers which
+ * die, exceed the time budget of an item or keep too much heap occupied are restarted. Each worker writes the reports of its items into
+ * the common output folder.
+ *
+ * @author TT
+ */
+public class WorkerPool implements Closeable
+{
+
+    /**
+     * Default size in bytes from which on an input is verified by the large heap worker.
+     */
+    public static final long DEFAULT_LARGE_INPUT = 256L * 1024 * 1024;
+
+    /**
+     * Default time budget of one item in seconds.
+     */
+    public static final long DEFAULT_ITEM_TIMEOUT = 900;
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerPool.class);
+
+    /**
+     * Fraction of its maximum heap a worker may keep occupied after an item before it is restarted.
+     */
+    private static final double MEMORY_BUDGET = 0.7;
+
+    private final BlockingQueue<WorkerProcess> smallWorkers;
+
+    private final BlockingQueue<WorkerProcess> largeWorkers = new ArrayBlockingQueue<>(1);
+
+    private final List<WorkerProcess> all = new ArrayList<>();
+
+    private long largeInput = DEFAULT_LARGE_INPUT;
+
+    private long timeoutMillis = TimeUnit.SECONDS.toMillis(DEFAULT_ITEM_TIMEOUT);
+
+    /**
+     * Creates an instance, the worker JVMs are started on first use.
+     *
+     * @param conf path to the configuration file
+     * @param destination output folder for the reports
+     * @param workers number of small heap workers
+     * @param smallHeap maximum heap of the small workers in the format of the -Xmx JVM option, for instance 1g
+     * @param largeHeap maximum heap of the large worker in the format of the -Xmx JVM option
+     */
+    public WorkerPool(Path conf, Path destination, int workers, String smallHeap, String largeHeap)
+    {
+        if (workers < 1)
+        {
+            throw new IllegalArgumentException("number of workers must be positive");
+        }
+        smallWorkers = new ArrayBlockingQueue<>(workers);
+        for (var i = 0; i < workers; i++)
+        {
+            var worker = new WorkerProcess("worker-" + i,
+                command(List.of("-Xmx" + smallHeap, "-XX:+UseG1GC", "-XX:MaxGCPauseMillis=50"), conf, destination),
+                MEMORY_BUDGET);
+            smallWorkers.add(worker);
+            all.add(worker);
+        }
+        var large = new WorkerProcess("worker-large", command(List.of("-Xmx" + largeHeap, "-XX:+UseParallelGC"), conf, destination),
+            MEMORY_BUDGET);
+        largeWorkers.add(large);
+        all.add(large);
+    }
+
+    /**
+     * Sets the size of data and evidence record from which on an item is verified by the large heap worker.
+     *
+     * @return this (fluent API)
+     */
+    public WorkerPool withLargeInput(long bytes)
+    {
+        largeInput = bytes;
+        return this;
+    }
+
+    /**
+     * Sets the time budget of one item, a worker exceeding it is killed and the item fails.
+     *
+     * @return this (fluent API)
+     */
+    public WorkerPool withItemTimeout(long seconds)
+    {
+        timeoutMillis = TimeUnit.SECONDS.toMillis(seconds);
+        return this;
+    }
+
+    /**
+     * Verifies an item by the next free worker of the suitable kind, waits for a worker if all are busy.
+     */
+    public BatchItemResult verify(BatchItem item) throws InterruptedException
+    {
+        var queue = isLarge(item) ? largeWorkers : smallWorkers;
+        var worker = queue.take();
+        try
+        {
+            return worker.verify(item, timeoutMillis);
+        }
+        finally
+        {
+            queue.add(worker);
+        }
+    }
+
+    /**
+     * Returns the number of worker threads a {@link BatchRunner} needs to keep all workers busy.
+     */
+    public int getCapacity()
+    {
+        return all.size();
+    }
+
+    /**
+     * Terminates all workers.
+     */
+    @Override
+    public void close()
+    {
+        for (var worker : all)
+        {
+            worker.close();
+            LOG.debug("worker was started {} times", worker.getStarts());
+        }
+    }
+
+    boolean isLarge(BatchItem item)
+    {
+        var size = 0L;
+        try
+        {
+            for (var path : new Path[]{item.getData(), item.getEr()})
+            {
+                if (path != null && Files.isRegularFile(path))
+                {
+                    size += Files.size(path);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.debug("cannot determine size of {}", item, e);
+        }
+        return size >= largeInput;
+    }
+
+    /**
+     * Returns the path of the java executable running this JVM.
+     */
+    static String javaExecutable()
+    {
+        return ProcessHandle.current().info().command().orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    }
+
+    private static List<String> command(List<String> jvmOptions, Path conf, Path destination)
+    {
+        var command = new ArrayList<String>();
+        command.add(javaExecutable());
+        command.addAll(jvmOptions);
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(List.of("-conf",
+            conf.toAbsolutePath().toString(),
+            "-worker",
+            "-out",
+            destination.toAbsolutePath().toString()));
+        return command;
+    }
+}
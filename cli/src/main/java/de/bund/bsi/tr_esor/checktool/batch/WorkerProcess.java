@@ -0,0 +1,257 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * One worker JVM of a {@link WorkerPool}. The JVM is started on first use and restarted on the next use after it has been stopped because
+ * it died, exceeded the time budget of an item or holds too much heap. Instances must be used by one thread at a time.
+ *
+ * @author TT
+ */
+final class WorkerProcess implements Closeable
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerProcess.class);
+
+    /**
+     * Put into the response queue when the worker closes its output.
+     */
+    private static final String END = "";
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final String name;
+
+    private final List<String> command;
+
+    private final double memoryBudget;
+
+    private Process process;
+
+    private Writer requests;
+
+    private BlockingQueue<String> responses;
+
+    private int starts;
+
+    /**
+     * Creates an instance without starting the JVM.
+     *
+     * @param name name of the worker for log messages
+     * @param command command line starting the worker JVM
+     * @param memoryBudget fraction of the maximum heap the worker may occupy after verifying an item before it is restarted
+     */
+    WorkerProcess(String name, List<String> command, double memoryBudget)
+    {
+        this.name = name;
+        this.command = command;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Lets the worker verify an item and returns the result. All problems with the worker itself are reported as failed result.
+     *
+     * @param item item to verify
+     * @param timeoutMillis time budget of the item, the worker is killed when it is exceeded
+     */
+    BatchItemResult verify(BatchItem item, long timeoutMillis) throws InterruptedException
+    {
+        String line;
+        try
+        {
+            ensureStarted();
+            requests.write(WorkerProtocol.formatRequest(item));
+            requests.write('\n');
+            requests.flush();
+            line = responses.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (IOException e)
+        {
+            LOG.error("cannot pass {} to {}", item, name, e);
+            stop();
+            return BatchItemResult.failed(item, e);
+        }
+        catch (InterruptedException e)
+        {
+            stop();
+            throw e;
+        }
+        if (line == null)
+        {
+            LOG.warn("{} exceeded time budget of {} ms verifying {}, restarting worker", name, timeoutMillis, item);
+            stop();
+            return BatchItemResult.failed(item,
+                new IOException("verification exceeded time budget of " + timeoutMillis + " ms, worker has been restarted"));
+        }
+        if (END.equals(line))
+        {
+            var exitCode = stop();
+            LOG.warn("{} terminated with exit code {} verifying {}", name, exitCode, item);
+            return BatchItemResult.failed(item,
+                new IOException("worker terminated with exit code " + exitCode + ", input may exceed the heap of the worker"));
+        }
+        try
+        {
+            var response = WorkerProtocol.parseResponse(item, line);
+            if (response.usedHeap > memoryBudget * response.maxHeap)
+            {
+                LOG.info("{} holds {} of {} bytes heap after verifying {}, restarting worker",
+                    name,
+                    response.usedHeap,
+                    response.maxHeap,
+                    item);
+                close();
+            }
+            return response.result;
+        }
+        catch (IOException e)
+        {
+            LOG.error("{} sent invalid response", name, e);
+            stop();
+            return BatchItemResult.failed(item, e);
+        }
+    }
+
+    /**
+     * Returns how often the JVM has been started.
+     */
+    int getStarts()
+    {
+        return starts;
+    }
+
+    /**
+     * Lets the worker terminate after its current item, kills it if it does not terminate in time.
+     */
+    @Override
+    public void close()
+    {
+        if (process == null)
+        {
+            return;
+        }
+        try
+        {
+            requests.close();
+            if (!process.waitFor(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            {
+                LOG.warn("{} did not terminate in time", name);
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.debug("cannot close input of {}", name, e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        stop();
+    }
+
+    private void ensureStarted() throws IOException
+    {
+        if (process != null)
+        {
+            return;
+        }
+        LOG.debug("starting {}: {}", name, command);
+        var started = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        var queue = new LinkedBlockingQueue<String>();
+        var reader = new Thread(() -> readResponses(started.getInputStream(), queue), name + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+        process = started;
+        requests = new BufferedWriter(new OutputStreamWriter(started.getOutputStream(), StandardCharsets.UTF_8));
+        responses = queue;
+        starts++;
+    }
+
+    /**
+     * Kills the JVM and returns its exit code.
+     */
+    private int stop()
+    {
+        if (process == null)
+        {
+            return -1;
+        }
+        process.destroyForcibly();
+        var exitCode = -1;
+        try
+        {
+            exitCode = process.waitFor();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        process = null;
+        requests = null;
+        responses = null;
+        return exitCode;
+    }
+
+    private void readResponses(InputStream ins, BlockingQueue<String> queue)
+    {
+        try (var reader = new BufferedReader(new InputStreamReader(ins, StandardCharsets.UTF_8)))
+        {
+            for (var line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                if (WorkerProtocol.isResponse(line))
+                {
+                    queue.add(line);
+                }
+                else
+                {
+                    LOG.debug("{}: {}", name, line);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.debug("output of {} closed", name, e);
+        }
+        finally
+        {
+            queue.add(END);
+        }
+    }
+}
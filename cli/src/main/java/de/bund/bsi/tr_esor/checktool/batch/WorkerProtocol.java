@@ -0,0 +1,180 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import de.bund.bsi.tr_esor.checktool.validation.report.OasisDssResultMajor;
+
+
+/**
+ * Line based protocol between the supervisor and its worker JVMs. The supervisor writes one request line per item to the standard input
+ * of a worker, the worker answers with exactly one result line on its standard output. Fields are separated by tabs, tabs, line breaks and
+ * percent signs within the values are percent encoded. Result lines start with a marker so that other output of the JVM can be ignored.
+ *
+ * @author TT
+ */
+final class WorkerProtocol
+{
+
+    /**
+     * Starts each result line.
+     */
+    static final String RESULT = "ERVT-RESULT";
+
+    private static final String SEPARATOR = "\t";
+
+    private WorkerProtocol()
+    {
+        // static only
+    }
+
+    /**
+     * Result of one item together with the heap state of the worker after verifying it.
+     */
+    static final class Response
+    {
+
+        final BatchItemResult result;
+
+        final long usedHeap;
+
+        final long maxHeap;
+
+        Response(BatchItemResult result, long usedHeap, long maxHeap)
+        {
+            this.result = result;
+            this.usedHeap = usedHeap;
+            this.maxHeap = maxHeap;
+        }
+    }
+
+    /**
+     * Returns the request line for an item.
+     */
+    static String formatRequest(BatchItem item)
+    {
+        return encode(Optional.ofNullable(item.getData()).map(p -> p.toAbsolutePath().toString()).orElse("")) + SEPARATOR
+            + encode(Optional.ofNullable(item.getEr()).map(p -> p.toAbsolutePath().toString()).orElse("")) + SEPARATOR
+            + encode(item.getProfile());
+    }
+
+    /**
+     * Parses a request line.
+     *
+     * @throws IOException in case of malformed lines
+     */
+    static BatchItem parseRequest(String line) throws IOException
+    {
+        var fields = split(line, 3);
+        try
+        {
+            return new BatchItem(toPath(fields[0]), toPath(fields[1]), fields[2]);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IOException("invalid request: " + line, e);
+        }
+    }
+
+    /**
+     * Returns the result line for a verified item.
+     *
+     * @param result result of the item
+     * @param usedHeap heap in use after the last garbage collection
+     * @param maxHeap maximum heap of the worker
+     */
+    static String formatResponse(BatchItemResult result, long usedHeap, long maxHeap)
+    {
+        return String.join(SEPARATOR,
+            RESULT,
+            result.isFailed() ? "failed" : "ok",
+            encode(result.getMajor().getUri()),
+            encode(Optional.ofNullable(result.getMinor()).orElse("")),
+            encode(result.getMessage()),
+            Long.toString(usedHeap),
+            Long.toString(maxHeap));
+    }
+
+    /**
+     * Returns true if the line is a result line.
+     */
+    static boolean isResponse(String line)
+    {
+        return line.startsWith(RESULT + SEPARATOR);
+    }
+
+    /**
+     * Parses a result line for the given item.
+     *
+     * @throws IOException in case of malformed lines
+     */
+    static Response parseResponse(BatchItem item, String line) throws IOException
+    {
+        var fields = split(line, 7);
+        try
+        {
+            var result = "failed".equals(fields[1]) ? BatchItemResult.failed(item, new IOException(fields[4]))
+                : new BatchItemResult(item,
+                    OasisDssResultMajor.fromURI(fields[2]),
+                    fields[3].isEmpty() ? null : fields[3],
+                    fields[4]);
+            return new Response(result, Long.parseLong(fields[5]), Long.parseLong(fields[6]));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("invalid response: " + line, e);
+        }
+    }
+
+    private static String[] split(String line, int count) throws IOException
+    {
+        var fields = line.split(SEPARATOR, -1);
+        if (fields.length != count)
+        {
+            throw new IOException("expected " + count + " fields but got " + fields.length + ": " + line);
+        }
+        for (var i = 0; i < fields.length; i++)
+        {
+            fields[i] = decode(fields[i]);
+        }
+        return fields;
+    }
+
+    private static Path toPath(String value)
+    {
+        return value.isEmpty() ? null : Paths.get(value);
+    }
+
+    static String encode(String value)
+    {
+        return value.replace("%", "%25").replace("\t", "%09").replace("\n", "%0A").replace("\r", "%0D");
+    }
+
+    static String decode(String value)
+    {
+        return value.replace("%0D", "\r").replace("%0A", "\n").replace("%09", "\t").replace("%25", "%");
+    }
+}
@@ -21,6 +21,7 @@
 package de.bund.bsi.tr_esor.checktool.out;
 
 import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -99,7 +100,8 @@ public class OutputFolder
     }
 
     /**
-     * Create new directory.<br> Adds counter if directory already exists.
+     * Create new directory.<br> Adds counter if directory already exists. Several threads writing into the same parent folder (batch mode)
+     * will get distinct directories.
      *
      * @param parent parent folder path
      * @param name name of the new directory
@@ -111,11 +113,21 @@ public class OutputFolder
         var cleanName = sanitizeFolderName(name);
         var dest = parent.resolve(cleanName);
         var counter = 1;
-        while (dest.toFile().exists())
+        while (true)
         {
-            dest = parent.resolve(cleanName + "(" + counter++ + ")");
+            while (dest.toFile().exists())
+            {
+                dest = parent.resolve(cleanName + "(" + counter++ + ")");
+            }
+            try
+            {
+                return Files.createDirectory(dest);
+            }
+            catch (FileAlreadyExistsException e)
+            {
+                LOG.debug("folder {} created concurrently, trying next name", dest);
+            }
         }
-        return Files.createDirectory(dest);
     }
 
     /**
@@ -0,0 +1,207 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.out;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import de.bund.bsi.tr_esor.checktool.validation.report.ReportPart;
+import de.bund.bsi.tr_esor.checktool.xml.VRCreator;
+import de.bund.bsi.tr_esor.xaip.PackageHeaderType;
+import de.bund.bsi.tr_esor.xaip.XAIPType;
+
+import oasis.names.tc.dss._1_0.core.schema.InternationalStringType;
+
+
+/**
+ * Writes one compact record per validated object, i.e. per individual report, without creating the XML verification report. Each record
+ * contains the input, the AOID, the reference of the validated object, result major, result minor and the summarized message. Several
+ * threads may write into the same instance, the records of one input are written together.
+ *
+ * @author TT
+ */
+public class SummaryWriter implements Closeable
+{
+
+    /**
+     * Supported output formats.
+     */
+    public enum Format
+    {
+        /** One JSON object per line. */
+        NDJSON,
+        /** Comma separated values with header line as specified in RFC 4180. */
+        CSV;
+
+        /**
+         * Returns the format with given name, ignoring case.
+         *
+         * @throws IllegalArgumentException for unsupported names
+         */
+        public static Format fromString(String name)
+        {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+
+        /**
+         * Returns the usual file extension for this format.
+         */
+        public String getExtension()
+        {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final String[] FIELDS = {"input", "aoid", "reference", "resultMajor", "resultMinor", "message"};
+
+    private final Writer writer;
+
+    private final Format format;
+
+    /**
+     * Creates an instance writing UTF-8 encoded records to the given stream. In CSV format, the header line is written immediately.
+     */
+    public SummaryWriter(OutputStream outs, Format format) throws IOException
+    {
+        this.writer = new OutputStreamWriter(outs, StandardCharsets.UTF_8);
+        this.format = format;
+        if (format == Format.CSV)
+        {
+            writeRecord(FIELDS);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Writes one record per report part.
+     *
+     * @param input name of the validated input
+     * @param xaip XAIP of the input or null, used for the AOID only
+     * @param parts reports as returned by the validation
+     */
+    public synchronized void write(String input, XAIPType xaip, List<ReportPart> parts) throws IOException
+    {
+        var aoid = Optional.ofNullable(xaip).map(XAIPType::getPackageHeader).map(PackageHeaderType::getAOID).orElse(null);
+        for (var part : parts)
+        {
+            var result = VRCreator.translateResult(part.getOverallResultVerbose());
+            var ref = part.getReference();
+            var message = Optional.ofNullable(result.getResultMessage()).map(InternationalStringType::getValue).orElse(null);
+            writeRecord(new String[]{input, aoid, ref.getxPath() == null ? ref.toString() : ref.getxPath(), result.getResultMajor(),
+                result.getResultMinor(), message});
+        }
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        writer.close();
+    }
+
+    private void writeRecord(String[] values) throws IOException
+    {
+        if (format == Format.CSV)
+        {
+            for (var i = 0; i < values.length; i++)
+            {
+                if (i > 0)
+                {
+                    writer.write(',');
+                }
+                writer.write(csvValue(values[i]));
+            }
+            writer.write("\r\n");
+        }
+        else
+        {
+            writer.write('{');
+            for (var i = 0; i < values.length; i++)
+            {
+                if (i > 0)
+                {
+                    writer.write(',');
+                }
+                writer.write(jsonString(FIELDS[i]));
+                writer.write(':');
+                writer.write(values[i] == null ? "null" : jsonString(values[i]));
+            }
+            writer.write("}\n");
+        }
+    }
+
+    private static String csvValue(String value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+        {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String value)
+    {
+        var result = new StringBuilder(value.length() + 2).append('"');
+        for (var c : value.toCharArray())
+        {
+            switch (c)
+            {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                    {
+                        result.append(String.format("\\u%04x", (int)c));
+                    }
+                    else
+                    {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
+}
@@ -0,0 +1,121 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.server;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+
+/**
+ * Limits the number of requests processed at the same time. Requests exceeding the limit are answered with HTTP status 503 immediately
+ * instead of waiting, so that a load balancer can pass them to another instance. Only POST requests (i.e. verify calls) are counted, WSDL
+ * and schema downloads pass unless the server is overloaded.
+ *
+ * @author TT
+ */
+public class AdmissionFilter extends Filter
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionFilter.class);
+
+    private static final ThreadLocal<Boolean> OVERLOAD = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final Semaphore permits;
+
+    /**
+     * Creates an instance.
+     *
+     * @param maxConcurrent maximum number of verify requests processed at the same time
+     */
+    public AdmissionFilter(int maxConcurrent)
+    {
+        if (maxConcurrent < 1)
+        {
+            throw new IllegalArgumentException("maximum number of concurrent requests must be positive");
+        }
+        permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Marks the current thread as handling requests which could not be queued. Each request handled by such thread is rejected.
+     */
+    static void markOverloadThread()
+    {
+        OVERLOAD.set(Boolean.TRUE);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException
+    {
+        if (OVERLOAD.get().booleanValue())
+        {
+            reject(exchange, "request queue is full");
+            return;
+        }
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod()))
+        {
+            chain.doFilter(exchange);
+            return;
+        }
+        if (!permits.tryAcquire())
+        {
+            reject(exchange, "too many concurrent requests");
+            return;
+        }
+        try
+        {
+            chain.doFilter(exchange);
+        }
+        finally
+        {
+            permits.release();
+        }
+    }
+
+    private static void reject(HttpExchange exchange, String reason) throws IOException
+    {
+        LOG.warn("rejecting request from {}: {}", exchange.getRemoteAddress(), reason);
+        try
+        {
+            exchange.getRequestBody().close();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, -1);
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public String description()
+    {
+        return "admission control, answers 503 if overloaded";
+    }
+}
@@ -0,0 +1,135 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpServer;
+
+import jakarta.xml.ws.Endpoint;
+
+
+/**
+ * Runs the S4 web service on an HTTP server with bounded resources: a fixed number of worker threads, a bounded queue for accepted
+ * requests and a limit for verify requests processed at the same time. Requests which do not fit are rejected with HTTP status 503
+ * quickly, see {@link AdmissionFilter}.
+ *
+ * @author TT
+ */
+public class S4Server
+{
+
+    private final int threads;
+
+    private final int queueSize;
+
+    private final int maxConcurrent;
+
+    /**
+     * Creates an instance.
+     *
+     * @param threads number of worker threads
+     * @param queueSize maximum number of requests waiting for a worker thread
+     * @param maxConcurrent maximum number of verify requests processed at the same time
+     */
+    public S4Server(int threads, int queueSize, int maxConcurrent)
+    {
+        if (threads < 1 || queueSize < 0 || maxConcurrent < 1)
+        {
+            throw new IllegalArgumentException("number of threads and concurrent requests must be positive, queue size not negative");
+        }
+        this.threads = threads;
+        this.queueSize = queueSize;
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Publishes the web service and starts the server.
+     *
+     * @param host host name to bind to
+     * @param port listen port
+     * @param path context path of the service
+     * @param implementor web service implementation
+     * @return the started server
+     */
+    public HttpServer publish(String host, int port, String path, Object implementor) throws IOException
+    {
+        var server = createServer(new InetSocketAddress(host, port));
+        Endpoint.create(implementor).publish(createContext(server, path));
+        server.start();
+        return server;
+    }
+
+    /**
+     * Creates an HTTP server which dispatches requests to a bounded pool of worker threads. Requests which do not fit into the queue are
+     * passed to a separate thread which only rejects them.
+     *
+     * @param address address to bind to
+     */
+    HttpServer createServer(InetSocketAddress address) throws IOException
+    {
+        var server = HttpServer.create(address, 0);
+        ExecutorService overload = Executors.newSingleThreadExecutor(r -> newThread(() -> {
+            AdmissionFilter.markOverloadThread();
+            r.run();
+        }, "s4-overload"));
+        var counter = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            queueSize == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueSize),
+            r -> newThread(r, "s4-worker-" + counter.incrementAndGet()),
+            (r, pool) -> overload.execute(r));
+        server.setExecutor(executor);
+        return server;
+    }
+
+    /**
+     * Creates a context which applies the admission control.
+     *
+     * @param server server to create the context in
+     * @param path context path
+     */
+    HttpContext createContext(HttpServer server, String path)
+    {
+        var context = server.createContext(path);
+        context.getFilters().add(new AdmissionFilter(maxConcurrent));
+        return context;
+    }
+
+    private static Thread newThread(Runnable r, String name)
+    {
+        var result = new Thread(r, name);
+        result.setDaemon(true);
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Start up time benchmark. Measures the wall clock time of a fresh JVM verifying one XAIP, with and without class data sharing archive.
+ * The measured times are logged, the test fails if they exceed the budget given by system property <code>startupBudgetMillis</code>
+ * (default 30 seconds) so that severe regressions become visible.
+ *
+ * @author TT
+ */
+public class StartupTimeIT extends TestBase
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupTimeIT.class);
+
+    private static final long BUDGET_MILLIS = Long.getLong("startupBudgetMillis", 30_000L);
+
+    private Path manifest;
+
+    /**
+     * Creates the warmup input.
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        manifest = destination.resolve("warmup.txt");
+        Files.writeString(manifest,
+            Paths.get(RES_DIR, "xaip/xaip_ok.xml").toAbsolutePath() + ";" + Paths.get(RES_DIR, "xaip/xaip_ok.er.xml").toAbsolutePath()
+                                    + ";\n",
+            StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Measures the start up of a plain JVM.
+     */
+    @Test
+    public void coldStart() throws Exception
+    {
+        var millis = runJvm(List.of(), "-warmup", manifest.toString());
+        LOG.info("cold start and verification took {} ms", millis);
+        assertThat(millis).isLessThan(BUDGET_MILLIS);
+    }
+
+    /**
+     * Measures the start up of a JVM using an AppCDS archive created by parameter -dump-cds.
+     */
+    @Test
+    public void startWithCdsArchive() throws Exception
+    {
+        assumeTrue("dynamic CDS archives require Java 13", Runtime.version().feature() >= 13);
+        var archive = destination.resolve("checktool.jsa");
+        runJvm(List.of(), "-warmup", manifest.toString(), "-dump-cds", archive.toString());
+        assertFileExists("checktool.jsa");
+
+        var millis = runJvm(List.of("-XX:SharedArchiveFile=" + archive), "-warmup", manifest.toString());
+        LOG.info("start with CDS archive and verification took {} ms", millis);
+        assertThat(millis).isLessThan(BUDGET_MILLIS);
+    }
+
+    private long runJvm(List<String> jvmOptions, String... args) throws IOException, InterruptedException
+    {
+        var command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.add("-conf");
+        command.add(RES_DIR + "config.xml");
+        command.addAll(List.of(args));
+        var log = destination.resolve("jvm.log");
+        var start = System.nanoTime();
+        var process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        assertThat(process.waitFor(BUDGET_MILLIS * 2, TimeUnit.MILLISECONDS)).as("JVM terminated").isTrue();
+        var millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(process.exitValue()).as(Files.readString(log, StandardCharsets.UTF_8)).isZero();
+        return millis;
+    }
+}
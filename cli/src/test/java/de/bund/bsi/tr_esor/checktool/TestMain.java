@@ -37,12 +37,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.math.BigInteger;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 
 import javax.net.SocketFactory;
 
@@ -240,6 +242,68 @@ public class TestMain extends TestBase
         }
     }
 
+    /**
+     * Asserts that a directory given as data is verified as group of binary documents, each file being a protected data object on its
+     * own, and that the report names the files.
+     */
+    @Test
+    public void erForDataDirectory() throws IOException
+    {
+        var dir = Files.createDirectories(destination.resolve("data"));
+        Files.write(dir.resolve("example.tif"), TestUtils.decodeTestResource("/bin/example.tif.b64"));
+        Files.writeString(dir.resolve("other.txt"), "not protected by the ER");
+        var ers = createDecodedTempFile("/bin/example.ers.b64").getAbsolutePath();
+
+        var report = callMain("-conf", RES_DIR + "config.xml", "-data", dir.toString(), "-er", ers);
+
+        assertNumberElements(report, "IndividualReport", 1);
+        assertThat(report, containsString("command line parameter data/example.tif, command line parameter data/other.txt"));
+        assertThat(report, containsString("Missing digest(s) for: [command line parameter data/other.txt]"));
+        assertThat(report, not(containsString("Missing digest(s) for: [command line parameter data/example.tif")));
+    }
+
+    /**
+     * Asserts that files given by repeated parameters -data are verified as group of binary documents, even if their names contain a
+     * comma.
+     */
+    @Test
+    public void erForRepeatedData() throws IOException
+    {
+        var dir = Files.createDirectories(destination.resolve("files"));
+        var tif = Files.write(dir.resolve("example,1.tif"), TestUtils.decodeTestResource("/bin/example.tif.b64"));
+        var txt = Files.writeString(dir.resolve("other.txt"), "not protected by the ER");
+        var ers = createDecodedTempFile("/bin/example.ers.b64").getAbsolutePath();
+
+        var report = callMain("-conf", RES_DIR + "config.xml", "-data", tif.toString(), "-data", txt.toString(), "-er", ers);
+
+        assertNumberElements(report, "IndividualReport", 1);
+        assertThat(report, containsString("Missing digest(s) for: [command line parameter data/other.txt]"));
+        assertThat(report, not(containsString("Missing digest(s) for: [command line parameter data/example,1.tif")));
+    }
+
+    /**
+     * Asserts that a detached ER can be verified against precomputed digests given by a digest manifest instead of the data itself, and
+     * that a wrong digest is reported as missing in the ER.
+     */
+    @Test
+    public void erForDigestManifest() throws Exception
+    {
+        var ers = createDecodedTempFile("/bin/example.ers.b64").getAbsolutePath();
+        var digest = MessageDigest.getInstance("SHA-256").digest(TestUtils.decodeTestResource("/bin/example.tif.b64"));
+        var manifest = Files.createDirectories(destination).resolve("digests.txt");
+        var hexDigest = String.format("%064x", new BigInteger(1, digest));
+        Files.writeString(manifest, "# reference;algorithm;value\nexample.tif;2.16.840.1.101.3.4.2.1;" + hexDigest + "\n");
+
+        var report = callMain("-conf", RES_DIR + "config.xml", "-er", ers, "-digests", manifest.toString());
+        assertNumberElements(report, "IndividualReport", 1);
+        assertFirstMajor(report, "InsufficientInformation");
+        assertThat(report, not(containsString("Missing digest")));
+
+        Files.writeString(manifest, "example.tif;http://www.w3.org/2001/04/xmlenc#sha256;" + "00".repeat(32) + "\n");
+        report = callMain("-conf", RES_DIR + "config.xml", "-er", ers, "-digests", manifest.toString());
+        assertThat(report, containsString("Missing digest(s) for: [command line parameter digests/example.tif]"));
+    }
+
     /**
      * Assert that a binary with evidence record can be validated using Basis-ERS profile.
      */
@@ -727,6 +791,108 @@ public class TestMain extends TestBase
         Assertions.assertThat(report).contains("hashValueMismatch");
     }
 
+    /**
+     * Asserts that summary records instead of the XML report are written to standard out if requested.
+     */
+    @Test
+    public void summaryOnly() throws IOException
+    {
+        var output = callMain("-conf", RES_DIR + "config.xml", "-data", RES_DIR + "xaip/xaip_ok_ers.xml", "-summary", "ndjson");
+        assertThat(output, startsWith("{\"input\":"));
+        assertThat(output, containsString("\"aoid\":\"d9984bc6-2268-4d93-a9ea-50b20dfde3db\""));
+        assertThat(output, containsString("\"resultMajor\":\"urn:oasis:names:tc:dss:1.0:resultmajor:InsufficientInformation\""));
+        assertThat(output, not(containsString("VerificationReport")));
+    }
+
+    /**
+     * Asserts that the warmup verifies the given inputs without writing any reports and prints the elapsed time.
+     */
+    @Test
+    public void warmup() throws IOException
+    {
+        var input = Files.createDirectories(destination.resolve("in"));
+        Files.copy(Paths.get(RES_DIR, "xaip/xaip_ok.xml"), input.resolve("xaip_ok.xml"));
+        Files.copy(Paths.get(RES_DIR, "xaip/xaip_ok.er.xml"), input.resolve("xaip_ok.er.xml"));
+
+        var output = callMain("-conf", RES_DIR + "config.xml", "-warmup", input.toString());
+
+        assertThat(output, matchesRegex("(?s)warmup of 1 items took \\d+ ms\\s*"));
+        try (var files = Files.list(input))
+        {
+            assertThat(files.count(), is(2L));
+        }
+    }
+
+    /**
+     * Asserts that batch mode verifies each item of a directory within one run, pairs the detached ER with its XAIP by name, writes one
+     * report per item and an aggregated summary.
+     */
+    @Test
+    public void batchDirectory() throws Exception
+    {
+        var input = Files.createDirectories(destination.resolve("in"));
+        Files.copy(Paths.get(RES_DIR, "xaip/xaip_ok.xml"), input.resolve("xaip_ok.xml"));
+        Files.copy(Paths.get(RES_DIR, "xaip/xaip_ok.er.xml"), input.resolve("xaip_ok.er.xml"));
+        Files.copy(Paths.get(RES_DIR, "xaip/xaip_ok_ers.xml"), input.resolve("xaip_ok_ers.xml"));
+
+        var output = callMain("-conf",
+            RES_DIR + "config.xml",
+            "-batch",
+            input.toString(),
+            "-threads",
+            "2",
+            "-out",
+            destination.resolve("out").toString());
+
+        assertThat(output, containsString("items: 2, "));
+        assertThat(output, containsString("InsufficientInformation: 2"));
+        assertThat(output, containsString("overall result: urn:oasis:names:tc:dss:1.0:resultmajor:InsufficientInformation"));
+        assertFileExists("out/batch_summary.txt");
+        assertFileExists("out/d9984bc6_2268_4d93_a9ea_50b20dfde3db/report.xml");
+        assertFileExists("out/d9984bc6_2268_4d93_a9ea_50b20dfde3db(1)/report.xml");
+    }
+
+    /**
+     * Asserts that a batch run with a journal skips the items verified by an earlier run.
+     */
+    @Test
+    public void batchResumesFromJournal() throws Exception
+    {
+        var input = Files.createDirectories(destination.resolve("in"));
+        Files.copy(Paths.get(RES_DIR, "xaip/xaip_ok_ers.xml"), input.resolve("xaip_ok_ers.xml"));
+        var journal = destination.resolve("journal.txt").toString();
+
+        var first = callMain("-conf",
+            RES_DIR + "config.xml",
+            "-batch",
+            input.toString(),
+            "-journal",
+            journal,
+            "-out",
+            destination.resolve("out").toString());
+        assertThat(first, not(containsString("taken from journal")));
+        var second = callMain("-conf",
+            RES_DIR + "config.xml",
+            "-batch",
+            input.toString(),
+            "-journal",
+            journal,
+            "-out",
+            destination.resolve("out").toString());
+        assertThat(second, containsString("items: 1, "));
+        assertThat(second, containsString("InsufficientInformation: 1, taken from journal: 1"));
+    }
+
+    /**
+     * Asserts that batch mode refuses to run without output folder.
+     */
+    @Test
+    public void batchRequiresOut() throws IOException
+    {
+        var output = callMain("-conf", RES_DIR + "config.xml", "-batch", RES_DIR + "xaip");
+        assertThat(output, startsWith("batch mode requires parameter -out"));
+    }
+
     /**
      * Asserts that S4 web server can be started using the command line parameters "-server" and "-port".
      */
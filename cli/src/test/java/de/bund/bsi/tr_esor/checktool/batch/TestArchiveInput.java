@@ -0,0 +1,160 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.bund.bsi.tr_esor.checktool.FileOutputChecker;
+import de.bund.bsi.tr_esor.checktool.TestUtils;
+import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+
+
+/**
+ * Unit test for {@link ArchiveInput}.
+ *
+ * @author TT
+ */
+public class TestArchiveInput extends FileOutputChecker
+{
+
+    private static final Path XAIP_DIR = Paths.get("../commons/src/test/resources/xaip/");
+
+    private static final String[] ENTRIES = {"xaip_ok.er.xml", "xaip_ok.xml", "xaip_ok_ers.xml", ".hidden"};
+
+    /**
+     * Loads configuration.
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception
+    {
+        TestUtils.loadDefaultConfig();
+    }
+
+    /**
+     * Asserts that zip entries are paired by name regardless of their order and that the parameters are parsed from the archive.
+     */
+    @Test
+    public void readsZip() throws Exception
+    {
+        var zip = destination.resolve("input.zip");
+        try (var out = new ZipOutputStream(Files.newOutputStream(zip)))
+        {
+            for (var name : ENTRIES)
+            {
+                out.putNextEntry(new ZipEntry("sub/" + name));
+                out.write(content(name));
+                out.closeEntry();
+            }
+        }
+        assertItems(zip);
+    }
+
+    /**
+     * Asserts that compressed tar archives are read the same way as zip files.
+     */
+    @Test
+    public void readsTarGz() throws Exception
+    {
+        var tar = destination.resolve("input.tar.gz");
+        try (var out = new GZIPOutputStream(Files.newOutputStream(tar)))
+        {
+            for (var name : ENTRIES)
+            {
+                writeTarEntry(out, "sub/" + name, content(name));
+            }
+            out.write(new byte[1024]);
+        }
+        assertItems(tar);
+    }
+
+    /**
+     * Asserts that only the supported archive formats are recognized.
+     */
+    @Test
+    public void recognizesArchives()
+    {
+        assertThat(ArchiveInput.isArchive(Paths.get("a.zip"))).isTrue();
+        assertThat(ArchiveInput.isArchive(Paths.get("a.TGZ"))).isTrue();
+        assertThat(ArchiveInput.isArchive(Paths.get("a.tar"))).isTrue();
+        assertThat(ArchiveInput.isArchive(Paths.get("a.xml"))).isFalse();
+    }
+
+    private void assertItems(Path archive) throws IOException
+    {
+        List<BatchItem> items = new ArrayList<>();
+        List<Boolean> erPresent = new ArrayList<>();
+        new ArchiveInput(archive, ProfileNames.RFC4998).read((item, params) -> {
+            items.add(item);
+            erPresent.add(params.getXaip() != null && !params.getProvidedERs().isEmpty());
+        });
+
+        assertThat(items).extracting(i -> name(i.getData()), i -> name(i.getEr()))
+            .containsExactly(tuple("xaip_ok.xml", "xaip_ok.er.xml"), tuple("xaip_ok_ers.xml", null));
+        assertThat(erPresent).containsExactly(true, false);
+    }
+
+    private static byte[] content(String name) throws IOException
+    {
+        return name.startsWith(".") ? new byte[0] : Files.readAllBytes(XAIP_DIR.resolve(name));
+    }
+
+    private static void writeTarEntry(OutputStream out, String name, byte[] content) throws IOException
+    {
+        var header = new byte[512];
+        put(header, 0, name);
+        put(header, 100, "0000644");
+        put(header, 124, String.format("%011o", content.length));
+        header[156] = '0';
+        put(header, 257, "ustar");
+        put(header, 263, "00");
+        out.write(header);
+        out.write(content);
+        out.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static void put(byte[] header, int offset, String value)
+    {
+        var bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+    private static String name(Path path)
+    {
+        return path == null ? null : path.getFileName().toString();
+    }
+}
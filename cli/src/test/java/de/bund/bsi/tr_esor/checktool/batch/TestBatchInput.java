@@ -0,0 +1,110 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import de.bund.bsi.tr_esor.checktool.FileOutputChecker;
+import de.bund.bsi.tr_esor.checktool.TestUtils;
+import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+
+
+/**
+ * Unit test for {@link BatchInput}.
+ *
+ * @author TT
+ */
+public class TestBatchInput extends FileOutputChecker
+{
+
+    /**
+     * Asserts that files in a directory are paired with their detached evidence records by name and that evidence records without data
+     * become items of their own.
+     */
+    @Test
+    public void pairsByName() throws Exception
+    {
+        touch("a.xml", "a.er.xml", "b.bin", "b.bin.ers", "c.xml", "d.ers.xml", ".hidden");
+
+        var items = BatchInput.read(destination, ProfileNames.RFC4998);
+
+        assertThat(items).extracting(i -> name(i.getData()), i -> name(i.getEr()))
+            .containsExactly(tuple("a.xml", "a.er.xml"), tuple("b.bin", "b.bin.ers"), tuple("c.xml", null), tuple(null, "d.ers.xml"));
+        assertThat(items).allMatch(i -> ProfileNames.RFC4998.equals(i.getProfile()));
+    }
+
+    /**
+     * Asserts that manifest entries are resolved relative to the manifest and that empty fields are handled.
+     */
+    @Test
+    public void readsManifest() throws Exception
+    {
+        TestUtils.loadDefaultConfig();
+        var manifest = destination.resolve("manifest.txt");
+        Files.write(manifest,
+            ("# comment\n" + "a.xml;a.er.xml;Basis-ERS\n" + "\n" + "b.xml\n" + ";c.ers\n").getBytes(StandardCharsets.UTF_8));
+
+        var items = BatchInput.read(manifest, ProfileNames.RFC4998);
+
+        assertThat(items).extracting(i -> name(i.getData()), i -> name(i.getEr()), BatchItem::getProfile)
+            .containsExactly(tuple("a.xml", "a.er.xml", "Basis-ERS"),
+                tuple("b.xml", null, ProfileNames.RFC4998),
+                tuple(null, "c.ers", ProfileNames.RFC4998));
+        assertThat(items.get(0).getData()).isEqualTo(destination.toAbsolutePath().resolve("a.xml"));
+    }
+
+    /**
+     * Asserts that a manifest with an unknown profile is rejected before any verification starts.
+     */
+    @Test
+    public void rejectsUnknownProfile() throws Exception
+    {
+        TestUtils.loadDefaultConfig();
+        var manifest = destination.resolve("manifest.txt");
+        Files.write(manifest, "a.xml;;unknown\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> BatchInput.read(manifest, ProfileNames.RFC4998)).isInstanceOf(IOException.class)
+            .hasMessageContaining("line 1");
+    }
+
+    private void touch(String... names) throws IOException
+    {
+        for (var name : names)
+        {
+            Files.createFile(destination.resolve(name));
+        }
+    }
+
+    private static String name(Path path)
+    {
+        return path == null ? null : path.getFileName().toString();
+    }
+}
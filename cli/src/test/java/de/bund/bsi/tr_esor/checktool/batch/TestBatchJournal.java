@@ -0,0 +1,137 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import de.bund.bsi.tr_esor.checktool.FileOutputChecker;
+import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+import de.bund.bsi.tr_esor.checktool.validation.report.OasisDssResultMajor;
+
+
+/**
+ * Unit test for {@link BatchJournal}.
+ *
+ * @author TT
+ */
+public class TestBatchJournal extends FileOutputChecker
+{
+
+    private static final String MINOR = "http://www.bsi.bund.de/ecard/api/1.1/resultminor/il/signature#hashValueMismatch";
+
+    /**
+     * Asserts that a journaled item is found by a later run as long as its input is unchanged and that changed input is verified again.
+     */
+    @Test
+    public void skipsUnchangedInputOnly() throws Exception
+    {
+        var journalFile = destination.resolve("journal.txt");
+        var data = Files.write(destination.resolve("data.bin"), "data".getBytes(StandardCharsets.UTF_8));
+        var er = Files.write(destination.resolve("data.bin.ers"), "er".getBytes(StandardCharsets.UTF_8));
+        var item = new BatchItem(data, er, ProfileNames.RFC4998);
+
+        try (var journal = new BatchJournal(journalFile))
+        {
+            var fingerprint = journal.fingerprint(item);
+            assertThat(journal.lookup(item, fingerprint)).isEmpty();
+            journal.record(item, fingerprint, new BatchItemResult(item, OasisDssResultMajor.REQUESTER_ERROR, MINOR, "msg"));
+        }
+
+        try (var journal = new BatchJournal(journalFile))
+        {
+            var result = journal.lookup(item, journal.fingerprint(item));
+            assertThat(result).isPresent();
+            assertThat(result.get().getMajor()).isEqualTo(OasisDssResultMajor.REQUESTER_ERROR);
+            assertThat(result.get().getMinor()).isEqualTo(MINOR);
+            assertThat(result.get().isJournaled()).isTrue();
+
+            var otherProfile = new BatchItem(data, er, ProfileNames.BASIS_ERS);
+            assertThat(journal.lookup(otherProfile, journal.fingerprint(otherProfile))).isEmpty();
+        }
+
+        Files.write(er, "changed".getBytes(StandardCharsets.UTF_8));
+        try (var journal = new BatchJournal(journalFile))
+        {
+            assertThat(journal.lookup(item, journal.fingerprint(item))).isEmpty();
+        }
+    }
+
+    /**
+     * Asserts that content changed without changing size and modification time is detected by default and is trusted to be unchanged
+     * only if modification times are trusted explicitly.
+     */
+    @Test
+    public void detectsChangedContentWithUnchangedModificationTime() throws Exception
+    {
+        var journalFile = destination.resolve("journal.txt");
+        var data = Files.write(destination.resolve("data.bin"), "data".getBytes(StandardCharsets.UTF_8));
+        var item = new BatchItem(data, null, ProfileNames.RFC4998);
+        try (var journal = new BatchJournal(journalFile))
+        {
+            journal.record(item, journal.fingerprint(item), new BatchItemResult(item, OasisDssResultMajor.SUCCESS, null, ""));
+        }
+
+        var modified = Files.getLastModifiedTime(data);
+        Files.write(data, "evil".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(data, modified);
+
+        try (var journal = new BatchJournal(journalFile))
+        {
+            assertThat(journal.lookup(item, journal.fingerprint(item))).isEmpty();
+        }
+        try (var journal = new BatchJournal(journalFile, true))
+        {
+            assertThat(journal.lookup(item, journal.fingerprint(item))).isPresent();
+        }
+    }
+
+    /**
+     * Asserts that an incomplete last line left by a crashed run is ignored and does not corrupt the entries appended afterwards.
+     */
+    @Test
+    public void ignoresIncompleteLine() throws Exception
+    {
+        var journalFile = destination.resolve("journal.txt");
+        var data = Files.write(destination.resolve("data.bin"), "data".getBytes(StandardCharsets.UTF_8));
+        var item = new BatchItem(data, null, ProfileNames.RFC4998);
+        Files.write(journalFile, "/some/where\tabc".getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE);
+
+        try (var journal = new BatchJournal(journalFile))
+        {
+            journal.record(item, journal.fingerprint(item), new BatchItemResult(item, OasisDssResultMajor.SUCCESS, null, ""));
+        }
+        try (var journal = new BatchJournal(journalFile))
+        {
+            var result = journal.lookup(item, journal.fingerprint(item));
+            assertThat(result).isPresent();
+            assertThat(result.get().getMajor()).isEqualTo(OasisDssResultMajor.SUCCESS);
+            assertThat(result.get().getMinor()).isNull();
+        }
+        assertThat(Files.readAllLines(journalFile)).hasSize(2);
+    }
+}
@@ -0,0 +1,95 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.bund.bsi.tr_esor.checktool.FileOutputChecker;
+import de.bund.bsi.tr_esor.checktool.TestUtils;
+import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+
+
+/**
+ * Unit test for {@link FolderWatcher}.
+ *
+ * @author TT
+ */
+public class TestFolderWatcher extends FileOutputChecker
+{
+
+    /**
+     * Asserts that a file dropped into the spool directory is verified, its report is written and the file is moved to the done folder.
+     */
+    @Test(timeout = 60_000)
+    public void verifiesIncomingFile() throws Exception
+    {
+        TestUtils.loadDefaultConfig();
+        var spool = Files.createDirectories(destination.resolve("spool"));
+        var done = spool.resolve(FolderWatcher.DONE).resolve("xaip_ok_ers.xml");
+        try (var watcher = new FolderWatcher(List.of(spool), destination.resolve("out"), 2, ProfileNames.RFC4998, 100L))
+        {
+            var thread = new Thread(() ->
+            {
+                try
+                {
+                    watcher.run();
+                }
+                catch (Exception e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            Files.copy(Paths.get("../commons/src/test/resources/xaip/xaip_ok_ers.xml"), spool.resolve(".xaip_ok_ers.xml.part"));
+            Files.move(spool.resolve(".xaip_ok_ers.xml.part"), spool.resolve("xaip_ok_ers.xml"));
+            while (!Files.exists(done))
+            {
+                Thread.sleep(100);
+            }
+        }
+        assertThat(spool.resolve("xaip_ok_ers.xml")).doesNotExist();
+        assertFileExists("out/d9984bc6_2268_4d93_a9ea_50b20dfde3db/report.xml");
+    }
+
+    /**
+     * Asserts that moving a file does not overwrite a file of the same name processed earlier.
+     */
+    @Test
+    public void moveKeepsEarlierFiles() throws Exception
+    {
+        var target = Files.createDirectories(destination.resolve("target"));
+        Files.write(target.resolve("a.xml"), "old".getBytes(StandardCharsets.UTF_8));
+        var source = Files.write(destination.resolve("a.xml"), "new".getBytes(StandardCharsets.UTF_8));
+
+        var moved = FolderWatcher.moveTo(source, target);
+
+        assertThat(moved.getFileName().toString()).isEqualTo("a.xml(1)");
+        assertThat(target.resolve("a.xml")).hasContent("old");
+    }
+}
@@ -0,0 +1,103 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.bund.bsi.tr_esor.checktool.FileOutputChecker;
+import de.bund.bsi.tr_esor.checktool.TestUtils;
+import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+import de.bund.bsi.tr_esor.checktool.validation.report.OasisDssResultMajor;
+
+
+/**
+ * Unit test for {@link Worker} and the protocol it speaks with the {@link WorkerPool}.
+ *
+ * @author TT
+ */
+public class TestWorker extends FileOutputChecker
+{
+
+    /**
+     * Loads configuration.
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception
+    {
+        TestUtils.loadDefaultConfig();
+    }
+
+    /**
+     * Asserts that a worker answers each request with one result line, writes the report into the output folder and reports failures
+     * of single items without terminating.
+     */
+    @Test
+    public void servesRequests() throws Exception
+    {
+        var ok = new BatchItem(Paths.get("../commons/src/test/resources/xaip/xaip_ok_ers.xml"), null, ProfileNames.RFC4998);
+        var missing = new BatchItem(Paths.get("missing\tfile.xml"), null, ProfileNames.RFC4998);
+        var requests = WorkerProtocol.formatRequest(ok) + "\n\n" + WorkerProtocol.formatRequest(missing) + "\n";
+        var output = new ByteArrayOutputStream();
+
+        new Worker(destination).serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)),
+            new PrintStream(output, true, StandardCharsets.UTF_8.name()));
+
+        var lines = output.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertThat(lines).hasSize(2).allMatch(WorkerProtocol::isResponse);
+        var first = WorkerProtocol.parseResponse(ok, lines[0]);
+        assertThat(first.result.isFailed()).isFalse();
+        assertThat(first.maxHeap).isPositive();
+        assertThat(WorkerProtocol.parseResponse(missing, lines[1]).result.isFailed()).isTrue();
+        assertFileExists("d9984bc6_2268_4d93_a9ea_50b20dfde3db/report.xml");
+    }
+
+    /**
+     * Asserts that values containing separators survive the protocol.
+     */
+    @Test
+    public void encodesSpecialCharacters() throws IOException
+    {
+        var item = new BatchItem(null, Paths.get("/tmp/a\tb%09.ers"), "profile\n");
+        var parsed = WorkerProtocol.parseRequest(WorkerProtocol.formatRequest(item));
+        assertThat(parsed.getData()).isNull();
+        assertThat(parsed.getEr()).isEqualTo(item.getEr().toAbsolutePath());
+        assertThat(parsed.getProfile()).isEqualTo("profile\n");
+
+        var result = new BatchItemResult(item, OasisDssResultMajor.INSUFFICIENT_INFORMATION, null, "a\tb\r\nc%");
+        var response = WorkerProtocol.parseResponse(item, WorkerProtocol.formatResponse(result, 1, 2));
+        assertThat(response.result.getMajor()).isEqualTo(OasisDssResultMajor.INSUFFICIENT_INFORMATION);
+        assertThat(response.result.getMinor()).isNull();
+        assertThat(response.result.getMessage()).isEqualTo("a\tb\r\nc%");
+        assertThat(response.usedHeap).isEqualTo(1);
+        assertThat(response.maxHeap).isEqualTo(2);
+    }
+}
@@ -0,0 +1,87 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.out;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
+import de.bund.bsi.tr_esor.checktool.validation.report.ReportPart;
+import de.bund.bsi.tr_esor.xaip.PackageHeaderType;
+import de.bund.bsi.tr_esor.xaip.XAIPType;
+
+
+/**
+ * Unit test for {@link SummaryWriter}.
+ *
+ * @author TT
+ */
+public class TestSummaryWriter
+{
+
+    private static final String MAJOR = "urn:oasis:names:tc:dss:1.0:resultmajor:RequesterError";
+
+    /**
+     * Asserts that one JSON object per report part is written with all special characters escaped.
+     */
+    @Test
+    public void ndjson() throws Exception
+    {
+        var output = write(SummaryWriter.Format.NDJSON);
+
+        assertThat(output).isEqualTo("{\"input\":\"in.xml\",\"aoid\":\"4711\",\"reference\":\"data\",\"resultMajor\":\"" + MAJOR
+                                     + "\",\"resultMinor\":\"http://www.bsi.bund.de/ecard/api/1.1/resultminor/al/common#parameterError\","
+                                     + "\"message\":\"first line\\n\\\"quoted\\\"\"}\n");
+    }
+
+    /**
+     * Asserts that CSV output starts with a header line and quotes values as needed.
+     */
+    @Test
+    public void csv() throws Exception
+    {
+        var output = write(SummaryWriter.Format.CSV);
+
+        assertThat(output).startsWith("input,aoid,reference,resultMajor,resultMinor,message\r\n")
+            .contains("in.xml,4711,data," + MAJOR + ",")
+            .endsWith(",\"first line\n\"\"quoted\"\"\"\r\n");
+    }
+
+    private static String write(SummaryWriter.Format format) throws Exception
+    {
+        var xaip = new XAIPType();
+        xaip.setPackageHeader(new PackageHeaderType());
+        xaip.getPackageHeader().setAOID("4711");
+        var part = ReportPart.forNoVerification(new Reference("data"), "first line\n\"quoted\"");
+        try (var outs = new ByteArrayOutputStream();
+            var writer = new SummaryWriter(outs, format))
+        {
+            writer.write("in.xml", xaip, List.of(part));
+            return outs.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
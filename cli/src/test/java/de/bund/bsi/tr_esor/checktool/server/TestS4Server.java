@@ -0,0 +1,140 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Unit test for {@link S4Server} and {@link AdmissionFilter}.
+ *
+ * @author TT
+ */
+public class TestS4Server
+{
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private HttpServer server;
+
+    private String address;
+
+    /**
+     * Starts a server with one concurrent request allowed whose handler blocks POST requests until released.
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        var s4Server = new S4Server(4, 4, 1);
+        server = s4Server.createServer(new InetSocketAddress("localhost", 0));
+        s4Server.createContext(server, "/test").setHandler(exchange -> {
+            if ("POST".equals(exchange.getRequestMethod()))
+            {
+                entered.countDown();
+                try
+                {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            exchange.close();
+        });
+        server.start();
+        address = "http://localhost:" + server.getAddress().getPort() + "/test";
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void tearDown()
+    {
+        release.countDown();
+        server.stop(0);
+    }
+
+    /**
+     * Asserts that a verify request exceeding the limit of concurrent requests is rejected with status 503 at once while other requests
+     * still pass.
+     */
+    @Test(timeout = 20_000)
+    public void rejectsRequestOverLimit() throws Exception
+    {
+        var first = CompletableFuture.supplyAsync(() -> call("POST"));
+        assertThat(entered.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(call("POST")).isEqualTo(HttpURLConnection.HTTP_UNAVAILABLE);
+        assertThat(call("GET")).isEqualTo(HttpURLConnection.HTTP_OK);
+
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo(HttpURLConnection.HTTP_OK);
+        assertThat(call("POST")).isEqualTo(HttpURLConnection.HTTP_OK);
+    }
+
+    private int call(String method)
+    {
+        try
+        {
+            var connection = (HttpURLConnection)new URL(address).openConnection();
+            connection.setRequestMethod(method);
+            if ("POST".equals(method))
+            {
+                connection.setDoOutput(true);
+                connection.getOutputStream().write("<x/>".getBytes(StandardCharsets.UTF_8));
+            }
+            try
+            {
+                return connection.getResponseCode();
+            }
+            finally
+            {
+                connection.disconnect();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -126,8 +126,10 @@ public final class Toolbox
         }
         else if (data.getBinaryData() != null)
         {
-            binaryData = data.getBinaryData().getValue().getInputStream().readAllBytes();
-            data.getBinaryData().getValue().getInputStream().reset();
+            try (var ins = data.getBinaryData().getValue().getInputStream())
+            {
+                binaryData = ins.readAllBytes();
+            }
         }
         return binaryData;
     }
@@ -144,8 +146,10 @@ public final class Toolbox
         }
         else if (meta.getBinaryMetaData() != null)
         {
-            binaryData = meta.getBinaryMetaData().getValue().getInputStream().readAllBytes();
-            meta.getBinaryMetaData().getValue().getInputStream().reset();
+            try (var ins = meta.getBinaryMetaData().getValue().getInputStream())
+            {
+                binaryData = ins.readAllBytes();
+            }
         }
         return binaryData;
     }
@@ -45,6 +45,7 @@ import org.xml.sax.SAXException;
 import de.bund.bsi.tr_esor.checktool._1.ConfigurableObjectType;
 import de.bund.bsi.tr_esor.checktool._1.Configuration;
 import de.bund.bsi.tr_esor.checktool._1.ConfiguredObjectsCollection;
+import de.bund.bsi.tr_esor.checktool._1.EvidenceRecordLimitsType;
 import de.bund.bsi.tr_esor.checktool._1.NamespacePrefixType;
 import de.bund.bsi.tr_esor.checktool._1.ObjectFactory;
 import de.bund.bsi.tr_esor.checktool._1.ParameterType;
@@ -55,8 +56,8 @@ import de.bund.bsi.tr_esor.checktool.validation.NoValidatorException;
 import de.bund.bsi.tr_esor.checktool.validation.ValidationContext;
 import de.bund.bsi.tr_esor.checktool.validation.Validator;
 import de.bund.bsi.tr_esor.checktool.validation.report.ReportPart;
+import de.bund.bsi.tr_esor.checktool.xml.XmlHelper;
 
-import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
 import jakarta.xml.bind.Unmarshaller;
 
@@ -103,7 +104,7 @@ public final class Configurator
     {
         try
         {
-            var ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
+            var ctx = XmlHelper.getContext(ObjectFactory.class.getPackage().getName());
             var u = ctx.createUnmarshaller();
             var schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
             setSchemaForUnmarshaller(u, schemaFactory);
@@ -257,6 +258,26 @@ public final class Configurator
         return config.getGeneral().getHashCreator();
     }
 
+    /**
+     * Returns the limits for parsing ASN.1 evidence records. If none are configured, an object returning the default values is returned.
+     */
+    public EvidenceRecordLimitsType getEvidenceRecordLimits()
+    {
+        assertConfigLoaded();
+        var limits = config.getGeneral().getEvidenceRecordLimits();
+        return limits == null ? new EvidenceRecordLimitsType() : limits;
+    }
+
+    /**
+     * Returns the number of threads for processing protected data objects, at least 1. If none is configured or no configuration is loaded,
+     * the number of available processors is returned.
+     */
+    public int getProtectedDataThreads()
+    {
+        var configured = config == null ? null : config.getGeneral().getProtectedDataThreads();
+        return Math.max(1, configured == null ? Runtime.getRuntime().availableProcessors() : configured);
+    }
+
     /**
      * Returns the name of the default profile.
      */
@@ -0,0 +1,68 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.conf;
+
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Provides the thread pool for processing protected data objects in parallel. Parallel streams run within this pool when started from a
+ * task submitted to it. The pool is replaced when the configured number of threads changes, the replaced pool is shut down and finishes
+ * the tasks already submitted to it.
+ *
+ * @author TT
+ */
+public final class ProtectedDataPool
+{
+
+    private static ForkJoinPool pool;
+
+    private ProtectedDataPool()
+    {
+        // static only
+    }
+
+    /**
+     * Returns the pool with the configured number of threads.
+     */
+    public static synchronized ForkJoinPool get()
+    {
+        var threads = Configurator.getInstance().getProtectedDataThreads();
+        if (pool == null || pool.getParallelism() != threads)
+        {
+            if (pool != null)
+            {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * Returns <code>true</code> if the configuration allows processing in parallel.
+     */
+    public static boolean isParallel()
+    {
+        return Configurator.getInstance().getProtectedDataThreads() > 1;
+    }
+}
@@ -0,0 +1,100 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.conf;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.xml.security.Init;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.bund.bsi.tr_esor.checktool.validation.ParserFactory;
+import de.bund.bsi.tr_esor.checktool.xml.VRCreator;
+import de.bund.bsi.tr_esor.checktool.xml.XmlHelper;
+
+import jakarta.xml.bind.JAXBException;
+
+
+/**
+ * Initializes the expensive singletons (algorithm catalog, parser factory, JAXB contexts, XML schemas and XML security) in parallel
+ * background threads. All of these objects are initialized on first use anyway, calling this class just moves the work out of the path
+ * of the first validation. Must be called after the configuration has been loaded.
+ *
+ * @author TT
+ */
+public final class StartupInitializer
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupInitializer.class);
+
+    private StartupInitializer()
+    {
+        // static only
+    }
+
+    /**
+     * Starts the initialization in daemon threads.
+     *
+     * @return future which completes when all objects are initialized, it never completes exceptionally
+     */
+    public static CompletableFuture<Void> initializeInBackground()
+    {
+        var tasks = new Runnable[]{AlgorithmCatalog::getInstance, ParserFactory::getInstance, VRCreator::preloadSchema,
+                                   StartupInitializer::preloadContexts, StartupInitializer::initXmlSecurity};
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks.length, Runtime.getRuntime().availableProcessors()), r -> {
+            var thread = new Thread(r, "startup-init");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var futures = new CompletableFuture<?>[tasks.length];
+        for (var i = 0; i < tasks.length; i++)
+        {
+            futures[i] = CompletableFuture.runAsync(tasks[i], executor).exceptionally(e -> {
+                LOG.warn("early initialization failed", e);
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(futures).whenComplete((v, e) -> executor.shutdown());
+    }
+
+    private static void preloadContexts()
+    {
+        try
+        {
+            XmlHelper.preloadContexts();
+        }
+        catch (JAXBException e)
+        {
+            LOG.warn("cannot create JAXB contexts", e);
+        }
+    }
+
+    private static void initXmlSecurity()
+    {
+        if (!Init.isInitialized())
+        {
+            Init.init();
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package de.bund.bsi.tr_esor.checktool.data;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 import org.bouncycastle.asn1.ASN1Encodable;
@@ -59,6 +60,51 @@ public final class ASN1Utils
             : AlgorithmIdentifier.getInstance(Checked.cast(data).to(ASN1Sequence.class));
     }
 
+    /**
+     * Returns the DER encoding of a SEQUENCE with the given DER encoded elements without decoding and encoding them again.
+     *
+     * @param elements DER encodings of the elements in order
+     */
+    public static byte[] encodeDerSequence(List<byte[]> elements)
+    {
+        var length = 0;
+        for (var element : elements)
+        {
+            length += element.length;
+        }
+        var lengthOctets = 1;
+        if (length > 0x7f)
+        {
+            for (var rest = length; rest > 0; rest >>>= 8)
+            {
+                lengthOctets++;
+            }
+        }
+        var result = new byte[1 + lengthOctets + length];
+        result[0] = 0x30;
+        if (lengthOctets == 1)
+        {
+            result[1] = (byte)length;
+        }
+        else
+        {
+            result[1] = (byte)(0x80 | (lengthOctets - 1));
+            var rest = length;
+            for (var i = lengthOctets - 1; i > 0; i--)
+            {
+                result[1 + i] = (byte)rest;
+                rest >>>= 8;
+            }
+        }
+        var pos = 1 + lengthOctets;
+        for (var element : elements)
+        {
+            System.arraycopy(element, 0, result, pos, element.length);
+            pos += element.length;
+        }
+        return result;
+    }
+
     /**
      * Returns a human-readable string representing a signer ID.
      *
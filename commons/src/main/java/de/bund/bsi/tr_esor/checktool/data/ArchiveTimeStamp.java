@@ -28,30 +28,27 @@ import java.util.List;
 import java.util.Objects;
 
 import org.bouncycastle.asn1.ASN1Encodable;
-import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1Encoding;
-import org.bouncycastle.asn1.ASN1InputStream;
 import org.bouncycastle.asn1.ASN1Object;
 import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.ASN1Set;
 import org.bouncycastle.asn1.ASN1TaggedObject;
-import org.bouncycastle.asn1.DERSequence;
 import org.bouncycastle.asn1.DERTaggedObject;
 import org.bouncycastle.asn1.DLSet;
 import org.bouncycastle.asn1.cms.Attributes;
 import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.tsp.TSPException;
 import org.bouncycastle.tsp.TimeStampToken;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 
 /**
- * Parsed ArchiveTimeStamp (partial hash tree + TSP).
+ * Parsed ArchiveTimeStamp (partial hash tree + TSP). The ASN&#46;1 structure given to the constructor is kept, encodings are created only
+ * once and the time stamp token is decoded on first access. Instances are thread safe.
  *
  * @author TT
  */
@@ -64,8 +61,6 @@ public class ArchiveTimeStamp implements ASN1Encodable
 
     private static final int TAGNO_REDUCEDHASHTREE = 2;
 
-    private static final Logger LOG = LoggerFactory.getLogger(ArchiveTimeStamp.class);
-
     /** Algorithm ID of hash algorithm. */
     private AlgorithmIdentifier digestAlgo = null;
 
@@ -74,8 +69,22 @@ public class ArchiveTimeStamp implements ASN1Encodable
 
     private List<PartialHashtree> reducedHashtree = null;
 
+    private final ASN1Primitive primitive;
+
+    private CMSSignedData timeStampSignedData;
+
+    private ASN1Primitive timeStampContentInfo;
+
     private TimeStampToken timeStampToken;
 
+    private DecodedTimeStamp decodedTimeStamp;
+
+    private IOException decodingError;
+
+    private byte[] encoded;
+
+    private byte[] encodedTimeStamp;
+
     /**
      * Initializes the ArchiveTimeStamp by the given ASN1Encodable.
      *
@@ -84,7 +93,7 @@ public class ArchiveTimeStamp implements ASN1Encodable
      */
     public ArchiveTimeStamp(ASN1Encodable obj) throws IOException
     {
-
+        primitive = obj.toASN1Primitive();
         var indexOfLastElementInDef = -1; // number of element in definition, some may be skipped
         for (var element : Checked.cast(obj).to(ASN1Sequence.class))
         {
@@ -114,7 +123,7 @@ public class ArchiveTimeStamp implements ASN1Encodable
             {
                 final var defPosTsp = 4;
                 indexOfLastElementInDef = checkSequence(indexOfLastElementInDef, defPosTsp);
-                timeStampToken = parseTimeStampToken((ASN1Sequence)element);
+                parseTimeStampToken((ASN1Sequence)element);
             }
         }
     }
@@ -128,19 +137,26 @@ public class ArchiveTimeStamp implements ASN1Encodable
         throw new IOException("unexpected element in ASN1Sequence for ATS");
     }
 
-    private TimeStampToken parseTimeStampToken(ASN1Sequence e) throws IOException
+    /**
+     * Checks the structure of the time stamp token as far as it is cheap, the TSTInfo is decoded when needed.
+     */
+    private void parseTimeStampToken(ASN1Sequence e) throws IOException
     {
         Objects.requireNonNull(e, "ASN.1 encoded time stamp token");
         try
         {
-            var encodedBytes = e.toASN1Primitive().getEncoded(ASN1Encoding.DER);
-            Objects.requireNonNull(e, "encoded bytes");
-            return new TimeStampToken(new CMSSignedData(encodedBytes));
+            timeStampSignedData = new CMSSignedData(ContentInfo.getInstance(e));
         }
-        catch (TSPException | CMSException ex)
+        catch (CMSException | IllegalArgumentException ex)
         {
             throw new IOException("not valid (ATS-3)", ex);
         }
+        if (!PKCSObjectIdentifiers.id_ct_TSTInfo.getId().equals(timeStampSignedData.getSignedContentTypeOID())
+            || timeStampSignedData.getSignerInfos().size() != 1)
+        {
+            throw new IOException("not valid (ATS-3)");
+        }
+        timeStampContentInfo = e.toASN1Primitive();
     }
 
     private void parseReducedHashtree(ASN1TaggedObject t) throws IOException
@@ -183,27 +199,33 @@ public class ArchiveTimeStamp implements ASN1Encodable
 
     /**
      * Gets the date of TimeStamp.
+     *
+     * @throws IllegalStateException if the token cannot be decoded, see {@link #decodeTimeStampToken()}
      */
     public Date getSignDateFromTimeStamp()
     {
-        if (timeStampToken == null)
+        var tst = getTimeStampToken();
+        if (tst == null)
         {
             return null;
         }
 
-        return timeStampToken.getTimeStampInfo().getGenTime();
+        return tst.getTimeStampInfo().getGenTime();
     }
 
     /**
      * Gets the OID from the TimeStampToken.
+     *
+     * @throws IllegalStateException if the token cannot be decoded, see {@link #decodeTimeStampToken()}
      */
     public String getOidFromTimeStamp()
     {
-        if (timeStampToken == null)
+        var tst = getTimeStampToken();
+        if (tst == null)
         {
             return null;
         }
-        return timeStampToken.getTimeStampInfo().getMessageImprintAlgOID().getId();
+        return tst.getTimeStampInfo().getMessageImprintAlgOID().getId();
     }
 
     /**
@@ -236,71 +258,128 @@ public class ArchiveTimeStamp implements ASN1Encodable
 
     /**
      * Gets the ContentInfo with TimeStampToken as content correctly DER encoded for comparison in ER. This is NOT the encoded
-     * ArchiveTimeStamp (reduced hash tree, ...)!
+     * ArchiveTimeStamp (reduced hash tree, ...)! The encoding is created once, callers must not modify the returned array.
      *
      * @return the DER encoded ContentInfo with TimeStampToken as content
      * @throws IOException
      */
-    public byte[] getContentOfTimeStampField() throws IOException
+    public synchronized byte[] getContentOfTimeStampField() throws IOException
     {
-        try (var ais = new ASN1InputStream(timeStampToken.getEncoded()))
+        if (encodedTimeStamp == null)
         {
-            var info = ContentInfo.getInstance(ais.readObject());
-            return info.getEncoded(ASN1Encoding.DER);
+            if (timeStampContentInfo == null)
+            {
+                throw new IOException("ATS does not contain a time stamp token");
+            }
+            encodedTimeStamp = timeStampContentInfo.getEncoded(ASN1Encoding.DER);
         }
+        return encodedTimeStamp;
     }
 
     /**
-     * Returns the (bouncycastle) TimeStampToken object.
+     * Returns the DER encoded ArchiveTimeStamp. The encoding is created once, callers must not modify the returned array.
+     *
+     * @throws IOException
      */
-    public TimeStampToken getTimeStampToken()
+    public synchronized byte[] getEncoded() throws IOException
     {
-        return timeStampToken;
+        if (encoded == null)
+        {
+            encoded = primitive.getEncoded(ASN1Encoding.DER);
+        }
+        return encoded;
     }
 
     /**
-     * Gets the attributes of the ArchiveTimeStamp.
+     * Decodes the time stamp token on first call. Validators call this method before any method which needs the content of the token, so
+     * that a token which cannot be decoded is reported as invalid instead of aborting the validation.
+     *
+     * @throws IOException with message "not valid (ATS-3)" if the TSTInfo or the signing certificate attribute cannot be decoded, the
+     *             same exception is thrown on each call
      */
-    public Attributes getAttributes()
+    public synchronized void decodeTimeStampToken() throws IOException
     {
-        return attributes;
+        if (decodingError != null)
+        {
+            throw decodingError;
+        }
+        if (timeStampToken == null && timeStampSignedData != null)
+        {
+            try
+            {
+                var token = new TimeStampToken(timeStampSignedData);
+                decodedTimeStamp = new DecodedTimeStamp(token);
+                timeStampToken = token;
+            }
+            catch (TSPException | IOException | RuntimeException e)
+            {
+                decodingError = new IOException("not valid (ATS-3)", e);
+                throw decodingError;
+            }
+        }
     }
 
-    @Override
-    public ASN1Primitive toASN1Primitive()
+    /**
+     * Returns <code>true</code> if the time stamp token can be decoded, see {@link #decodeTimeStampToken()}.
+     */
+    public boolean isTimeStampTokenDecodable()
     {
-        var ats = new ASN1EncodableVector();
-        if (digestAlgo != null)
-        {
-            var t = new DERTaggedObject(false, TAGNO_DIGESTALGO, digestAlgo);
-            ats.add(t);
-        }
-        if (attributes != null)
+        try
         {
-            var t = new DERTaggedObject(false, TAGNO_ATTRIBUTES, attributes);
-            ats.add(t);
+            decodeTimeStampToken();
+            return true;
         }
-        if (reducedHashtree != null)
+        catch (IOException e)
         {
-            var va = new ASN1EncodableVector();
-            for (var i = 0; i < reducedHashtree.size(); i++)
-            {
-                va.add(reducedHashtree.get(i).toASN1Primitive());
-            }
-            var t = new DERTaggedObject(false, TAGNO_REDUCEDHASHTREE, new DERSequence(va));
-            ats.add(t);
+            return false;
         }
+    }
 
-        try (var ais = new ASN1InputStream(timeStampToken.getEncoded()))
+    /**
+     * Returns the (bouncycastle) TimeStampToken object, decoding it on first call.
+     *
+     * @throws IllegalStateException if the token cannot be decoded, call {@link #decodeTimeStampToken()} first to handle that case
+     */
+    public synchronized TimeStampToken getTimeStampToken()
+    {
+        decodeOrFail();
+        return timeStampToken;
+    }
+
+    /**
+     * Returns the decoded view of the time stamp token which is shared by all checks of this ArchiveTimeStamp, creating it on first call.
+     *
+     * @throws IllegalStateException if the token cannot be decoded, call {@link #decodeTimeStampToken()} first to handle that case
+     */
+    public synchronized DecodedTimeStamp getDecodedTimeStamp()
+    {
+        decodeOrFail();
+        return decodedTimeStamp;
+    }
+
+    private void decodeOrFail()
+    {
+        try
         {
-            var info = ContentInfo.getInstance(ais.readObject());
-            ats.add(info);
-            return new DERSequence(ats);
+            decodeTimeStampToken();
         }
         catch (IOException e)
         {
-            LOG.error("Invalid input data in TimeStampToken", e);
-            return null;
+            throw new IllegalStateException(e.getMessage(), e);
         }
     }
+
+    /**
+     * Gets the attributes of the ArchiveTimeStamp.
+     */
+    public Attributes getAttributes()
+    {
+        return attributes;
+    }
+
+    @Override
+    public ASN1Primitive toASN1Primitive()
+    {
+        return primitive;
+    }
 }
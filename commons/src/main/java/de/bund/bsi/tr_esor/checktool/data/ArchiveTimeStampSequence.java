@@ -23,6 +23,7 @@ package de.bund.bsi.tr_esor.checktool.data;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1EncodableVector;
@@ -74,13 +75,18 @@ public class ArchiveTimeStampSequence extends ArrayList<ArchiveTimeStampChain> i
     }
 
     /**
-     * Returns the ASN&#46;1 encoded representation of this ATS sequence.
+     * Returns the ASN&#46;1 encoded representation of this ATS sequence, built from the encodings the contained ATSs keep.
      *
      * @throws IOException
      */
     public byte[] getEncoded() throws IOException
     {
-        return toASN1Primitive().getEncoded();
+        List<byte[]> elements = new ArrayList<>(size());
+        for (var chain : this)
+        {
+            elements.add(chain.getEncoded());
+        }
+        return ASN1Utils.encodeDerSequence(elements);
     }
 
     @Override
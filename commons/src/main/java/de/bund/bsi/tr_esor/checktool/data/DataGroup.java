@@ -117,7 +117,9 @@ public class DataGroup
             ensureHashListIsSet();
             try
             {
-                groupHash = ValidatorFactory.getInstance().getHashCreator().calculateHash(sortedAndConcatenatedHashes(), oid);
+                var hasher = ValidatorFactory.getInstance().getHashCreator().start(oid);
+                sortedHashes().forEach(hasher::update);
+                groupHash = hasher.finish();
             }
             catch (NoSuchAlgorithmException | ReflectiveOperationException e)
             {
@@ -141,11 +143,9 @@ public class DataGroup
      */
     public byte[] sortedAndConcatenatedHashes()
     {
-        List<byte[]> hashList = new ArrayList<>(hashes);
-        hashList.sort(this::compare);
         try (var concatenated = new ByteArrayOutputStream())
         {
-            for (var hash : hashList)
+            for (var hash : sortedHashes())
             {
                 concatenated.write(hash);
             }
@@ -157,6 +157,13 @@ public class DataGroup
         }
     }
 
+    private List<byte[]> sortedHashes()
+    {
+        List<byte[]> hashList = new ArrayList<>(hashes);
+        hashList.sort(this::compare);
+        return hashList;
+    }
+
     private int compare(byte[] b1, byte[] b2)
     {
         for (var i = 0; i < Math.min(b1.length, b2.length); i++)
@@ -0,0 +1,206 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.data;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.cms.SignedData;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.bouncycastle.tsp.TimeStampTokenInfo;
+
+
+/**
+ * Decoded view of a time stamp token which is created once per archive time stamp and shared by all checks of that time stamp, so that
+ * the structure is not parsed again by each of them.
+ *
+ * @author TT
+ */
+public final class DecodedTimeStamp
+{
+
+    private final TimeStampToken token;
+
+    private final ContentInfo contentInfo;
+
+    private final SignedData signedData;
+
+    private final TimeStampTokenInfo timeStampInfo;
+
+    private final Collection<X509CertificateHolder> certificates;
+
+    private final X509CertificateHolder signerCertificate;
+
+    private final Collection<X509CRLHolder> crls;
+
+    private final Collection<SignerInformation> signers;
+
+    private final CAdESReader cadesReader;
+
+    private X509Certificate x509SignerCertificate;
+
+    private List<X509Certificate> x509Certificates;
+
+    /**
+     * Decodes given token.
+     *
+     * @param token
+     */
+    public DecodedTimeStamp(TimeStampToken token)
+    {
+        this.token = token;
+        var cms = token.toCMSSignedData();
+        contentInfo = cms.toASN1Structure();
+        signedData = SignedData.getInstance(contentInfo.getContent());
+        timeStampInfo = token.getTimeStampInfo();
+        certificates = Collections.unmodifiableCollection(token.getCertificates().getMatches(null));
+        signerCertificate = token.getCertificates().getMatches(token.getSID()).stream().findFirst().orElse(null);
+        crls = Collections.unmodifiableCollection(token.getCRLs().getMatches(null));
+        signers = Collections.unmodifiableCollection(cms.getSignerInfos().getSigners());
+        cadesReader = new CAdESReader(cms);
+    }
+
+    /**
+     * Returns the token this view was created from.
+     */
+    public TimeStampToken getToken()
+    {
+        return token;
+    }
+
+    /**
+     * Returns the content info of the token.
+     */
+    public ContentInfo getContentInfo()
+    {
+        return contentInfo;
+    }
+
+    /**
+     * Returns the signed data contained in the content info.
+     */
+    public SignedData getSignedData()
+    {
+        return signedData;
+    }
+
+    /**
+     * Returns the decoded TSTInfo.
+     */
+    public TimeStampTokenInfo getTimeStampInfo()
+    {
+        return timeStampInfo;
+    }
+
+    /**
+     * Returns all certificates contained in the token.
+     */
+    public Collection<X509CertificateHolder> getCertificates()
+    {
+        return certificates;
+    }
+
+    /**
+     * Returns the certificate of the time stamp signer or <code>null</code> if the token does not contain it.
+     */
+    public X509CertificateHolder getSignerCertificate()
+    {
+        return signerCertificate;
+    }
+
+    /**
+     * Returns all CRLs contained in the token.
+     */
+    public Collection<X509CRLHolder> getCrls()
+    {
+        return crls;
+    }
+
+    /**
+     * Returns the signer infos of the token.
+     */
+    public Collection<SignerInformation> getSigners()
+    {
+        return signers;
+    }
+
+    /**
+     * Returns a reader for the unsigned attributes of the signer.
+     */
+    public CAdESReader getCAdESReader()
+    {
+        return cadesReader;
+    }
+
+    /**
+     * Returns the certificate of the time stamp signer, converted on first call.
+     *
+     * @throws CertificateException if the token does not contain a valid signer certificate
+     */
+    public synchronized X509Certificate getX509SignerCertificate() throws CertificateException
+    {
+        if (x509SignerCertificate == null)
+        {
+            if (signerCertificate == null)
+            {
+                throw new CertificateException("time stamp does not contain the signer certificate");
+            }
+            x509SignerCertificate = new JcaX509CertificateConverter().getCertificate(signerCertificate);
+        }
+        return x509SignerCertificate;
+    }
+
+    /**
+     * Returns all certificates which can be converted, converted on first call.
+     */
+    public synchronized List<X509Certificate> getX509Certificates()
+    {
+        if (x509Certificates == null)
+        {
+            var converter = new JcaX509CertificateConverter();
+            List<X509Certificate> result = new ArrayList<>();
+            for (var certificate : certificates)
+            {
+                try
+                {
+                    result.add(converter.getCertificate(certificate));
+                }
+                catch (CertificateException ignored)
+                {
+                    // certificates which cannot be converted cannot be issuers either
+                }
+            }
+            x509Certificates = Collections.unmodifiableList(result);
+        }
+        return x509Certificates;
+    }
+}
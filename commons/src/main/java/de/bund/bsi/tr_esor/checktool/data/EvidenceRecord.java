@@ -21,9 +21,13 @@
  */
 package de.bund.bsi.tr_esor.checktool.data;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1TaggedObject;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 
 
@@ -49,6 +53,12 @@ public class EvidenceRecord
     /** Encryption info. */
     private EncryptionInfo encryptInfo = null;
 
+    /** Encoded tagged crypto info, decoded on first access. */
+    private byte[] encodedCryptoInfo;
+
+    /** Encoded tagged encryption info, decoded on first access. */
+    private byte[] encodedEncryptInfo;
+
 
     /**
      * Creates a new EvidenceRecord object based on the given data.
@@ -69,6 +79,24 @@ public class EvidenceRecord
         this.encryptInfo = encryptInfo;
     }
 
+    /**
+     * Creates a new EvidenceRecord object which decodes crypto info and encryption info only when they are requested.
+     *
+     * @param version version number of ER
+     * @param digestAlgos list of hash algorithms
+     * @param atss the used archive timestamp sequence
+     * @param encodedCryptoInfo encoded tagged crypto info as contained in the ER, may be <code>null</code>
+     * @param encodedEncryptInfo encoded tagged encryption info as contained in the ER, may be <code>null</code>
+     */
+    public static EvidenceRecord withEncodedInfos(int version, List<AlgorithmIdentifier> digestAlgos, ArchiveTimeStampSequence atss,
+        byte[] encodedCryptoInfo, byte[] encodedEncryptInfo)
+    {
+        var result = new EvidenceRecord(version, digestAlgos, atss, null, null);
+        result.encodedCryptoInfo = encodedCryptoInfo;
+        result.encodedEncryptInfo = encodedEncryptInfo;
+        return result;
+    }
+
     /**
      * Gets version number.
      *
@@ -93,9 +121,22 @@ public class EvidenceRecord
      * Gets crypto info.
      *
      * @return crypto info
+     * @throws IllegalStateException if the encoded crypto info is not valid
      */
-    public CryptoInfo getCryptoInfo()
+    public synchronized CryptoInfo getCryptoInfo()
     {
+        if (encodedCryptoInfo != null)
+        {
+            try
+            {
+                cryptoInfo = new CryptoInfo(decodeTagged(encodedCryptoInfo));
+            }
+            catch (IOException | IllegalArgumentException e)
+            {
+                throw new IllegalStateException("invalid crypto info: " + e.getMessage(), e);
+            }
+            encodedCryptoInfo = null;
+        }
         return cryptoInfo;
     }
 
@@ -103,12 +144,31 @@ public class EvidenceRecord
      * Gets encryption info.
      *
      * @return encryption info
+     * @throws IllegalStateException if the encoded encryption info is not valid
      */
-    public EncryptionInfo getEncryptionInfo()
+    public synchronized EncryptionInfo getEncryptionInfo()
     {
+        if (encodedEncryptInfo != null)
+        {
+            try
+            {
+                encryptInfo = new EncryptionInfo(decodeTagged(encodedEncryptInfo));
+            }
+            catch (IOException | IllegalArgumentException e)
+            {
+                throw new IllegalStateException("invalid encryption info: " + e.getMessage(), e);
+            }
+            encodedEncryptInfo = null;
+        }
         return encryptInfo;
     }
 
+    private static ASN1Sequence decodeTagged(byte[] encoded) throws IOException
+    {
+        var tagged = Checked.cast(ASN1Primitive.fromByteArray(encoded)).to(ASN1TaggedObject.class);
+        return ASN1Sequence.getInstance(tagged, false);
+    }
+
     /**
      * Returns the archive time stamp sequence.
      */
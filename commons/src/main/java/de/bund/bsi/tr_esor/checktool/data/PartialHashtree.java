@@ -46,6 +46,13 @@ public class PartialHashtree extends ArrayList<byte[]> implements ASN1Encodable
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Parsed structure, returned as long as this list is unchanged.
+     */
+    private final transient ASN1Primitive parsed;
+
+    private final int parsedModCount;
+
     /**
      * constructor (generated from input parameter)
      *
@@ -71,6 +78,8 @@ public class PartialHashtree extends ArrayList<byte[]> implements ASN1Encodable
             var o = (ASN1OctetString)e;
             add(o.getOctets());
         }
+        parsed = s.toASN1Primitive();
+        parsedModCount = modCount;
     }
 
     /**
@@ -84,6 +93,10 @@ public class PartialHashtree extends ArrayList<byte[]> implements ASN1Encodable
     @Override
     public ASN1Primitive toASN1Primitive()
     {
+        if (parsed != null && modCount == parsedModCount)
+        {
+            return parsed;
+        }
         var pht = new ASN1EncodableVector();
         stream().map(DEROctetString::new).forEach(pht::add);
         return new DERSequence(pht);
@@ -0,0 +1,271 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.InvalidMarkException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import de.bund.bsi.tr_esor.checktool.hash.HashCreator;
+import de.bund.bsi.tr_esor.checktool.hash.Hasher;
+
+import jakarta.activation.DataHandler;
+
+
+/**
+ * Data protected by an evidence record. The content is either held in memory, viewed through a buffer (for instance a memory-mapped
+ * file) or read from its source each time it is needed, so that large data objects (for instance binary data which the XAIP parser stored
+ * in a temporary file) never have to be copied onto the heap for hashing.
+ *
+ * @author TT
+ */
+public final class ProtectedData
+{
+
+    private final byte[] bytes;
+
+    private final ByteBuffer buffer;
+
+    private final DataHandler source;
+
+    private ProtectedData(byte[] bytes, ByteBuffer buffer, DataHandler source)
+    {
+        this.bytes = bytes;
+        this.buffer = buffer;
+        this.source = source;
+    }
+
+    /**
+     * Returns an instance holding given content.
+     */
+    public static ProtectedData of(byte[] bytes)
+    {
+        return new ProtectedData(Objects.requireNonNull(bytes, "protected data"), null, null);
+    }
+
+    /**
+     * Returns an instance viewing the remaining content of given buffer, which must not be modified afterwards. Use for memory-mapped
+     * files.
+     */
+    public static ProtectedData of(ByteBuffer buffer)
+    {
+        return new ProtectedData(null, Objects.requireNonNull(buffer, "protected data buffer").asReadOnlyBuffer(), null);
+    }
+
+    /**
+     * Returns an instance which reads its content from given data handler whenever needed.
+     */
+    public static ProtectedData of(DataHandler source)
+    {
+        return new ProtectedData(null, null, Objects.requireNonNull(source, "protected data source"));
+    }
+
+    /**
+     * Returns a new stream over the content. The caller has to close it. Streams over content held in memory or in a buffer support
+     * mark/reset.
+     *
+     * @throws IOException
+     */
+    public InputStream open() throws IOException
+    {
+        if (bytes != null)
+        {
+            return new ByteArrayInputStream(bytes);
+        }
+        return buffer == null ? source.getInputStream() : new ByteBufferInputStream(buffer.duplicate());
+    }
+
+    /**
+     * Returns the content as byte array, reading it from its source if necessary. Use only if an array is really required.
+     *
+     * @throws IOException
+     */
+    public byte[] getBytes() throws IOException
+    {
+        if (bytes != null)
+        {
+            return bytes;
+        }
+        if (buffer != null)
+        {
+            var result = new byte[buffer.remaining()];
+            buffer.duplicate().get(result);
+            return result;
+        }
+        try (var ins = open())
+        {
+            return ins.readAllBytes();
+        }
+    }
+
+    /**
+     * Calculates the digest of the content without creating an in-memory copy of data read from a source.
+     *
+     * @param hashCreator
+     * @param oid digest algorithm
+     * @throws NoSuchAlgorithmException
+     * @throws IOException
+     */
+    public byte[] digest(HashCreator hashCreator, String oid) throws NoSuchAlgorithmException, IOException
+    {
+        if (bytes != null)
+        {
+            return hashCreator.calculateHash(bytes, oid);
+        }
+        if (buffer != null)
+        {
+            return hashCreator.calculateHash(buffer.duplicate(), oid);
+        }
+        try (var ins = open())
+        {
+            return hashCreator.calculateHash(ins, oid);
+        }
+    }
+
+    /**
+     * Calculates the digests of the content with several algorithms, reading the content only once.
+     *
+     * @param hashCreator
+     * @param oids digest algorithms
+     * @return digests by algorithm OID
+     * @throws NoSuchAlgorithmException
+     * @throws IOException
+     */
+    public Map<String, byte[]> digest(HashCreator hashCreator, Collection<String> oids) throws NoSuchAlgorithmException, IOException
+    {
+        Map<String, Hasher> hashers = new HashMap<>();
+        for (var oid : oids)
+        {
+            hashers.put(oid, hashCreator.start(oid));
+        }
+        if (bytes != null)
+        {
+            hashers.values().forEach(h -> h.update(bytes));
+        }
+        else if (buffer != null)
+        {
+            hashers.values().forEach(h -> h.update(buffer.duplicate()));
+        }
+        else
+        {
+            try (var ins = open())
+            {
+                var chunk = new byte[HashCreator.STREAM_BUFFER_SIZE];
+                for (var read = ins.read(chunk); read >= 0; read = ins.read(chunk))
+                {
+                    for (var hasher : hashers.values())
+                    {
+                        hasher.update(chunk, 0, read);
+                    }
+                }
+            }
+        }
+        Map<String, byte[]> result = new HashMap<>();
+        for (var entry : hashers.entrySet())
+        {
+            result.put(entry.getKey(), entry.getValue().finish());
+        }
+        return result;
+    }
+
+    /**
+     * Stream over a buffer, supporting mark/reset.
+     */
+    private static final class ByteBufferInputStream extends InputStream
+    {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            if (!buffer.hasRemaining())
+            {
+                return -1;
+            }
+            var result = Math.min(len, buffer.remaining());
+            buffer.get(b, off, result);
+            return result;
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            var result = (int)Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + result);
+            return result;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit)
+        {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() throws IOException
+        {
+            try
+            {
+                buffer.reset();
+            }
+            catch (InvalidMarkException e)
+            {
+                throw new IOException("stream has not been marked", e);
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.cms.Attribute;
@@ -36,7 +37,9 @@ import org.bouncycastle.cms.SignerInformationStore;
 
 import de.bund.bsi.tr_esor.checktool.data.ASN1Utils;
 import de.bund.bsi.tr_esor.checktool.data.EvidenceRecord;
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
 import de.bund.bsi.tr_esor.checktool.parser.ASN1EvidenceRecordParser;
+import de.bund.bsi.tr_esor.checktool.parser.StreamedCmsSignedData;
 import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
 
 
@@ -111,19 +114,22 @@ public class CmsSignedDataReader
     }
 
     /**
-     * Returns the content info minus the referenced evidence records and all subsequence evidence records for the same signer.
+     * Returns the content info minus the referenced evidence records and all subsequence evidence records for the same signer. If the
+     * encapsulated content has been streamed, the encoding is spliced together when it is read instead of being built in memory.
      *
      * @param erRef
      * @throws IOException
      */
-    public byte[] getContentInfoProtectedByEr(Reference erRef) throws IOException
+    public ProtectedData getContentInfoProtectedByEr(Reference erRef) throws IOException
     {
         var sid = signerIdByReference.get(erRef);
-        if (sid == null)
+        UnaryOperator<CMSSignedData> derivation = sid == null ? UnaryOperator.identity()
+            : c -> cmsWithout(c, sid, oid, posByReference.get(erRef).intValue());
+        if (cms instanceof StreamedCmsSignedData)
         {
-            return cms.getEncoded();
+            return ((StreamedCmsSignedData)cms).encode(derivation);
         }
-        return cmsWithout(cms, sid, oid, posByReference.get(erRef).intValue());
+        return ProtectedData.of(derivation.apply(cms).getEncoded());
     }
 
     /**
@@ -142,10 +148,9 @@ public class CmsSignedDataReader
      * @param sid
      * @param oid
      * @param i
-     * @throws IOException
      */
     @SuppressWarnings("PMD.NullAssignment")
-    private static byte[] cmsWithout(CMSSignedData cms, SignerId sid, ASN1ObjectIdentifier oid, int i) throws IOException
+    private static CMSSignedData cmsWithout(CMSSignedData cms, SignerId sid, ASN1ObjectIdentifier oid, int i)
     {
         List<SignerInformation> si = new ArrayList<>();
         for (var signerInformation : cms.getSignerInfos())
@@ -170,6 +175,6 @@ public class CmsSignedDataReader
                 si.add(signerInformation);
             }
         }
-        return CMSSignedData.replaceSigners(cms, new SignerInformationStore(si)).getEncoded();
+        return CMSSignedData.replaceSigners(cms, new SignerInformationStore(si));
     }
 }
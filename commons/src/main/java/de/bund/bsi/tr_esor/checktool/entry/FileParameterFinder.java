@@ -23,22 +23,30 @@ package de.bund.bsi.tr_esor.checktool.entry;
 
 import static de.bund.bsi.tr_esor.checktool.xml.XmlHelper.FACTORY_OASIS_VR;
 
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
-import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.util.encoders.DecoderException;
+import org.bouncycastle.util.encoders.Hex;
 
-import de.bund.bsi.tr_esor.checktool.data.EvidenceRecord;
-import de.bund.bsi.tr_esor.checktool.data.UnsupportedData;
-import de.bund.bsi.tr_esor.checktool.data.XaipAndSerializer;
-import de.bund.bsi.tr_esor.checktool.parser.ASN1EvidenceRecordParser;
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
+import de.bund.bsi.tr_esor.checktool.hash.Algorithms;
 import de.bund.bsi.tr_esor.checktool.validation.ParserFactory;
 import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
-import de.bund.bsi.tr_esor.xaip.EvidenceRecordType;
-import de.bund.bsi.tr_esor.xaip.XAIPType;
 
 
 /**
@@ -49,14 +57,36 @@ import de.bund.bsi.tr_esor.xaip.XAIPType;
 public class FileParameterFinder extends ParameterFinder
 {
 
+    private static final String DATA_PARAMETER = "command line parameter data";
+
+    private static final String DIGESTS_PARAMETER = "command line parameter digests";
+
+    /** Files of at least this size are memory-mapped instead of read into memory. */
+    private static final long MAPPING_THRESHOLD = 1024 * 1024;
+
     /**
      * Creates an instance based on given files.
      *
-     * @param protectedData should contain binary data, XAIP or CMS signature, last two possibly with contained ERs.
+     * @param protectedData should contain binary data, XAIP or CMS signature, last two possibly with contained ERs, or a directory of
+     *            binary data files
      * @param er optional, may be ASN.1 ER only or embedded into XML
      * @param profileName
      */
     public FileParameterFinder(Path protectedData, Path er, String profileName) throws IOException
+    {
+        this(protectedData == null ? List.of() : List.of(protectedData), er, profileName);
+    }
+
+    /**
+     * Creates an instance based on given files. A single file is handled like in {@link #FileParameterFinder(Path, Path, String)}.
+     * Several files or a directory are treated as a group of binary documents protected by a detached evidence record, each file becomes
+     * a protected data object of its own. The files are read in parallel.
+     *
+     * @param protectedData files or directories containing the protected data, may be empty
+     * @param er optional, may be ASN.1 ER only or embedded into XML
+     * @param profileName
+     */
+    public FileParameterFinder(List<Path> protectedData, Path er, String profileName) throws IOException
     {
         super();
         handleProfileName(profileName);
@@ -65,83 +95,174 @@ public class FileParameterFinder extends ParameterFinder
         returnVerificationReport.setReportDetailLevel(ReportDetailLevel.ALL_DETAILS.toString());
         if (er != null)
         {
-            setErAttributes(parse(er));
+            setErAttributes(parse(er), new Reference("command line parameter er"));
         }
-        if (protectedData != null)
+        if (protectedData.size() == 1 && !Files.isDirectory(protectedData.get(0)))
         {
-            setDataAttribute(protectedData, parse(protectedData));
+            setDataAttribute(protectedData.get(0));
+        }
+        else if (!protectedData.isEmpty())
+        {
+            readDataGroup(protectedData);
         }
     }
 
-    private void setErAttributes(Object parsedEr) throws IOException
+    /**
+     * Adds precomputed digests of documents which are checked in a detached evidence record instead of the documents themselves. Each
+     * line of the manifest has the form <code>reference;algorithm;value</code> where algorithm is an OID or XML signature algorithm URI
+     * and value is hex encoded. Empty lines and lines starting with # are ignored.
+     *
+     * @param manifest file listing the digests
+     */
+    public void addDocumentDigests(Path manifest) throws IOException
     {
-        var baseErRef = new Reference("command line parameter er");
-        var erParameter = new ERParameter();
-        if (parsedEr instanceof EvidenceRecord)
+        var baseRef = new Reference(DIGESTS_PARAMETER);
+        var lineNumber = 0;
+        for (var line : Files.readAllLines(manifest, StandardCharsets.UTF_8))
         {
-            erParameter.setEr((EvidenceRecord)parsedEr);
-            erParameter.setErRef(baseErRef);
+            lineNumber++;
+            var trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#"))
+            {
+                continue;
+            }
+            var parts = trimmed.split(";", -1);
+            if (parts.length != 3 || parts[0].isBlank())
+            {
+                throw new IOException("digest manifest line " + lineNumber + " does not have the form reference;algorithm;value");
+            }
+            try
+            {
+                var algorithm = parts[1].trim();
+                var oid = algorithm.contains(":") ? Algorithms.toOid(algorithm) : algorithm;
+                documentDigests.computeIfAbsent(baseRef.newChild(parts[0].trim()), r -> new HashMap<>())
+                    .put(oid, Hex.decode(parts[2].trim()));
+            }
+            catch (NoSuchAlgorithmException | DecoderException e)
+            {
+                throw new IOException("digest manifest line " + lineNumber + " is invalid: " + e.getMessage(), e);
+            }
         }
-        else if (parsedEr instanceof EvidenceRecordType)
+    }
+
+    /**
+     * Opens all given files and all regular files within given directories concurrently. The reference of each file is named by its path
+     * relative to the given directory or by its file name.
+     */
+    private void readDataGroup(List<Path> protectedData) throws IOException
+    {
+        var dataRef = new Reference(DATA_PARAMETER);
+        Map<Reference, Path> files = new LinkedHashMap<>();
+        for (var path : protectedData)
         {
-            var r = (EvidenceRecordType)parsedEr;
-            erParameter.setXaipVersionAddressedByEr(r.getVersionID());
-            erParameter.setXaipAoidAddressedByEr(r.getAOID());
-            erParameter.setErRef(baseErRef.newChild("asn1EvidenceRecord"));
-            erParameter.getErRef().setxPath("/evidenceRecord/asn1EvidenceRecord");
-            if (r.getAsn1EvidenceRecord() != null)
+            if (Files.isDirectory(path))
+            {
+                try (var content = Files.walk(path))
+                {
+                    for (var file : content.filter(Files::isRegularFile).sorted().collect(Collectors.toList()))
+                    {
+                        putUnique(files, dataRef.newChild(path.relativize(file).toString().replace('\\', '/')), file);
+                    }
+                }
+            }
+            else
             {
-                erParameter.setEr(new ASN1EvidenceRecordParser().parse(r.getAsn1EvidenceRecord()));
+                putUnique(files, dataRef.newChild(path.getFileName().toString()), path);
             }
         }
-        else if (parsedEr instanceof CMSSignedData)
+        try
         {
-            cmsDocument = (CMSSignedData)parsedEr;
-            cmsRef = baseErRef;
+            files.entrySet()
+                .parallelStream()
+                .map(e -> Map.entry(e.getKey(), readUnchecked(e.getValue())))
+                .collect(Collectors.toList())
+                .forEach(e -> binaryDocuments.put(e.getKey(), e.getValue()));
         }
-        else if (parsedEr instanceof XAIPType) // anticipating a likely usage error
+        catch (UncheckedIOException e)
         {
-            xaip = (XAIPType)parsedEr;
-            xaipRef = baseErRef;
+            throw e.getCause();
         }
-        else
+    }
+
+    private static void putUnique(Map<Reference, Path> files, Reference ref, Path file) throws IOException
+    {
+        if (files.putIfAbsent(ref, file) != null)
         {
-            unsupportedRef = baseErRef;
+            throw new IOException("Data file name " + file.getFileName() + " is given more than once");
         }
-        providedERs.add(erParameter);
     }
 
-    private void setDataAttribute(Path protectedData, Object parsedData) throws IOException
+    private static ProtectedData readUnchecked(Path file)
     {
-        var dataRef = new Reference("command line parameter data");
-        if (parsedData instanceof UnsupportedData)
+        try
         {
-            unsupportedRef = dataRef;
-            unsupportedData = (UnsupportedData)parsedData;
+            return read(file);
         }
-        else if (parsedData instanceof XaipAndSerializer)
+        catch (IOException e)
         {
-            xaip = ((XaipAndSerializer)parsedData).getXaip();
-            serializer = ((XaipAndSerializer)parsedData).getSerializer();
-            xaipRef = dataRef;
+            throw new UncheckedIOException(new IOException("Cannot read content of file " + file.toAbsolutePath(), e));
         }
-        else if (parsedData instanceof byte[])
+    }
+
+    /**
+     * Reads a small file into memory and maps a large one, so that its content is read from disk only once and never copied onto the
+     * heap.
+     */
+    private static ProtectedData read(Path file) throws IOException
+    {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ))
         {
-            binaryDocuments.put(dataRef, (byte[])parsedData);
+            var size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("File size " + size + " exceeds the supported maximum");
+            }
+            if (size >= MAPPING_THRESHOLD)
+            {
+                return ProtectedData.of(channel.map(MapMode.READ_ONLY, 0, size));
+            }
+            var buffer = ByteBuffer.allocate((int)size);
+            while (buffer.hasRemaining())
+            {
+                if (channel.read(buffer) < 0)
+                {
+                    break;
+                }
+            }
+            return ProtectedData.of(buffer.hasRemaining() ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array());
         }
-        else
+    }
+
+    /**
+     * Parses the file from the same content which is hashed later. Content of unknown format and CMS signatures are protected as they
+     * are.
+     */
+    private void setDataAttribute(Path protectedData) throws IOException
+    {
+        var dataRef = new Reference(DATA_PARAMETER);
+        ProtectedData content;
+        Object parsedData;
+        try
         {
-            try (InputStream ins = new FileInputStream(protectedData.toFile()))
+            content = read(protectedData);
+            try (var ins = content.open())
             {
-                binaryDocuments.put(dataRef, ins.readAllBytes());
+                parsedData = ParserFactory.parseUnlessBinary(ins, getProfileName());
             }
         }
+        catch (IOException e)
+        {
+            throw new IOException("Cannot read content of file " + protectedData.toAbsolutePath(), e);
+        }
+        if (parsedData == null || !setDataAttributes(parsedData, dataRef))
+        {
+            binaryDocuments.put(dataRef, content);
+        }
     }
 
     private Object parse(Path path) throws IOException
     {
-        try (InputStream fi = new FileInputStream(path.toFile());
-            InputStream ins = new BufferedInputStream(fi))
+        try (var ins = read(path).open())
         {
             return ParserFactory.parse(ins, getProfileName());
         }
@@ -27,6 +27,8 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.slf4j.Logger;
@@ -83,11 +85,12 @@ public class InputPreparator
         var xaip = params.getXaip();
         if (xaip != null)
         {
-            scanXaipForEvidenceRecords();
+            var reader = new XaipReader(xaip, params.getXaipRef(), params.getProfileName());
+            scanXaipForEvidenceRecords(reader);
             if (Configurator.getInstance().verifySignatures(params.getProfileName()))
             {
-                scanXaipForInlineSignatures();
-                scanXaipForDetachedSignatures();
+                scanXaipForInlineSignatures(reader);
+                scanXaipForDetachedSignatures(reader);
             }
         }
 
@@ -119,7 +122,9 @@ public class InputPreparator
     private ErValidationContext addProtectedDataFromBinaryDocuments(ErValidationContext evc)
     {
         var binaryDocuments = params.getBinaryDocuments();
-        if (binaryDocuments.isEmpty())
+        var documentDigests = params.getDocumentDigests();
+        documentDigests.forEach((ref, digests) -> digests.forEach((oid, digest) -> evc.addProtectedDigest(ref, oid, digest)));
+        if (binaryDocuments.isEmpty() && documentDigests.isEmpty())
         {
             if (params.getUnsupportedData() == null)
             {
@@ -135,22 +140,29 @@ public class InputPreparator
         else
         {
             binaryDocuments.forEach(evc::addProtectedData);
+            if (binaryDocuments.size() + documentDigests.size() > 1)
+            {
+                evc.addAdditionalMessage("The evidence record is checked with regard to the data objects "
+                    + Stream.concat(binaryDocuments.keySet().stream(), documentDigests.keySet().stream())
+                        .map(Reference::toString)
+                        .sorted()
+                        .collect(Collectors.joining(", "))
+                    + ".");
+            }
         }
         return evc;
     }
 
-    private void scanXaipForEvidenceRecords() throws ReflectiveOperationException, IOException
+    private void scanXaipForEvidenceRecords(XaipReader reader) throws ReflectiveOperationException, IOException
     {
-        var reader = new XaipReader(params.getXaip(), params.getXaipRef(), params.getProfileName());
         scanXaipForEmbeddedER(reader);
         for (var er : params.getProvidedERs()) {
             createContextForDetachedEr(ctx -> addProtectedElements(reader, er.getXaipVersionAddressedByEr(), ctx), er);
         }
     }
 
-    private void scanXaipForInlineSignatures()
+    private void scanXaipForInlineSignatures(XaipReader reader)
     {
-        var reader = new XaipReader(params.getXaip(), params.getXaipRef(), params.getProfileName());
         var potentiallySigned = reader.findPotentiallyInlineSignedElements();
         for (var data : potentiallySigned)
         {
@@ -159,9 +171,8 @@ public class InputPreparator
         }
     }
 
-    private void scanXaipForDetachedSignatures() throws IOException
+    private void scanXaipForDetachedSignatures(XaipReader reader) throws IOException
     {
-        var reader = new XaipReader(params.getXaip(), params.getXaipRef(), params.getProfileName());
         var signatures = reader.findDetachedSignatures();
         for (var cred : signatures)
         {
@@ -21,19 +21,25 @@
  */
 package de.bund.bsi.tr_esor.checktool.entry;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Optional;
 
 import org.bouncycastle.cms.CMSSignedData;
 
 import de.bund.bsi.tr_esor.checktool.conf.Configurator;
 import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+import de.bund.bsi.tr_esor.checktool.data.EvidenceRecord;
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
 import de.bund.bsi.tr_esor.checktool.data.UnsupportedData;
+import de.bund.bsi.tr_esor.checktool.data.XaipAndSerializer;
+import de.bund.bsi.tr_esor.checktool.parser.ASN1EvidenceRecordParser;
 import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
 import de.bund.bsi.tr_esor.checktool.xml.XaipSerializer;
+import de.bund.bsi.tr_esor.xaip.EvidenceRecordType;
 import de.bund.bsi.tr_esor.xaip.XAIPType;
 
 import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.ReturnVerificationReport;
@@ -51,7 +57,12 @@ public abstract class ParameterFinder
     /**
      * binary documents given as input (CMS and XAIP not listed here).
      */
-    protected final Map<Reference, byte[]> binaryDocuments = new HashMap<>();
+    protected final Map<Reference, ProtectedData> binaryDocuments = new HashMap<>();
+
+    /**
+     * precomputed digests of documents which are not given as data, values by algorithm OID.
+     */
+    protected final Map<Reference, Map<String, byte[]>> documentDigests = new HashMap<>();
 
     /** CMS signed data (possibly with ERs contained) specified in input */
     protected CMSSignedData cmsDocument;
@@ -93,11 +104,19 @@ public abstract class ParameterFinder
     /**
      * Returns the binary documents addressed by some unique id.
      */
-    public Map<Reference, byte[]> getBinaryDocuments()
+    public Map<Reference, ProtectedData> getBinaryDocuments()
     {
         return binaryDocuments;
     }
 
+    /**
+     * Returns the precomputed digests of documents addressed by some unique id, the digest values are mapped by algorithm OID.
+     */
+    public Map<Reference, Map<String, byte[]>> getDocumentDigests()
+    {
+        return documentDigests;
+    }
+
     /**
      * Returns the given CMS signed data.
      */
@@ -170,6 +189,81 @@ public abstract class ParameterFinder
         return unsupportedData;
     }
 
+    /**
+     * Sets the attributes for a parsed evidence record given as separate input. Other signature objects (CMS signed data or even a XAIP)
+     * are accepted as well.
+     *
+     * @param parsedEr result of {@link de.bund.bsi.tr_esor.checktool.validation.ParserFactory#parse(java.io.InputStream, String)}
+     * @param baseErRef reference of the input
+     */
+    protected void setErAttributes(Object parsedEr, Reference baseErRef) throws IOException
+    {
+        var erParameter = new ERParameter();
+        if (parsedEr instanceof EvidenceRecord)
+        {
+            erParameter.setEr((EvidenceRecord)parsedEr);
+            erParameter.setErRef(baseErRef);
+        }
+        else if (parsedEr instanceof EvidenceRecordType)
+        {
+            var r = (EvidenceRecordType)parsedEr;
+            erParameter.setXaipVersionAddressedByEr(r.getVersionID());
+            erParameter.setXaipAoidAddressedByEr(r.getAOID());
+            erParameter.setErRef(baseErRef.newChild("asn1EvidenceRecord"));
+            erParameter.getErRef().setxPath("/evidenceRecord/asn1EvidenceRecord");
+            if (r.getAsn1EvidenceRecord() != null)
+            {
+                erParameter.setEr(new ASN1EvidenceRecordParser().parse(r.getAsn1EvidenceRecord()));
+            }
+        }
+        else if (parsedEr instanceof CMSSignedData)
+        {
+            cmsDocument = (CMSSignedData)parsedEr;
+            cmsRef = baseErRef;
+        }
+        else if (parsedEr instanceof XAIPType) // anticipating a likely usage error
+        {
+            xaip = (XAIPType)parsedEr;
+            xaipRef = baseErRef;
+        }
+        else
+        {
+            unsupportedRef = baseErRef;
+        }
+        providedERs.add(erParameter);
+    }
+
+    /**
+     * Sets the attributes for parsed protected data.
+     *
+     * @param parsedData result of {@link de.bund.bsi.tr_esor.checktool.validation.ParserFactory#parse(java.io.InputStream, String)}
+     * @param dataRef reference of the input
+     * @return false if the parsed object is not supported as data, the caller should handle the raw input as binary document then
+     */
+    protected boolean setDataAttributes(Object parsedData, Reference dataRef)
+    {
+        if (parsedData instanceof UnsupportedData)
+        {
+            unsupportedRef = dataRef;
+            unsupportedData = (UnsupportedData)parsedData;
+        }
+        else if (parsedData instanceof XaipAndSerializer)
+        {
+            xaip = ((XaipAndSerializer)parsedData).getXaip();
+            serializer = ((XaipAndSerializer)parsedData).getSerializer();
+            xaipRef = dataRef;
+        }
+        else if (parsedData instanceof byte[])
+        {
+            binaryDocuments.put(dataRef, ProtectedData.of((byte[])parsedData));
+        }
+        else
+        {
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Sets the profile name attribute to given or configured default value.
      *
@@ -0,0 +1,113 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.entry;
+
+import static de.bund.bsi.tr_esor.checktool.xml.XmlHelper.FACTORY_OASIS_VR;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.UnaryOperator;
+
+import org.bouncycastle.cms.CMSSignedData;
+
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
+import de.bund.bsi.tr_esor.checktool.data.UnsupportedData;
+import de.bund.bsi.tr_esor.checktool.parser.StreamedCmsSignedData;
+import de.bund.bsi.tr_esor.checktool.validation.ParserFactory;
+import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
+
+
+/**
+ * Implementation of {@link ParameterFinder} for inputs which are read from streams only once, for instance entries of an archive. The
+ * caller parses each input with {@link #parse(InputStream, String)} and passes the parsed objects.
+ *
+ * @author TT
+ */
+public class StreamParameterFinder extends ParameterFinder
+{
+
+    /**
+     * Creates an instance based on parsed inputs.
+     *
+     * @param dataName name of the protected data, used as reference
+     * @param parsedData parsed protected data, may be null
+     * @param erName name of the evidence record, used as reference
+     * @param parsedEr parsed evidence record, may be null
+     * @param profileName
+     */
+    public StreamParameterFinder(String dataName, Object parsedData, String erName, Object parsedEr, String profileName)
+        throws IOException
+    {
+        super();
+        handleProfileName(profileName);
+        returnVerificationReport = FACTORY_OASIS_VR.createReturnVerificationReport();
+        returnVerificationReport.setReportDetailLevel(ReportDetailLevel.ALL_DETAILS.toString());
+        if (parsedEr != null)
+        {
+            setErAttributes(parsedEr, new Reference(erName));
+        }
+        if (parsedData != null)
+        {
+            var dataRef = new Reference(dataName);
+            if (parsedData instanceof CMSSignedData)
+            {
+                binaryDocuments.put(dataRef, encode((CMSSignedData)parsedData));
+            }
+            else if (!setDataAttributes(parsedData, dataRef))
+            {
+                unsupportedRef = dataRef;
+                unsupportedData = new UnsupportedData("Content parsed as " + parsedData.getClass().getSimpleName()
+                                                      + " cannot be used as protected data.");
+            }
+        }
+    }
+
+    private static ProtectedData encode(CMSSignedData cms) throws IOException
+    {
+        if (cms instanceof StreamedCmsSignedData)
+        {
+            return ((StreamedCmsSignedData)cms).encode(UnaryOperator.identity());
+        }
+        return ProtectedData.of(cms.getEncoded());
+    }
+
+    /**
+     * Parses an input stream. The stream is buffered so that the parsers can look ahead, it is not closed.
+     *
+     * @param ins input, must be positioned at the start of the content
+     * @param profileName profile which determines the available parsers
+     */
+    public static Object parse(InputStream ins, String profileName) throws IOException
+    {
+        return ParserFactory.parse(new BufferedInputStream(new FilterInputStream(ins)
+        {
+
+            @Override
+            public void close()
+            {
+                // the underlying stream is owned by the caller
+            }
+        }), profileName);
+    }
+}
@@ -31,6 +31,8 @@ import static de.bund.bsi.tr_esor.checktool.xml.XmlHelper.FACTORY_XAIP;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,6 +46,8 @@ import org.w3c.dom.Element;
 
 import de.bund.bsi.tr_esor.checktool.conf.Configurator;
 import de.bund.bsi.tr_esor.checktool.data.EvidenceRecord;
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
+import de.bund.bsi.tr_esor.checktool.hash.Algorithms;
 import de.bund.bsi.tr_esor.checktool.parser.ASN1EvidenceRecordParser;
 import de.bund.bsi.tr_esor.checktool.parser.XaipParser;
 import de.bund.bsi.tr_esor.checktool.validation.ParserFactory;
@@ -59,6 +63,7 @@ import jakarta.xml.bind.JAXBElement;
 import jakarta.xml.bind.JAXBException;
 import oasis.names.tc.dss._1_0.core.schema.AnyType;
 import oasis.names.tc.dss._1_0.core.schema.Base64Signature;
+import oasis.names.tc.dss._1_0.core.schema.DocumentHash;
 import oasis.names.tc.dss._1_0.core.schema.DocumentType;
 import oasis.names.tc.dss._1_0.core.schema.VerifyRequest;
 import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.ReturnVerificationReport;
@@ -68,7 +73,7 @@ import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.ReturnVerif
  * Implementation of {@link ParameterFinder} for input as web service verify request. Supported are:
  * <ul>
  * <li>one XAIP as inline XML or base 64 value, may contain evidence records or</li>
- * <li>an arbitrary number of secured binary contents (not interpreted)</li>
+ * <li>an arbitrary number of secured binary contents (not interpreted) or DocumentHash elements with precomputed digests</li>
  * </ul>
  * as well as one SignatureObject which may be
  * <ul>
@@ -239,9 +244,14 @@ public class WSParameterFinder extends ParameterFinder
         for (var doc : request.getInputDocuments().getDocumentOrTransformedDataOrDocumentHash())
         {
             numberDoc++;
+            if (doc instanceof DocumentHash)
+            {
+                handleDocumentHash((DocumentHash)doc, numberDoc);
+                continue;
+            }
             if (!(doc instanceof DocumentType))
             {
-                throw new IllegalArgumentException("only Documents supported as input");
+                throw new IllegalArgumentException("only Documents or DocumentHash supported as input");
             }
             var document = (DocumentType)doc;
             if (document.getInlineXML() != null) // NOPMD: searching for the one non-null element
@@ -268,7 +278,7 @@ public class WSParameterFinder extends ParameterFinder
             else if (document.getBase64Data() != null) // NOPMD: searching for the one non-null element
             {
                 var ref = createRefForDocument("Bin" + numberDoc, document.getID(), numberDoc, "/Base64Data/Value");
-                binaryDocuments.put(ref, document.getBase64Data().getValue());
+                binaryDocuments.put(ref, ProtectedData.of(document.getBase64Data().getValue()));
             }
             else
             {
@@ -277,6 +287,28 @@ public class WSParameterFinder extends ParameterFinder
         }
     }
 
+    private void handleDocumentHash(DocumentHash documentHash, int numberDoc)
+    {
+        if (documentHash.getTransforms() != null)
+        {
+            throw new IllegalArgumentException("Transforms are not supported in DocumentHash");
+        }
+        if (documentHash.getDigestMethod() == null || documentHash.getDigestValue() == null)
+        {
+            throw new IllegalArgumentException("DocumentHash must specify DigestMethod and DigestValue");
+        }
+        try
+        {
+            var oid = Algorithms.toOid(documentHash.getDigestMethod().getAlgorithm());
+            var ref = createRefForDocument("Hash" + numberDoc, documentHash.getID(), numberDoc, "/DigestValue");
+            documentDigests.computeIfAbsent(ref, r -> new HashMap<>()).put(oid, documentHash.getDigestValue());
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalArgumentException("unsupported DigestMethod in DocumentHash: " + e.getMessage(), e);
+        }
+    }
+
     private XAIPType getXAIPXML(Object element) throws JAXBException
     {
         var lXaipReader = new LXaipReader(Configurator.getInstance().getLXaipDataDirectory(getProfileName()));
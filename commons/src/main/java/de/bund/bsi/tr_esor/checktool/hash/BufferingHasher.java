@@ -0,0 +1,78 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.hash;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ * Adapter for {@link HashCreator} implementations which only support hashing a complete byte array: collects the data in memory.
+ *
+ * @author TT
+ */
+class BufferingHasher implements Hasher
+{
+
+    private final HashCreator hashCreator;
+
+    private final String oid;
+
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+    BufferingHasher(HashCreator hashCreator, String oid)
+    {
+        this.hashCreator = hashCreator;
+        this.oid = oid;
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length)
+    {
+        data.write(bytes, offset, length);
+    }
+
+    @Override
+    public void update(ByteBuffer buffer)
+    {
+        if (buffer.hasArray())
+        {
+            data.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        var chunk = new byte[Math.min(HashCreator.STREAM_BUFFER_SIZE, buffer.remaining())];
+        while (buffer.hasRemaining())
+        {
+            var length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            data.write(chunk, 0, length);
+        }
+    }
+
+    @Override
+    public byte[] finish() throws NoSuchAlgorithmException
+    {
+        return hashCreator.calculateHash(data.toByteArray(), oid);
+    }
+}
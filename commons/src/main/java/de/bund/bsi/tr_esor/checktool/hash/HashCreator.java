@@ -21,17 +21,28 @@
  */
 package de.bund.bsi.tr_esor.checktool.hash;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
 
 
 /**
- * Calculates hash values.
+ * Calculates hash values. Implementations must be thread safe because several data objects may be hashed in parallel and the configured
+ * instance is shared by all validations. Only {@link #calculateHash(byte[], String)} has to be implemented, the streaming variants
+ * default to collecting the data in memory. Implementations should override {@link #start(String)} to hash large data with constant
+ * memory.
  *
  * @author MO, BVO
  */
 public interface HashCreator
 {
 
+    /**
+     * Size of the buffer used when hashing streams.
+     */
+    int STREAM_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Calculates the hash for the given data using the algorithm specified by the OID.
      *
@@ -40,4 +51,71 @@ public interface HashCreator
      * @throws NoSuchAlgorithmException Thrown if the given OID is not known to the implementation.
      */
     byte[] calculateHash(byte[] data, String oid) throws NoSuchAlgorithmException;
+
+    /**
+     * Returns <code>true</code> if the algorithm specified by the OID is supported. The default implementation hashes empty data,
+     * implementations should override it with a lookup.
+     *
+     * @param oid
+     */
+    default boolean supports(String oid)
+    {
+        try
+        {
+            calculateHash(new byte[0], oid);
+            return true;
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Calculates the hash for the data read from given stream using the algorithm specified by the OID. The stream is read to its end but
+     * not closed.
+     *
+     * @param data
+     * @param oid
+     * @throws NoSuchAlgorithmException Thrown if the given OID is not known to the implementation.
+     * @throws IOException if reading the data fails
+     */
+    default byte[] calculateHash(InputStream data, String oid) throws NoSuchAlgorithmException, IOException
+    {
+        var hasher = start(oid);
+        var buffer = new byte[STREAM_BUFFER_SIZE];
+        for (var read = data.read(buffer); read >= 0; read = data.read(buffer))
+        {
+            hasher.update(buffer, 0, read);
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Calculates the hash for the remaining content of given buffer using the algorithm specified by the OID. The position of the buffer is
+     * moved to its limit.
+     *
+     * @param data
+     * @param oid
+     * @throws NoSuchAlgorithmException Thrown if the given OID is not known to the implementation.
+     */
+    default byte[] calculateHash(ByteBuffer data, String oid) throws NoSuchAlgorithmException
+    {
+        var hasher = start(oid);
+        hasher.update(data);
+        return hasher.finish();
+    }
+
+    /**
+     * Starts an incremental hash calculation using the algorithm specified by the OID. The default implementation collects the data in
+     * memory and calls {@link #calculateHash(byte[], String)} when finished.
+     *
+     * @param oid
+     * @throws NoSuchAlgorithmException Thrown if the given OID is not known to the implementation. The default implementation throws it
+     *             only when the calculation is finished.
+     */
+    default Hasher start(String oid) throws NoSuchAlgorithmException
+    {
+        return new BufferingHasher(this, oid);
+    }
 }
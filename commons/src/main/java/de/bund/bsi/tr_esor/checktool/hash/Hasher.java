@@ -0,0 +1,69 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.hash;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ * Incremental hash calculation obtained from {@link HashCreator#start(String)}. Data is fed in arbitrary portions, the result equals the
+ * hash of the concatenated portions. Instances are not thread safe and must not be used after {@link #finish()}.
+ *
+ * @author TT
+ */
+public interface Hasher
+{
+
+    /**
+     * Adds a portion of data.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     */
+    void update(byte[] data, int offset, int length);
+
+    /**
+     * Adds the whole array.
+     *
+     * @param data
+     */
+    default void update(byte[] data)
+    {
+        update(data, 0, data.length);
+    }
+
+    /**
+     * Adds the remaining content of given buffer, the position of the buffer is moved to its limit.
+     *
+     * @param data
+     */
+    void update(ByteBuffer data);
+
+    /**
+     * Returns the hash of all data added so far.
+     *
+     * @throws NoSuchAlgorithmException Thrown if the algorithm is not known to the implementation and was not checked earlier.
+     */
+    byte[] finish() throws NoSuchAlgorithmException;
+}
@@ -21,23 +21,112 @@
  */
 package de.bund.bsi.tr_esor.checktool.hash;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
- * HashCreator using the default JDK crypto provider for hashing.
+ * HashCreator using the default JDK crypto provider for hashing. Looking up a digest from the providers is expensive compared to hashing
+ * a node of a hash tree, so one prototype per algorithm is kept and cloned for each calculation. Instances are thread safe.
  *
  * @author MO, BVO
  */
 public class LocalHashCreator implements HashCreator
 {
 
+    /**
+     * Prototypes by OID, shared by all instances. Only digests which support cloning are stored, a prototype is never used for hashing itself.
+     */
+    private static final Map<String, MessageDigest> PROTOTYPES = new ConcurrentHashMap<>();
+
     @Override
     public byte[] calculateHash(byte[] data, String oid) throws NoSuchAlgorithmException
     {
+        return newDigest(oid).digest(data);
+    }
+
+    @Override
+    public Hasher start(String oid) throws NoSuchAlgorithmException
+    {
+        return new MessageDigestHasher(newDigest(oid));
+    }
+
+    @Override
+    public boolean supports(String oid)
+    {
+        if (PROTOTYPES.containsKey(oid))
+        {
+            return true;
+        }
+        try
+        {
+            newDigest(oid);
+            return true;
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            return false;
+        }
+    }
+
+    private static MessageDigest newDigest(String oid) throws NoSuchAlgorithmException
+    {
+        var prototype = PROTOTYPES.get(oid);
+        if (prototype != null)
+        {
+            try
+            {
+                return (MessageDigest)prototype.clone();
+            }
+            catch (CloneNotSupportedException e)
+            {
+                PROTOTYPES.remove(oid, prototype);
+            }
+        }
         var digest = MessageDigest.getInstance(oid);
-        return digest.digest(data);
+        try
+        {
+            PROTOTYPES.putIfAbsent(oid, (MessageDigest)digest.clone());
+        }
+        catch (CloneNotSupportedException e)
+        {
+            // provider does not support cloning, the digest is looked up each time
+        }
+        return digest;
     }
 
+    /**
+     * Feeds the data directly into a message digest.
+     */
+    private static final class MessageDigestHasher implements Hasher
+    {
+
+        private final MessageDigest digest;
+
+        MessageDigestHasher(MessageDigest digest)
+        {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(byte[] data, int offset, int length)
+        {
+            digest.update(data, offset, length);
+        }
+
+        @Override
+        public void update(ByteBuffer data)
+        {
+            digest.update(data);
+        }
+
+        @Override
+        public byte[] finish()
+        {
+            return digest.digest();
+        }
+    }
 }
@@ -21,23 +21,29 @@
  */
 package de.bund.bsi.tr_esor.checktool.parser;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1Integer;
-import org.bouncycastle.asn1.ASN1Object;
 import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.ASN1Sequence;
-import org.bouncycastle.asn1.ASN1TaggedObject;
+import org.bouncycastle.asn1.ASN1SequenceParser;
+import org.bouncycastle.asn1.ASN1StreamParser;
+import org.bouncycastle.asn1.ASN1TaggedObjectParser;
+import org.bouncycastle.asn1.InMemoryRepresentable;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 
+import de.bund.bsi.tr_esor.checktool._1.EvidenceRecordLimitsType;
+import de.bund.bsi.tr_esor.checktool.conf.Configurator;
 import de.bund.bsi.tr_esor.checktool.data.ASN1Utils;
+import de.bund.bsi.tr_esor.checktool.data.ArchiveTimeStampChain;
 import de.bund.bsi.tr_esor.checktool.data.ArchiveTimeStampSequence;
 import de.bund.bsi.tr_esor.checktool.data.Checked;
-import de.bund.bsi.tr_esor.checktool.data.CryptoInfo;
-import de.bund.bsi.tr_esor.checktool.data.EncryptionInfo;
 import de.bund.bsi.tr_esor.checktool.data.EvidenceRecord;
 
 
@@ -57,11 +63,13 @@ public class ASN1EvidenceRecordParser implements Parser<EvidenceRecord>
 
     private InputStream input;
 
+    private EvidenceRecordLimitsType limits;
+
     @Override
     public void setInput(InputStream input)
     {
         this.input = input;
-        if (!input.markSupported())
+        if (input != null && !input.markSupported())
         {
             throw new IllegalArgumentException("can only handle streams which support mark/reset");
         }
@@ -71,40 +79,73 @@ public class ASN1EvidenceRecordParser implements Parser<EvidenceRecord>
     @Override
     public boolean canParse() throws IOException
     {
-        input.mark(BUF_SIZE);
-        var buf = new byte[BUF_SIZE];
-        var length = input.read(buf, 0, BUF_SIZE);
-        input.reset();
+        return canParse(PeekWindow.read(input));
+    }
 
+    @Override
+    public boolean canParse(PeekWindow peek)
+    {
         final var sequenceTag = 0x30;
-        if (length < BUF_SIZE || buf[0] != sequenceTag)
+        if (peek.getLength() < BUF_SIZE || peek.get(0) != sequenceTag)
         {
             return false;
         }
 
-        var versionOffset = 1 + getNumberLengthOctets(buf, 1);
+        var versionOffset = 1 + getNumberLengthOctets(peek.get(1));
         final var integerTag = 0x02;
-        return buf[versionOffset] == integerTag && buf[versionOffset + 3] == sequenceTag;
+        return peek.get(versionOffset) == integerTag && peek.get(versionOffset + 3) == sequenceTag;
     }
 
-    private int getNumberLengthOctets(byte[] buffer, int offset)
+    private int getNumberLengthOctets(int lengthOctet)
     {
-        final var indefiniteLength = (byte)0x80;
-        if (buffer[offset] == indefiniteLength)
+        final var indefiniteLength = 0x80;
+        if (lengthOctet == indefiniteLength)
         {
             return 1;
         }
-        if ((buffer[offset] & indefiniteLength) == 0)
+        if ((lengthOctet & indefiniteLength) == 0)
         {
             return 1;
         }
-        return 1 + (0x7f & buffer[offset]);
+        return 1 + (0x7f & lengthOctet);
+    }
+
+    /**
+     * Limits the size of the parsed evidence records. Without this call, the limits are taken from the configuration at the time of
+     * parsing, so that a reloaded configuration applies to cached instances as well.
+     *
+     * @param maxSize maximum length of the encoded ER and of each element within it
+     * @param maxTimeStamps maximum number of archive time stamps in all chains
+     * @return this (fluent API)
+     */
+    public ASN1EvidenceRecordParser withLimits(int maxSize, int maxTimeStamps)
+    {
+        limits = new EvidenceRecordLimitsType();
+        limits.setMaxSize(maxSize);
+        limits.setMaxTimeStamps(maxTimeStamps);
+        return this;
+    }
+
+    private EvidenceRecordLimitsType getLimits()
+    {
+        if (limits != null)
+        {
+            return limits;
+        }
+        var conf = Configurator.getInstance();
+        return conf.isLoaded() ? conf.getEvidenceRecordLimits() : new EvidenceRecordLimitsType();
     }
 
+    /**
+     * Parses the evidence record from the input stream without reading it into memory as a whole. The archive time stamp sequence is
+     * built chain by chain, crypto info and encryption info are kept encoded until they are requested.
+     */
     @Override
     public EvidenceRecord parse() throws IOException
     {
-        return parse(input.readAllBytes());
+        var currentLimits = getLimits();
+        var maxSize = currentLimits.getMaxSize();
+        return parse(new ASN1StreamParser(new SizeLimitedInputStream(input, maxSize), maxSize), currentLimits.getMaxTimeStamps());
     }
 
     /**
@@ -116,47 +157,161 @@ public class ASN1EvidenceRecordParser implements Parser<EvidenceRecord>
      */
     public EvidenceRecord parse(byte[] derEncodedER) throws IOException
     {
-
-        return parse(ASN1Primitive.fromByteArray(derEncodedER));
+        var currentLimits = getLimits();
+        if (derEncodedER.length > currentLimits.getMaxSize())
+        {
+            throw new IOException("evidence record exceeds maximum size of " + currentLimits.getMaxSize() + " bytes");
+        }
+        return parse(new ASN1StreamParser(derEncodedER), currentLimits.getMaxTimeStamps());
     }
 
-    private EvidenceRecord parse(ASN1Object asn1Object) throws IOException
+    private EvidenceRecord parse(ASN1StreamParser parser, int maxTimeStamps) throws IOException
     {
-
-        var rootSequence = Checked.cast(asn1Object).to(ASN1Sequence.class);
-        var iter = rootSequence.iterator();
+        var rootSequence = Checked.cast(parser.readObject()).to(ASN1SequenceParser.class);
+        if (rootSequence == null)
+        {
+            throw new IOException("no evidence record found");
+        }
         // position 0 - version
-        var asn1Version = Checked.cast(iter.next()).to(ASN1Integer.class);
+        var asn1Version = Checked.cast(readElement(rootSequence)).to(ASN1Integer.class);
         var version = asn1Version.getValue().intValue();
         // position 1
         // get all digest algorithms from digestAlgorithm sequence in the asn.1 this data is stored in
         // sequence[AlgoIdentifier], AlgoIdentifier is a sequence[digestAlgo, parameter]
         List<AlgorithmIdentifier> digestAlgos = new ArrayList<>();
-        var algoList = Checked.cast(iter.next()).to(ASN1Sequence.class);
+        var algoList = Checked.cast(load(readElement(rootSequence))).to(ASN1Sequence.class);
         for (var algo : algoList)
         {
             digestAlgos.add(ASN1Utils.parseAlgorithmIdentifier(algo));
         }
 
-        // check crypto info (optional tagged object)
-        var element = iter.next();
-        CryptoInfo cryptoInfo = null;
-        if (element instanceof ASN1TaggedObject && ((ASN1TaggedObject)element).getTagNo() == TAGNO_CRYPTO_INFOS)
+        // check crypto info (optional tagged object), decoded by the ER on demand
+        var element = readElement(rootSequence);
+        byte[] cryptoInfo = null;
+        if (element instanceof ASN1TaggedObjectParser && ((ASN1TaggedObjectParser)element).getTagNo() == TAGNO_CRYPTO_INFOS)
         {
-            cryptoInfo = new CryptoInfo(ASN1Sequence.getInstance((ASN1TaggedObject)element, false));
-            element = iter.next();
+            cryptoInfo = load(element).getEncoded();
+            element = readElement(rootSequence);
         }
 
-        // check encryption info (optional tagged object)
-        EncryptionInfo encryptInfo = null;
-        if (element instanceof ASN1TaggedObject && ((ASN1TaggedObject)element).getTagNo() == TAGNO_ENCRYPTION_INFO)
+        // check encryption info (optional tagged object), decoded by the ER on demand
+        byte[] encryptInfo = null;
+        if (element instanceof ASN1TaggedObjectParser && ((ASN1TaggedObjectParser)element).getTagNo() == TAGNO_ENCRYPTION_INFO)
         {
-            encryptInfo = new EncryptionInfo(ASN1Sequence.getInstance((ASN1TaggedObject)element, false));
-            element = iter.next();
+            encryptInfo = load(element).getEncoded();
+            element = readElement(rootSequence);
         }
 
         // ArchiveTimestampSequence
-        var atss = new ArchiveTimeStampSequence(element);
-        return new EvidenceRecord(version, digestAlgos, atss, cryptoInfo, encryptInfo);
+        if (!(element instanceof ASN1SequenceParser))
+        {
+            throw new IllegalArgumentException("Element is not an ASN1Sequence");
+        }
+        var atss = readSequence((ASN1SequenceParser)element, maxTimeStamps);
+        if (rootSequence.readObject() != null)
+        {
+            throw new IOException("unexpected element after archive time stamp sequence in evidence record");
+        }
+        if (parser.readObject() != null)
+        {
+            throw new IOException("Extra data detected in stream");
+        }
+        return EvidenceRecord.withEncodedInfos(version, digestAlgos, atss, cryptoInfo, encryptInfo);
+    }
+
+    /**
+     * Reads the chains one after the other so that only the chain currently parsed exists in its generic ASN.1 form.
+     */
+    private ArchiveTimeStampSequence readSequence(ASN1SequenceParser atssParser, int maxTimeStamps) throws IOException
+    {
+        var atss = new ArchiveTimeStampSequence();
+        var timeStamps = 0;
+        for (var chain = atssParser.readObject(); chain != null; chain = atssParser.readObject())
+        {
+            var parsedChain = new ArchiveTimeStampChain(load(chain));
+            timeStamps += parsedChain.size();
+            if (timeStamps > maxTimeStamps)
+            {
+                throw new IOException("evidence record exceeds maximum number of " + maxTimeStamps + " archive time stamps");
+            }
+            atss.add(parsedChain);
+        }
+        return atss;
+    }
+
+    private static ASN1Encodable readElement(ASN1SequenceParser sequence) throws IOException
+    {
+        var element = sequence.readObject();
+        if (element == null)
+        {
+            throw new NoSuchElementException("evidence record is incomplete");
+        }
+        return element;
+    }
+
+    /**
+     * Reads the complete element, which is required before the next element of the enclosing sequence can be read.
+     */
+    private static ASN1Primitive load(ASN1Encodable element) throws IOException
+    {
+        if (element instanceof InMemoryRepresentable)
+        {
+            return ((InMemoryRepresentable)element).getLoadedObject();
+        }
+        return element.toASN1Primitive();
+    }
+
+    /**
+     * Fails as soon as more than the allowed number of bytes is read, which also covers content of indefinite length.
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream
+    {
+
+        private long remaining;
+
+        SizeLimitedInputStream(InputStream in, int maxSize)
+        {
+            super(in);
+            remaining = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            var result = super.read();
+            if (result >= 0)
+            {
+                consumed(1);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            var result = super.read(b, off, len);
+            if (result > 0)
+            {
+                consumed(result);
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            var result = super.skip(n);
+            consumed(result);
+            return result;
+        }
+
+        private void consumed(long count) throws IOException
+        {
+            remaining -= count;
+            if (remaining < 0)
+            {
+                throw new IOException("evidence record exceeds maximum size");
+            }
+        }
     }
 }
@@ -49,6 +49,12 @@ public class BinaryParser implements Parser<byte[]>
         return true;
     }
 
+    @Override
+    public boolean canParse(PeekWindow peek)
+    {
+        return true;
+    }
+
     @Override
     public byte[] parse() throws IOException
     {
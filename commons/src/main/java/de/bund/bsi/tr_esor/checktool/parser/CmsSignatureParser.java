@@ -37,8 +37,6 @@ import org.bouncycastle.cms.CMSSignedData;
 public class CmsSignatureParser implements Parser<CMSSignedData>
 {
 
-    private static final byte CONSTRUCTED_SEQUENCE = 0x30;
-
     private static final byte[] CMS_SIGNED_OBJECT_IDENTIFIER = {0x06, // object identifier
         0x09, // length of our OID
         // OID value 1.2.840.113549.1.7.2:
@@ -46,13 +44,30 @@ public class CmsSignatureParser implements Parser<CMSSignedData>
 
     private static final int BUF_SIZE = CMS_SIGNED_OBJECT_IDENTIFIER.length + 5;
 
+    /** Encapsulated content with more bytes is copied into a temporary file instead of being held in memory. */
+    public static final int DEFAULT_SPILL_THRESHOLD = 8 * 1024 * 1024;
+
     private InputStream input;
 
+    private int spillThreshold = DEFAULT_SPILL_THRESHOLD;
+
+    /**
+     * Sets the number of bytes above which the encapsulated content is copied into a temporary file instead of being held in memory. The
+     * parser returns a {@link StreamedCmsSignedData} in that case.
+     *
+     * @return this (fluent API)
+     */
+    public CmsSignatureParser withSpillThreshold(int bytes)
+    {
+        spillThreshold = bytes;
+        return this;
+    }
+
     @Override
     public void setInput(InputStream input)
     {
         this.input = input;
-        if (!input.markSupported())
+        if (input != null && !input.markSupported())
         {
             throw new IllegalArgumentException("can only handle streams which support mark/reset");
         }
@@ -61,16 +76,18 @@ public class CmsSignatureParser implements Parser<CMSSignedData>
     @Override
     public boolean canParse() throws IOException
     {
-        input.mark(BUF_SIZE);
-        var buf = new byte[BUF_SIZE];
-        var len = input.read(buf, 0, BUF_SIZE);
-        input.reset();
-        if (len < BUF_SIZE || buf[0] != CONSTRUCTED_SEQUENCE)
+        return canParse(PeekWindow.read(input));
+    }
+
+    @Override
+    public boolean canParse(PeekWindow peek)
+    {
+        if (peek.getLength() < BUF_SIZE || !peek.isDerSequence())
         {
             return false;
         }
-        var numLenBytes = getNumLenBytes(buf[1]);
-        var foundOid = Arrays.copyOfRange(buf, 1 + numLenBytes, 1 + numLenBytes + CMS_SIGNED_OBJECT_IDENTIFIER.length);
+        var numLenBytes = getNumLenBytes((byte)peek.get(1));
+        var foundOid = peek.copy(1 + numLenBytes, 1 + numLenBytes + CMS_SIGNED_OBJECT_IDENTIFIER.length);
         return Arrays.equals(foundOid, CMS_SIGNED_OBJECT_IDENTIFIER);
     }
 
@@ -79,7 +96,7 @@ public class CmsSignatureParser implements Parser<CMSSignedData>
     {
         try
         {
-            return new CMSSignedData(input);
+            return new CmsStreamReader(input, spillThreshold).read();
         }
         catch (CMSException e)
         {
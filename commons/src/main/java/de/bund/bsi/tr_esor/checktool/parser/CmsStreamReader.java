@@ -0,0 +1,485 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.BEROctetString;
+import org.bouncycastle.asn1.BERSequence;
+import org.bouncycastle.asn1.BERTaggedObject;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.DLSequence;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
+
+
+/**
+ * Reads CMS signed data from a stream without loading a large encapsulated content into memory. All other parts of the structure are
+ * parsed as usual, an encapsulated octet string exceeding the threshold is copied into a temporary file. The resulting ASN.1 objects are
+ * the same a complete parse would create, so that re-encoding yields the same bytes.
+ *
+ * @author TT
+ */
+class CmsStreamReader
+{
+
+    private static final int SEQUENCE = 0x30;
+
+    private static final int EXPLICIT_TAG_0 = 0xa0;
+
+    private static final int OCTET_STRING = 0x04;
+
+    private static final int CONSTRUCTED_OCTET_STRING = 0x24;
+
+    private static final int ENCAPSULATED_CONTENT_INFO_INDEX = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CountingInputStream in;
+
+    private final ASN1InputStream asn1;
+
+    private final int spillThreshold;
+
+    private boolean signedDataDefinite;
+
+    private boolean encapsulatedDefinite;
+
+    private boolean contentTagDefinite;
+
+    private ASN1ObjectIdentifier contentType;
+
+    /**
+     * Creates new instance.
+     *
+     * @param input must support mark and reset
+     * @param spillThreshold number of content bytes above which the content is copied into a temporary file
+     */
+    CmsStreamReader(InputStream input, int spillThreshold)
+    {
+        in = new CountingInputStream(input);
+        asn1 = new ASN1InputStream(in, Integer.MAX_VALUE);
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * Reads the signed data.
+     *
+     * @throws IOException
+     * @throws CMSException
+     */
+    CMSSignedData read() throws IOException, CMSException
+    {
+        var outerLength = readHeader(SEQUENCE);
+        var outerStart = in.position;
+        if (!CMSObjectIdentifiers.signedData.equals(asn1.readObject()))
+        {
+            throw new IOException("content info does not contain signed data");
+        }
+        var tagLength = readHeader(EXPLICIT_TAG_0);
+        var tagStart = in.position;
+        var signedDataLength = readHeader(SEQUENCE);
+        var signedDataStart = in.position;
+        signedDataDefinite = signedDataLength >= 0;
+
+        List<ASN1Encodable> children = new ArrayList<>();
+        ASN1Encodable content = null;
+        Spilled spilled = null;
+        while (hasMore(signedDataLength, signedDataStart))
+        {
+            if (children.size() == ENCAPSULATED_CONTENT_INFO_INDEX)
+            {
+                var read = readEncapsulatedContent();
+                if (read instanceof Spilled)
+                {
+                    spilled = (Spilled)read;
+                }
+                else
+                {
+                    content = (ASN1Encodable)read;
+                }
+                children.add(null);
+            }
+            else
+            {
+                children.add(asn1.readObject());
+            }
+        }
+        checkEnd(tagLength, tagStart);
+        checkEnd(outerLength, outerStart);
+        if (children.size() <= ENCAPSULATED_CONTENT_INFO_INDEX)
+        {
+            throw new IOException("signed data without encapsulated content info");
+        }
+
+        if (spilled == null)
+        {
+            return new CMSSignedData(contentInfo(children, content));
+        }
+        return new StreamedCmsSignedData(o -> contentInfo(children, o), contentType, spilled.data, spilled.length, spilled.constructed);
+    }
+
+    /**
+     * Rebuilds the content info with the encapsulated content info holding given content, using the same sequence types as a complete
+     * parse.
+     */
+    private ContentInfo contentInfo(List<ASN1Encodable> children, ASN1Encodable content)
+    {
+        var encapsulated = new ASN1EncodableVector();
+        encapsulated.add(contentType);
+        if (content != null)
+        {
+            encapsulated.add(contentTagDefinite ? new DERTaggedObject(true, 0, content) : new BERTaggedObject(true, 0, content));
+        }
+        var signedData = new ASN1EncodableVector();
+        for (var i = 0; i < children.size(); i++)
+        {
+            signedData.add(i == ENCAPSULATED_CONTENT_INFO_INDEX ? sequence(encapsulatedDefinite, encapsulated) : children.get(i));
+        }
+        return new ContentInfo(CMSObjectIdentifiers.signedData, sequence(signedDataDefinite, signedData));
+    }
+
+    private static ASN1Encodable sequence(boolean definite, ASN1EncodableVector elements)
+    {
+        return definite ? new DLSequence(elements) : new BERSequence(elements);
+    }
+
+    /**
+     * Reads the encapsulated content info and returns its content, either as ASN.1 object or spilled into a temporary file.
+     */
+    private Object readEncapsulatedContent() throws IOException
+    {
+        var length = readHeader(SEQUENCE);
+        var start = in.position;
+        encapsulatedDefinite = length >= 0;
+        var type = asn1.readObject();
+        if (!(type instanceof ASN1ObjectIdentifier))
+        {
+            throw new IOException("encapsulated content info without content type");
+        }
+        contentType = (ASN1ObjectIdentifier)type;
+        Object result = null;
+        if (hasMore(length, start))
+        {
+            var tagLength = readHeader(EXPLICIT_TAG_0);
+            var tagStart = in.position;
+            contentTagDefinite = tagLength >= 0;
+            result = isStreamableOctetString() ? readOctetString() : asn1.readObject();
+            checkEnd(tagLength, tagStart);
+        }
+        checkEnd(length, start);
+        return result;
+    }
+
+    /**
+     * Reads a primitive octet string or a constructed one with indefinite length, which is how streaming producers encode large content.
+     * Constructed octet strings with definite length are kept as they are, the result would differ from a complete parse otherwise.
+     */
+    private boolean isStreamableOctetString() throws IOException
+    {
+        var header = in.peek(2);
+        return header[0] == OCTET_STRING || header[0] == CONSTRUCTED_OCTET_STRING && (header[1] & 0xff) == 0x80;
+    }
+
+    private Object readOctetString() throws IOException
+    {
+        var constructed = in.peek(1)[0] == CONSTRUCTED_OCTET_STRING;
+        var sink = new ContentSink();
+        try
+        {
+            copyOctets(sink);
+            var file = sink.finish();
+            if (file == null)
+            {
+                var bytes = sink.memory.toByteArray();
+                return constructed ? new BEROctetString(bytes) : new DEROctetString(bytes);
+            }
+            return new Spilled(ProtectedData.of(SpilledBinaryData.handlerFor(file)), sink.length, constructed);
+        }
+        catch (IOException e)
+        {
+            sink.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the value of a primitive octet string or the values of all octet strings contained in a constructed one.
+     */
+    private void copyOctets(ContentSink sink) throws IOException
+    {
+        var constructed = in.peek(1)[0] == CONSTRUCTED_OCTET_STRING;
+        var length = readHeader(constructed ? CONSTRUCTED_OCTET_STRING : OCTET_STRING);
+        if (constructed)
+        {
+            var start = in.position;
+            while (hasMore(length, start))
+            {
+                copyOctets(sink);
+            }
+            checkEnd(length, start);
+            return;
+        }
+        if (length < 0)
+        {
+            throw new IOException("primitive octet string with indefinite length");
+        }
+        var buffer = new byte[(int)Math.min(BUFFER_SIZE, length)];
+        var remaining = length;
+        while (remaining > 0)
+        {
+            var read = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+            if (read < 0)
+            {
+                throw new IOException("unexpected end of encapsulated content");
+            }
+            sink.write(buffer, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Reads identifier and length octets, returns -1 for indefinite length.
+     */
+    private long readHeader(int expectedTag) throws IOException
+    {
+        var tag = in.read();
+        if (tag != expectedTag)
+        {
+            throw new IOException("unexpected tag " + tag + " in CMS structure, expected " + expectedTag);
+        }
+        var first = in.read();
+        if (first < 0)
+        {
+            throw new IOException("unexpected end of CMS structure");
+        }
+        if (first == 0x80)
+        {
+            return -1;
+        }
+        if (first < 0x80)
+        {
+            return first;
+        }
+        var numBytes = first & 0x7f;
+        if (numBytes > 7)
+        {
+            throw new IOException("unsupported length in CMS structure");
+        }
+        long result = 0;
+        for (var i = 0; i < numBytes; i++)
+        {
+            var next = in.read();
+            if (next < 0)
+            {
+                throw new IOException("unexpected end of CMS structure");
+            }
+            result = result << 8 | next;
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the current structure has more elements, consumes the end-of-contents octets of an indefinite length structure.
+     */
+    private boolean hasMore(long length, long start) throws IOException
+    {
+        if (length >= 0)
+        {
+            return in.position - start < length;
+        }
+        if (in.peek(1)[0] != 0)
+        {
+            return true;
+        }
+        in.read();
+        if (in.read() != 0)
+        {
+            throw new IOException("invalid end-of-contents octets in CMS structure");
+        }
+        return false;
+    }
+
+    private void checkEnd(long length, long start) throws IOException
+    {
+        if (hasMore(length, start) || length >= 0 && in.position - start != length)
+        {
+            throw new IOException("unexpected content at end of CMS structure");
+        }
+    }
+
+    /**
+     * Content which has been copied into a temporary file.
+     */
+    private static final class Spilled
+    {
+
+        private final ProtectedData data;
+
+        private final long length;
+
+        private final boolean constructed;
+
+        Spilled(ProtectedData data, long length, boolean constructed)
+        {
+            this.data = data;
+            this.length = length;
+            this.constructed = constructed;
+        }
+    }
+
+    /**
+     * Collects the content in memory until it exceeds the threshold, then in a temporary file.
+     */
+    private final class ContentSink
+    {
+
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+
+        private long length;
+
+        private Path file;
+
+        private OutputStream out;
+
+        void write(byte[] b, int len) throws IOException
+        {
+            length += len;
+            if (file == null && length > spillThreshold)
+            {
+                file = Files.createTempFile("ervt-cms", ".bin");
+                out = new BufferedOutputStream(Files.newOutputStream(file));
+                memory.writeTo(out);
+                memory = null;
+            }
+            if (file == null)
+            {
+                memory.write(b, 0, len);
+            }
+            else
+            {
+                out.write(b, 0, len);
+            }
+        }
+
+        /**
+         * Closes the temporary file if there is one and returns it.
+         */
+        Path finish() throws IOException
+        {
+            if (out != null)
+            {
+                out.close();
+            }
+            return file;
+        }
+
+        void discard() throws IOException
+        {
+            if (file != null)
+            {
+                out.close();
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read and allows to peek at the next byte.
+     */
+    private static final class CountingInputStream extends FilterInputStream
+    {
+
+        private long position;
+
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        byte[] peek(int n) throws IOException
+        {
+            in.mark(n);
+            var result = in.readNBytes(n);
+            in.reset();
+            if (result.length < n)
+            {
+                throw new IOException("unexpected end of CMS structure");
+            }
+            return result;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            var result = in.read();
+            if (result >= 0)
+            {
+                position++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            var result = in.read(b, off, len);
+            if (result > 0)
+            {
+                position += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            var result = in.skip(n);
+            position += result;
+            return result;
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+    }
+}
@@ -48,6 +48,18 @@ public interface Parser<T>
      */
     boolean canParse() throws IOException;
 
+    /**
+     * Returns <code>true</code> if this parser can parse the given input which starts with the given bytes. Parsers which decide by the
+     * beginning of the input should override this method to avoid reading the input again for each parser. The default implementation
+     * calls {@link #canParse()}.
+     *
+     * @param peek beginning of the input specified by {@link #setInput(InputStream)}
+     */
+    default boolean canParse(PeekWindow peek) throws IOException
+    {
+        return canParse();
+    }
+
     /**
      * Parses the input and returns the parsed object. If successful, the input stream is not reset!
      */
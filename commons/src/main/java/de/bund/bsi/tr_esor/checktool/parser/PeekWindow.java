@@ -0,0 +1,210 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Beginning of an input which is read only once and shared by all parsers deciding whether they can parse that input. Instances are not
+ * thread safe.
+ *
+ * @author TT
+ */
+public final class PeekWindow
+{
+
+    /**
+     * Maximum number of bytes read, sufficient for all built-in parsers.
+     */
+    public static final int SIZE = 2 * 1024;
+
+    private static final byte DER_SEQUENCE = 0x30;
+
+    private static final String BOM = "\uFEFF";
+
+    private final byte[] bytes;
+
+    private final int length;
+
+    private String text;
+
+    private String rootElement;
+
+    private boolean rootElementSearched;
+
+    private PeekWindow(byte[] bytes, int length)
+    {
+        this.bytes = bytes;
+        this.length = length;
+    }
+
+    /**
+     * Reads the beginning of the input and resets the input afterwards.
+     *
+     * @param input must support mark/reset
+     */
+    public static PeekWindow read(InputStream input) throws IOException
+    {
+        if (!input.markSupported())
+        {
+            throw new IllegalArgumentException("can only handle streams which support mark/reset");
+        }
+        input.mark(SIZE);
+        var bytes = new byte[SIZE];
+        var length = input.readNBytes(bytes, 0, SIZE);
+        input.reset();
+        return new PeekWindow(bytes, length);
+    }
+
+    /**
+     * Returns the byte at given position or -1 if the input is shorter.
+     */
+    public int get(int index)
+    {
+        return index < length ? bytes[index] & 0xff : -1;
+    }
+
+    /**
+     * Returns a copy of the given range, shortened if the input is shorter.
+     */
+    public byte[] copy(int from, int to)
+    {
+        var result = new byte[Math.max(0, Math.min(to, length) - from)];
+        System.arraycopy(bytes, from, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes read, less than {@link #SIZE} only if the input is shorter.
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Returns the bytes interpreted as UTF-8 text, decoded only once.
+     */
+    public String getText()
+    {
+        if (text == null)
+        {
+            text = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+
+    /**
+     * Returns true if the input starts with the tag of a DER encoded SEQUENCE.
+     */
+    public boolean isDerSequence()
+    {
+        return length > 0 && bytes[0] == DER_SEQUENCE;
+    }
+
+    /**
+     * Returns true if the input starts like XML, i.e. with a tag after an optional byte order mark and white space.
+     */
+    public boolean isXml()
+    {
+        var value = getText();
+        var pos = skipWhitespace(value, value.startsWith(BOM) ? 1 : 0);
+        return value.startsWith("<", pos);
+    }
+
+    /**
+     * Returns the local name of the XML root element or null if the input does not start like XML or the root element is not within
+     * the window.
+     */
+    public String getRootElement()
+    {
+        if (!rootElementSearched)
+        {
+            rootElement = findRootElement(getText());
+            rootElementSearched = true;
+        }
+        return rootElement;
+    }
+
+    private static String findRootElement(String value)
+    {
+        var pos = value.startsWith(BOM) ? 1 : 0;
+        while (true)
+        {
+            pos = skipWhitespace(value, pos);
+            if (value.startsWith("<?", pos))
+            {
+                pos = skipBehind(value, pos, "?>");
+            }
+            else if (value.startsWith("<!--", pos))
+            {
+                pos = skipBehind(value, pos, "-->");
+            }
+            else if (value.startsWith("<!", pos))
+            {
+                pos = skipBehind(value, pos, ">");
+            }
+            else if (value.startsWith("<", pos))
+            {
+                var end = pos + 1;
+                while (end < value.length() && !Character.isWhitespace(value.charAt(end)) && value.charAt(end) != '>'
+                    && value.charAt(end) != '/')
+                {
+                    end++;
+                }
+                if (end == value.length() || end == pos + 1)
+                {
+                    return null;
+                }
+                var name = value.substring(pos + 1, end);
+                return name.substring(name.indexOf(':') + 1);
+            }
+            else
+            {
+                return null;
+            }
+            if (pos < 0)
+            {
+                return null;
+            }
+        }
+    }
+
+    private static int skipWhitespace(String value, int pos)
+    {
+        var result = pos;
+        while (result < value.length() && Character.isWhitespace(value.charAt(result)))
+        {
+            result++;
+        }
+        return result;
+    }
+
+    private static int skipBehind(String value, int pos, String end)
+    {
+        var index = value.indexOf(end, pos);
+        return index < 0 ? -1 : index + end.length();
+    }
+}
@@ -23,7 +23,8 @@ package de.bund.bsi.tr_esor.checktool.parser;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 
@@ -36,7 +37,7 @@ import java.util.regex.Pattern;
 public abstract class RegexBasedParser<T> implements Parser<T>
 {
 
-    private static final int BUF_SIZE = 2 * 1024;
+    private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
 
     private final Pattern pattern;
 
@@ -52,14 +53,14 @@ public abstract class RegexBasedParser<T> implements Parser<T>
      */
     protected RegexBasedParser(String regex)
     {
-        pattern = Pattern.compile(regex);
+        pattern = PATTERNS.computeIfAbsent(regex, Pattern::compile);
     }
 
     @Override
     public void setInput(InputStream input)
     {
         this.input = input;
-        if (!input.markSupported())
+        if (input != null && !input.markSupported())
         {
             throw new IllegalArgumentException("can only handle streams which support mark/reset");
         }
@@ -68,12 +69,13 @@ public abstract class RegexBasedParser<T> implements Parser<T>
     @Override
     public boolean canParse() throws IOException
     {
-        input.mark(BUF_SIZE);
-        var buf = new byte[BUF_SIZE];
-        var len = input.read(buf, 0, BUF_SIZE);
-        input.reset();
-        var beginning = new String(buf, 0, len, StandardCharsets.UTF_8);
-        return pattern.matcher(beginning).find();
+        return canParse(PeekWindow.read(input));
+    }
+
+    @Override
+    public boolean canParse(PeekWindow peek)
+    {
+        return pattern.matcher(peek.getText()).find();
     }
 
     /**
@@ -0,0 +1,248 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.FileDataSource;
+import jakarta.xml.bind.attachment.AttachmentUnmarshaller;
+
+
+/**
+ * Binary data which the XAIP parser decoded into temporary files instead of keeping it on the heap. The unmarshaller receives a XOP include
+ * for each such content and obtains a data handler over the file from this class. Each file is deleted as soon as its data handler is no
+ * longer referenced.
+ *
+ * @author TT
+ */
+class SpilledBinaryData extends AttachmentUnmarshaller
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpilledBinaryData.class);
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Map<String, DataHandler> attachments = new HashMap<>();
+
+    /**
+     * Starts decoding base64 content into a new temporary file.
+     *
+     * @throws IOException
+     */
+    Decoder newDecoder() throws IOException
+    {
+        var file = Files.createTempFile("ervt-binary", ".bin");
+        try
+        {
+            return new Decoder(file);
+        }
+        catch (IOException e)
+        {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Registers a completely written file and returns the content ID to refer to it.
+     */
+    String add(Path file)
+    {
+        var cid = "cid:spilled-" + attachments.size();
+        attachments.put(cid, handlerFor(file));
+        return cid;
+    }
+
+    /**
+     * Returns a data handler over a temporary file which is deleted as soon as the handler is no longer referenced.
+     */
+    static DataHandler handlerFor(Path file)
+    {
+        var handler = new DataHandler(new FileDataSource(file.toFile()));
+        CLEANER.register(handler, () -> delete(file));
+        return handler;
+    }
+
+    @Override
+    public DataHandler getAttachmentAsDataHandler(String cid)
+    {
+        var result = attachments.get(cid);
+        if (result == null)
+        {
+            throw new IllegalArgumentException("unknown XOP include " + cid);
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] getAttachmentAsByteArray(String cid)
+    {
+        try (var ins = getAttachmentAsDataHandler(cid).getInputStream())
+        {
+            return ins.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("cannot read spilled binary data", e);
+        }
+    }
+
+    @Override
+    public boolean isXOPPackage()
+    {
+        return true;
+    }
+
+    private static void delete(Path file)
+    {
+        try
+        {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("cannot delete temporary file {}", file, e);
+        }
+    }
+
+    /**
+     * Decodes base64 characters in chunks and writes the result to a file.
+     */
+    static final class Decoder
+    {
+
+        private static final int CHUNK = 64 * 1024;
+
+        private final Path file;
+
+        private final OutputStream out;
+
+        private final byte[] pending = new byte[CHUNK];
+
+        private int length;
+
+        Decoder(Path file) throws IOException
+        {
+            this.file = file;
+            out = new BufferedOutputStream(Files.newOutputStream(file));
+        }
+
+        /**
+         * Decodes given characters, white space is ignored.
+         *
+         * @throws IOException if the characters are not valid base64
+         */
+        void write(CharSequence chars) throws IOException
+        {
+            for (var i = 0; i < chars.length(); i++)
+            {
+                write(chars.charAt(i));
+            }
+        }
+
+        /**
+         * @see #write(CharSequence)
+         */
+        void write(char[] ch, int start, int len) throws IOException
+        {
+            for (var i = start; i < start + len; i++)
+            {
+                write(ch[i]);
+            }
+        }
+
+        private void write(char c) throws IOException
+        {
+            if (Character.isWhitespace(c))
+            {
+                return;
+            }
+            if (c > 0x7f)
+            {
+                throw new IOException("invalid character in base64 content");
+            }
+            pending[length++] = (byte)c;
+            if (length == CHUNK)
+            {
+                flushPending();
+            }
+        }
+
+        private void flushPending() throws IOException
+        {
+            try
+            {
+                var decoded = Base64.getDecoder().decode(ByteBuffer.wrap(pending, 0, length));
+                out.write(decoded.array(), decoded.arrayOffset() + decoded.position(), decoded.remaining());
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException("invalid base64 content", e);
+            }
+            length = 0;
+        }
+
+        /**
+         * Decodes the remaining characters and closes the file.
+         *
+         * @return the file containing the decoded content
+         * @throws IOException
+         */
+        Path finish() throws IOException
+        {
+            try (out)
+            {
+                flushPending();
+            }
+            return file;
+        }
+
+        /**
+         * Closes and deletes the file after parsing failed.
+         */
+        void discard()
+        {
+            try
+            {
+                out.close();
+            }
+            catch (IOException e)
+            {
+                LOG.debug("cannot close temporary file {}", file, e);
+            }
+            delete(file);
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.BEROctetString;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSTypedData;
+
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+
+
+/**
+ * CMS signed data whose encapsulated content is too large to be held in memory. The ASN.1 structure held by this object contains a short
+ * placeholder instead of the content, the content itself is read from its source whenever it is needed. Encodings of signed data derived
+ * from this object (for instance by replacing the signers) are produced by splicing the encoded content into the encoded structure, as
+ * long as the surrounding structures are encoded with indefinite length.
+ *
+ * @author TT
+ */
+public final class StreamedCmsSignedData extends CMSSignedData
+{
+
+    /** Chunk size used by {@link BEROctetString} when encoding constructed octet strings. */
+    private static final int CHUNK_SIZE = 1000;
+
+    /** Random placeholder content, longer than one chunk to make sure the chunking is reproduced correctly. */
+    private static final byte[] MARKER = new byte[CHUNK_SIZE + 500];
+
+    private static final byte[] OTHER_MARKER;
+
+    static
+    {
+        new SecureRandom().nextBytes(MARKER);
+        OTHER_MARKER = Arrays.copyOf(MARKER, MARKER.length + 1);
+    }
+
+    private final Function<ASN1OctetString, ContentInfo> withContent;
+
+    private final ASN1ObjectIdentifier contentType;
+
+    private final ProtectedData content;
+
+    private final long contentLength;
+
+    private final boolean constructed;
+
+    /**
+     * Creates new instance.
+     *
+     * @param withContent creates the content info for given encapsulated content
+     * @param contentType type of the encapsulated content
+     * @param content the encapsulated content
+     * @param contentLength length of the encapsulated content
+     * @param constructed whether the content was encoded as constructed octet string with indefinite length
+     * @throws CMSException
+     */
+    StreamedCmsSignedData(Function<ASN1OctetString, ContentInfo> withContent,
+                          ASN1ObjectIdentifier contentType,
+                          ProtectedData content,
+                          long contentLength,
+                          boolean constructed)
+        throws CMSException
+    {
+        super(withContent.apply(octets(MARKER, constructed)));
+        this.withContent = withContent;
+        this.contentType = contentType;
+        this.content = content;
+        this.contentLength = contentLength;
+        this.constructed = constructed;
+    }
+
+    /**
+     * Returns the encapsulated content.
+     */
+    public ProtectedData getContent()
+    {
+        return content;
+    }
+
+    /**
+     * Returns the encoding of signed data derived from this object. The encoding is not built in memory but read each time it is
+     * needed, the content is spliced in from its source.
+     *
+     * @param derivation creates the signed data to encode from this object, must not look at the encapsulated content
+     * @throws IOException
+     */
+    public ProtectedData encode(UnaryOperator<CMSSignedData> derivation) throws IOException
+    {
+        var derived = derivation.apply(this);
+        var encoded = derived == this ? super.getEncoded() : derived.getEncoded();
+        var placeholder = octets(MARKER, constructed).getEncoded();
+        var pos = indexOf(encoded, placeholder);
+        if (pos >= 0)
+        {
+            var prefix = Arrays.copyOf(encoded, pos);
+            var suffix = Arrays.copyOfRange(encoded, pos + placeholder.length, encoded.length);
+            if (canSplice(derivation, prefix, suffix, placeholder))
+            {
+                return ProtectedData.of(new DataHandler(new SplicedDataSource(prefix, suffix)));
+            }
+        }
+        // surrounding lengths depend on the content, so the encoding has to be built in memory
+        try
+        {
+            var inMemory = new CMSSignedData(withContent.apply(octets(content.getBytes(), constructed)));
+            return ProtectedData.of(derivation.apply(inMemory).getEncoded());
+        }
+        catch (CMSException e)
+        {
+            throw new IOException("CMS invalid format", e);
+        }
+    }
+
+    /**
+     * Returns the complete encoding, which requires holding the content in memory.
+     */
+    @Override
+    public byte[] getEncoded() throws IOException
+    {
+        return toASN1Structure().getEncoded();
+    }
+
+    /**
+     * Returns the complete structure, which requires holding the content in memory.
+     */
+    @Override
+    public ContentInfo toASN1Structure()
+    {
+        try
+        {
+            return withContent.apply(octets(content.getBytes(), constructed));
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("cannot read encapsulated content", e);
+        }
+    }
+
+    @Override
+    public CMSTypedData getSignedContent()
+    {
+        return new CMSTypedData()
+        {
+
+            @Override
+            public ASN1ObjectIdentifier getContentType()
+            {
+                return contentType;
+            }
+
+            @Override
+            public void write(OutputStream out) throws IOException
+            {
+                try (var ins = content.open())
+                {
+                    ins.transferTo(out);
+                }
+            }
+
+            @Override
+            public Object getContent()
+            {
+                try
+                {
+                    return content.getBytes();
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException("cannot read encapsulated content", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Checks that the content is encoded the same way as the placeholder and that a placeholder of different length produces the same
+     * bytes around it, that is all surrounding structures have been encoded with indefinite length.
+     */
+    private boolean canSplice(UnaryOperator<CMSSignedData> derivation, byte[] prefix, byte[] suffix, byte[] placeholder)
+        throws IOException
+    {
+        try (var ins = encodeContent(new ByteArrayInputStream(MARKER), MARKER.length))
+        {
+            if (!Arrays.equals(ins.readAllBytes(), placeholder))
+            {
+                return false;
+            }
+        }
+        try
+        {
+            var other = derivation.apply(new CMSSignedData(withContent.apply(octets(OTHER_MARKER, constructed)))).getEncoded();
+            var expected = concat(concat(prefix, octets(OTHER_MARKER, constructed).getEncoded()), suffix);
+            return Arrays.equals(other, expected);
+        }
+        catch (CMSException e)
+        {
+            throw new IOException("CMS invalid format", e);
+        }
+    }
+
+    /**
+     * Returns the encoding of the octet string holding given content, chunked like {@link BEROctetString} does for constructed content.
+     */
+    private InputStream encodeContent(InputStream ins, long length)
+    {
+        if (!constructed)
+        {
+            return new SequenceInputStream(new ByteArrayInputStream(octetStringHeader(length)), ins);
+        }
+        List<InputStream> parts = List.of(new ByteArrayInputStream(new byte[]{0x24, (byte)0x80}),
+                                          new ChunkingInputStream(ins, length),
+                                          new ByteArrayInputStream(new byte[2]));
+        return new SequenceInputStream(Collections.enumeration(parts));
+    }
+
+    private static ASN1OctetString octets(byte[] value, boolean constructed)
+    {
+        return constructed ? new BEROctetString(value) : new DEROctetString(value);
+    }
+
+    private static byte[] octetStringHeader(long length)
+    {
+        var result = new ByteArrayOutputStream();
+        result.write(0x04);
+        if (length < 0x80)
+        {
+            result.write((int)length);
+            return result.toByteArray();
+        }
+        var numBytes = (Long.SIZE - Long.numberOfLeadingZeros(length) + 7) / 8;
+        result.write(0x80 | numBytes);
+        for (var i = numBytes - 1; i >= 0; i--)
+        {
+            result.write((int)(length >>> (8 * i)));
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second)
+    {
+        var result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static int indexOf(byte[] data, byte[] part)
+    {
+        for (var i = 0; i <= data.length - part.length; i++)
+        {
+            if (Arrays.equals(data, i, i + part.length, part, 0, part.length))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Provides the encoded prefix, the encoded content read from its source and the encoded suffix as one stream.
+     */
+    private final class SplicedDataSource implements DataSource
+    {
+
+        private final byte[] prefix;
+
+        private final byte[] suffix;
+
+        SplicedDataSource(byte[] prefix, byte[] suffix)
+        {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            List<InputStream> parts = List.of(new ByteArrayInputStream(prefix),
+                                              encodeContent(content.open(), contentLength),
+                                              new ByteArrayInputStream(suffix));
+            return new SequenceInputStream(Collections.enumeration(parts));
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException
+        {
+            throw new IOException("spliced CMS encoding is read only");
+        }
+
+        @Override
+        public String getContentType()
+        {
+            return "application/pkcs7-mime";
+        }
+
+        @Override
+        public String getName()
+        {
+            return "cms";
+        }
+    }
+
+    /**
+     * Wraps each chunk of the content into a primitive octet string.
+     */
+    private static final class ChunkingInputStream extends InputStream
+    {
+
+        private final InputStream content;
+
+        private long remaining;
+
+        private byte[] current = new byte[0];
+
+        private int pos;
+
+        ChunkingInputStream(InputStream content, long length)
+        {
+            this.content = content;
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if (pos == current.length && !nextChunk())
+            {
+                return -1;
+            }
+            return current[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            if (pos == current.length && !nextChunk())
+            {
+                return -1;
+            }
+            var result = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, result);
+            pos += result;
+            return result;
+        }
+
+        private boolean nextChunk() throws IOException
+        {
+            if (remaining == 0)
+            {
+                return false;
+            }
+            var expected = (int)Math.min(CHUNK_SIZE, remaining);
+            var chunk = content.readNBytes(expected);
+            if (chunk.length < expected)
+            {
+                throw new IOException("encapsulated content is shorter than expected");
+            }
+            remaining -= chunk.length;
+            current = concat(octetStringHeader(chunk.length), chunk);
+            pos = 0;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            content.close();
+        }
+    }
+}
@@ -25,17 +25,22 @@ import java.io.IOException;
 import java.util.Optional;
 
 import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3._2000._09.xmldsig_.CanonicalizationMethodType;
 import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import de.bund.bsi.tr_esor.checktool.data.Checked;
 import de.bund.bsi.tr_esor.checktool.data.XaipAndSerializer;
 import de.bund.bsi.tr_esor.checktool.xml.ComprehensiveXaipSerializer;
 import de.bund.bsi.tr_esor.checktool.xml.LXaipReader;
@@ -43,11 +48,13 @@ import de.bund.bsi.tr_esor.checktool.xml.XmlHelper;
 import de.bund.bsi.tr_esor.xaip.XAIPType;
 
 import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.JAXBIntrospector;
 
 
 /**
- * Parses a XAIP and remembers the original DOM structure containing all the non-tag nodes, namespace prefixes and so on.
- * <strong>Warning:</strong> Instances are not thread-safe.
+ * Parses a XAIP and remembers the original DOM structure containing all the non-tag nodes, namespace prefixes and so on. The input is
+ * parsed once, the same SAX events build the JAXB model and the DOM. The DOM does not contain the content of binary data objects
+ * because those are serialized from the JAXB model. <strong>Warning:</strong> Instances are not thread-safe.
  *
  * @author TT, WS
  */
@@ -56,10 +63,22 @@ public class XaipParser extends RegexBasedParser<XaipAndSerializer>
 
     private static final Logger LOG = LoggerFactory.getLogger(XaipParser.class);
 
-    private static final DocumentBuilderFactory DBF = newDocumentBuilderFactory();
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    private static final SAXParserFactory SPF = newSAXParserFactory();
+
+    private static final SAXTransformerFactory STF = (SAXTransformerFactory)TransformerFactory.newInstance();
+
+    /** SAX parsers are expensive to create but not thread-safe, so each thread re-uses its own one. */
+    private static final ThreadLocal<SAXParser> SAX_PARSERS = ThreadLocal.withInitial(XaipParser::newSAXParser);
+
+    /** Binary data objects with more base64 characters are decoded into temporary files. */
+    public static final int DEFAULT_SPILL_THRESHOLD = 8 * 1024 * 1024;
 
     private final LXaipReader lXaipReader;
 
+    private int spillThreshold = DEFAULT_SPILL_THRESHOLD;
+
     private Document document;
 
     private String canonicalizationAlgo;
@@ -73,27 +92,68 @@ public class XaipParser extends RegexBasedParser<XaipAndSerializer>
         this.lXaipReader = lXaipReader;
     }
 
+    /**
+     * Sets the number of base64 characters above which the content of a binary data object is decoded into a temporary file instead of
+     * being held in memory.
+     *
+     * @return this (fluent API)
+     */
+    public XaipParser withSpillThreshold(int chars)
+    {
+        spillThreshold = chars;
+        return this;
+    }
+
     @Override
     public XaipAndSerializer parse() throws IOException
     {
+        XaipSaxHandler handler = null;
         try
         {
-            DocumentBuilder db = DBF.newDocumentBuilder();
-            document = db.parse(input);
-
-            XAIPType result = XmlHelper.parse(new DOMSource(document),
-                XAIPType.class,
-                XmlHelper.FACTORY_XAIP.getClass().getPackage().getName() + ":" + XmlHelper.FACTORY_ASIC.getClass().getPackage().getName());
+            var domResult = new DOMResult();
+            var domBuilder = STF.newTransformerHandler();
+            domBuilder.setResult(domResult);
+            var spilled = new SpilledBinaryData();
+            var jaxbUnmarshaller = XmlHelper.getContext(XmlHelper.FACTORY_XAIP.getClass().getPackage().getName() + ":"
+                + XmlHelper.FACTORY_ASIC.getClass().getPackage().getName()).createUnmarshaller();
+            jaxbUnmarshaller.setAttachmentUnmarshaller(spilled);
+            var unmarshaller = jaxbUnmarshaller.getUnmarshallerHandler();
+            handler = new XaipSaxHandler(unmarshaller, domBuilder, spilled, spillThreshold);
+
+            var saxParser = SAX_PARSERS.get();
+            try
+            {
+                var reader = saxParser.getXMLReader();
+                reader.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+                reader.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+                reader.setContentHandler(handler);
+                reader.setProperty(LEXICAL_HANDLER, handler);
+                reader.parse(new InputSource(input));
+            }
+            finally
+            {
+                saxParser.reset();
+            }
+            document = (Document)domResult.getNode();
+
+            var result = Checked.cast(JAXBIntrospector.getValue(unmarshaller.getResult())).to(XAIPType.class);
             canonicalizationAlgo = Optional.ofNullable(result.getPackageHeader().getCanonicalizationMethod())
                 .map(CanonicalizationMethodType::getAlgorithm)
                 .orElse("http://www.w3.org/2001/10/xml-exc-c14n#");
             return new XaipAndSerializer(result, createSerializer());
         }
-        catch (JAXBException | ParserConfigurationException | SAXException e)
+        catch (JAXBException | TransformerConfigurationException | SAXException e)
         {
             LOG.error("problem parsing the XAIP XML", e);
             throw new IOException("Invalid XML", e);
         }
+        finally
+        {
+            if (handler != null)
+            {
+                handler.discard();
+            }
+        }
     }
 
     /**
@@ -105,11 +165,11 @@ public class XaipParser extends RegexBasedParser<XaipAndSerializer>
     }
 
     /**
-     * Creates a new instance of a DocumentBuilderFactory avoiding several types of security leaks.
+     * Creates a new instance of a SAXParserFactory avoiding several types of security leaks.
      */
-    private static DocumentBuilderFactory newDocumentBuilderFactory()
+    private static SAXParserFactory newSAXParserFactory()
     {
-        DocumentBuilderFactory inst = DocumentBuilderFactory.newInstance();
+        var inst = SAXParserFactory.newInstance();
         inst.setNamespaceAware(true);
         try
         {
@@ -119,14 +179,23 @@ public class XaipParser extends RegexBasedParser<XaipAndSerializer>
             inst.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
             inst.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
         }
-        catch (ParserConfigurationException e)
+        catch (ParserConfigurationException | SAXException e)
         {
             throw new IllegalArgumentException("Implementation does not support setting safe parameters!", e);
         }
-        inst.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-        inst.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
         inst.setXIncludeAware(false);
-        inst.setExpandEntityReferences(false);
         return inst;
     }
+
+    private static SAXParser newSAXParser()
+    {
+        try
+        {
+            return SPF.newSAXParser();
+        }
+        catch (ParserConfigurationException | SAXException e)
+        {
+            throw new IllegalStateException("cannot create SAX parser", e);
+        }
+    }
 }
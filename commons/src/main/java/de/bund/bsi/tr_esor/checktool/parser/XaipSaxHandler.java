@@ -0,0 +1,272 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.parser;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.transform.sax.TransformerHandler;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+
+/**
+ * Feeds the events of a single XAIP parse into the JAXB unmarshaller and into a DOM builder. The DOM is needed for canonicalization only,
+ * so the content of <code>dataObject/binaryData</code> elements is passed to the unmarshaller exclusively. That content is always
+ * serialized from the JAXB model and usually makes up the bulk of a XAIP. Content exceeding a threshold is not even passed to the
+ * unmarshaller but decoded into a temporary file which the unmarshaller receives as XOP attachment.
+ *
+ * @author TT
+ */
+class XaipSaxHandler implements ContentHandler, LexicalHandler
+{
+
+    private static final String XAIP_NS = "http://www.bsi.bund.de/tr-esor/xaip";
+
+    private static final String XOP_NS = "http://www.w3.org/2004/08/xop/include";
+
+    private final ContentHandler unmarshaller;
+
+    private final TransformerHandler domBuilder;
+
+    private final Deque<String> openElements = new ArrayDeque<>();
+
+    private final SpilledBinaryData spilled;
+
+    private final int spillThreshold;
+
+    private final StringBuilder binaryData = new StringBuilder();
+
+    private SpilledBinaryData.Decoder decoder;
+
+    private int binaryDataDepth = -1;
+
+    /**
+     * Creates an instance forwarding to given handlers.
+     *
+     * @param spilled receives binary data content longer than spillThreshold characters
+     */
+    XaipSaxHandler(ContentHandler unmarshaller, TransformerHandler domBuilder, SpilledBinaryData spilled, int spillThreshold)
+    {
+        this.unmarshaller = unmarshaller;
+        this.domBuilder = domBuilder;
+        this.spilled = spilled;
+        this.spillThreshold = spillThreshold;
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator)
+    {
+        unmarshaller.setDocumentLocator(locator);
+        domBuilder.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startDocument() throws SAXException
+    {
+        unmarshaller.startDocument();
+        domBuilder.startDocument();
+    }
+
+    @Override
+    public void endDocument() throws SAXException
+    {
+        unmarshaller.endDocument();
+        domBuilder.endDocument();
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException
+    {
+        unmarshaller.startPrefixMapping(prefix, uri);
+        domBuilder.startPrefixMapping(prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException
+    {
+        unmarshaller.endPrefixMapping(prefix);
+        domBuilder.endPrefixMapping(prefix);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+    {
+        if (binaryDataDepth < 0 && XAIP_NS.equals(uri) && "binaryData".equals(localName) && "dataObject".equals(openElements.peek()))
+        {
+            binaryDataDepth = openElements.size();
+        }
+        openElements.push(XAIP_NS.equals(uri) ? localName : "");
+        unmarshaller.startElement(uri, localName, qName, atts);
+        domBuilder.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException
+    {
+        openElements.pop();
+        if (openElements.size() == binaryDataDepth)
+        {
+            binaryDataDepth = -1;
+            endBinaryData();
+        }
+        unmarshaller.endElement(uri, localName, qName);
+        domBuilder.endElement(uri, localName, qName);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException
+    {
+        if (binaryDataDepth < 0)
+        {
+            unmarshaller.characters(ch, start, length);
+            domBuilder.characters(ch, start, length);
+            return;
+        }
+        try
+        {
+            if (decoder != null)
+            {
+                decoder.write(ch, start, length);
+                return;
+            }
+            binaryData.append(ch, start, length);
+            if (binaryData.length() > spillThreshold)
+            {
+                decoder = spilled.newDecoder();
+                decoder.write(binaryData);
+                binaryData.setLength(0);
+                binaryData.trimToSize();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new SAXException("cannot store binary data", e);
+        }
+    }
+
+    private void endBinaryData() throws SAXException
+    {
+        if (decoder == null)
+        {
+            var chars = new char[binaryData.length()];
+            binaryData.getChars(0, chars.length, chars, 0);
+            binaryData.setLength(0);
+            unmarshaller.characters(chars, 0, chars.length);
+            return;
+        }
+        try
+        {
+            var cid = spilled.add(decoder.finish());
+            decoder = null;
+            var atts = new AttributesImpl();
+            atts.addAttribute("", "href", "href", "CDATA", cid);
+            unmarshaller.startElement(XOP_NS, "Include", "xop:Include", atts);
+            unmarshaller.endElement(XOP_NS, "Include", "xop:Include");
+        }
+        catch (IOException e)
+        {
+            throw new SAXException("cannot store binary data", e);
+        }
+    }
+
+    /**
+     * Deletes a partially written temporary file, to be called if parsing failed.
+     */
+    void discard()
+    {
+        if (decoder != null)
+        {
+            decoder.discard();
+            decoder = null;
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+    {
+        unmarshaller.ignorableWhitespace(ch, start, length);
+        domBuilder.ignorableWhitespace(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException
+    {
+        unmarshaller.processingInstruction(target, data);
+        domBuilder.processingInstruction(target, data);
+    }
+
+    @Override
+    public void skippedEntity(String name) throws SAXException
+    {
+        unmarshaller.skippedEntity(name);
+        domBuilder.skippedEntity(name);
+    }
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId) throws SAXException
+    {
+        domBuilder.startDTD(name, publicId, systemId);
+    }
+
+    @Override
+    public void endDTD() throws SAXException
+    {
+        domBuilder.endDTD();
+    }
+
+    @Override
+    public void startEntity(String name) throws SAXException
+    {
+        domBuilder.startEntity(name);
+    }
+
+    @Override
+    public void endEntity(String name) throws SAXException
+    {
+        domBuilder.endEntity(name);
+    }
+
+    @Override
+    public void startCDATA() throws SAXException
+    {
+        domBuilder.startCDATA();
+    }
+
+    @Override
+    public void endCDATA() throws SAXException
+    {
+        domBuilder.endCDATA();
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) throws SAXException
+    {
+        domBuilder.comment(ch, start, length);
+    }
+}
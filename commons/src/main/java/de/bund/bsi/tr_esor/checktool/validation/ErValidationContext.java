@@ -21,19 +21,33 @@
  */
 package de.bund.bsi.tr_esor.checktool.validation;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.ReturnVerificationReport;
 
+import de.bund.bsi.tr_esor.checktool.conf.ProtectedDataPool;
 import de.bund.bsi.tr_esor.checktool.data.ArchiveTimeStamp;
 import de.bund.bsi.tr_esor.checktool.data.EvidenceRecord;
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
 import de.bund.bsi.tr_esor.checktool.hash.HashCreator;
 import de.bund.bsi.tr_esor.checktool.validation.report.FormatOkReport;
 import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
@@ -47,7 +61,14 @@ import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
 public class ErValidationContext extends ValidationContext<EvidenceRecord>
 {
 
-    private final Map<Reference, byte[]> protectedDataByID = new HashMap<>();
+    private static final Logger LOG = LoggerFactory.getLogger(ErValidationContext.class);
+
+    private final Map<Reference, ProtectedData> protectedDataByID = new HashMap<>();
+
+    /**
+     * Precomputed digests of protected data which is not available itself, values by algorithm OID.
+     */
+    private final Map<Reference, Map<String, byte[]>> protectedDigestsByID = new HashMap<>();
 
     private final List<String> additionalMessages = new ArrayList<>();
 
@@ -63,6 +84,12 @@ public class ErValidationContext extends ValidationContext<EvidenceRecord>
      */
     private final Map<ArchiveTimeStamp, Date> securedByDate = new IdentityHashMap<>();
 
+    /**
+     * Required digests already computed, key is algorithm OID. Chains may be validated concurrently, the first caller computes the digests
+     * and the others wait for the result.
+     */
+    private final Map<String, CompletableFuture<Map<Reference, byte[]>>> requiredDigestsByOID = new ConcurrentHashMap<>();
+
     private List<String> declaredDigestOIDs;
 
     private HashCreator hashCreator;
@@ -99,11 +126,34 @@ public class ErValidationContext extends ValidationContext<EvidenceRecord>
      */
     public void addProtectedData(Reference key, byte[] data)
     {
-        if (protectedDataByID.containsKey(key))
+        addProtectedData(key, data == null ? null : ProtectedData.of(data));
+    }
+
+    /**
+     * Adds protected data so that the hash is checked in the evidence record. The data is read when its hash is calculated.
+     */
+    public void addProtectedData(Reference key, ProtectedData data)
+    {
+        if (protectedDataByID.containsKey(key) || protectedDigestsByID.containsKey(key))
         {
             throw new IllegalArgumentException("duplicate key: " + key);
         }
         protectedDataByID.put(key, data);
+        requiredDigestsByOID.clear();
+    }
+
+    /**
+     * Adds the precomputed digest of some protected data which is not available itself. The digest is checked in the evidence record
+     * instead of a digest calculated from the data. Several digests with different algorithms may be given for the same key.
+     */
+    public void addProtectedDigest(Reference key, String digestOID, byte[] digest)
+    {
+        if (protectedDataByID.containsKey(key))
+        {
+            throw new IllegalArgumentException("duplicate key: " + key);
+        }
+        protectedDigestsByID.computeIfAbsent(key, k -> new HashMap<>()).put(digestOID, digest);
+        requiredDigestsByOID.clear();
     }
 
     /**
@@ -124,18 +174,175 @@ public class ErValidationContext extends ValidationContext<EvidenceRecord>
 
 
     /**
-     * Returns a map of digests of all protected data by a unique ID which can be used to report a missing digest.
+     * Returns a map of digests of all protected data by a unique ID which can be used to report a missing digest. Several protected data
+     * objects are hashed in parallel, precomputed digests are used as given. The digests are computed once per algorithm, the returned map
+     * is shared and must not be modified.
+     *
+     * @throws NoSuchAlgorithmException if the algorithm is not supported or a precomputed digest for that algorithm is missing
      */
     public Map<Reference, byte[]> getRequiredDigests(String digestOID) throws NoSuchAlgorithmException
     {
-        Map<Reference, byte[]> result = new HashMap<>();
-        for (var entry : protectedDataByID.entrySet())
+        var pending = new CompletableFuture<Map<Reference, byte[]>>();
+        var cached = requiredDigestsByOID.putIfAbsent(digestOID, pending);
+        if (cached == null)
+        {
+            try
+            {
+                pending.complete(Collections.unmodifiableMap(computeRequiredDigests(digestOID)));
+                return pending.join();
+            }
+            catch (NoSuchAlgorithmException | RuntimeException e)
+            {
+                requiredDigestsByOID.remove(digestOID, pending);
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try
+        {
+            return cached.join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof NoSuchAlgorithmException)
+            {
+                throw (NoSuchAlgorithmException)e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Computes the required digests for all given algorithms, reading each protected data object only once. Algorithms whose digests are
+     * already known and algorithms not supported by the hash creator are skipped, {@link #getRequiredDigests(String)} reports the latter.
+     * If the digests cannot be computed in one pass nothing is stored, so that each algorithm is computed on its own when requested.
+     *
+     * @param digestOIDs algorithms used in the evidence record, may contain duplicates and <code>null</code>
+     */
+    public void prepareRequiredDigests(Collection<String> digestOIDs)
+    {
+        var missing = digestOIDs.stream()
+            .filter(Objects::nonNull)
+            .distinct()
+            .filter(oid -> !requiredDigestsByOID.containsKey(oid))
+            .filter(this::isSupported)
+            .collect(Collectors.toList());
+        if (missing.size() < 2)
+        {
+            return;
+        }
+        Map<Reference, Map<String, byte[]>> calculated;
+        try
+        {
+            calculated = calculateForAllProtectedData(data -> data.digest(hashCreator, missing));
+        }
+        catch (NoSuchAlgorithmException | RuntimeException e)
+        {
+            LOG.warn("cannot compute digests with algorithms " + missing + " in one pass, computing them one by one", e);
+            return;
+        }
+        for (var oid : missing)
+        {
+            Map<Reference, byte[]> digests = new HashMap<>();
+            calculated.forEach((ref, byOid) -> digests.put(ref, byOid.get(oid)));
+            try
+            {
+                var complete = Collections.unmodifiableMap(addPrecomputedDigests(digests, oid));
+                requiredDigestsByOID.putIfAbsent(oid, CompletableFuture.completedFuture(complete));
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                // precomputed digest missing, reported when the digests are requested
+            }
+        }
+    }
+
+    private boolean isSupported(String digestOID)
+    {
+        var supported = hashCreator.supports(digestOID);
+        if (!supported)
         {
-            result.put(entry.getKey(), hashCreator.calculateHash(entry.getValue(), digestOID));
+            LOG.debug("unsupported digest algorithm {}", digestOID);
+        }
+        return supported;
+    }
+
+    private Map<Reference, byte[]> computeRequiredDigests(String digestOID) throws NoSuchAlgorithmException
+    {
+        return addPrecomputedDigests(calculateForAllProtectedData(data -> data.digest(hashCreator, digestOID)), digestOID);
+    }
+
+    private Map<Reference, byte[]> addPrecomputedDigests(Map<Reference, byte[]> result, String digestOID) throws NoSuchAlgorithmException
+    {
+        for (var entry : protectedDigestsByID.entrySet())
+        {
+            var digest = entry.getValue().get(digestOID);
+            if (digest == null)
+            {
+                throw new NoSuchAlgorithmException("no precomputed digest with algorithm " + digestOID + " given for " + entry.getKey());
+            }
+            result.put(entry.getKey(), digest);
         }
         return result;
     }
 
+    private <T> Map<Reference, T> calculateForAllProtectedData(DigestFunction<T> function) throws NoSuchAlgorithmException
+    {
+        try
+        {
+            if (protectedDataByID.size() < 2 || !ProtectedDataPool.isParallel())
+            {
+                Map<Reference, T> result = new HashMap<>();
+                for (var entry : protectedDataByID.entrySet())
+                {
+                    result.put(entry.getKey(), calculateUnchecked(function, entry.getValue()));
+                }
+                return result;
+            }
+            return ProtectedDataPool.get()
+                .submit(() -> protectedDataByID.entrySet()
+                    .parallelStream()
+                    .collect(Collectors.toMap(Map.Entry::getKey,
+                        e -> calculateUnchecked(function, e.getValue()),
+                        (a, b) -> a,
+                        HashMap<Reference, T>::new)))
+                .join();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // exceptions from pool threads may arrive wrapped into a copy
+            for (Throwable t = e; t != null; t = t.getCause())
+            {
+                if (t.getCause() instanceof NoSuchAlgorithmException)
+                {
+                    throw (NoSuchAlgorithmException)t.getCause();
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static <T> T calculateUnchecked(DigestFunction<T> function, ProtectedData data)
+    {
+        try
+        {
+            return function.apply(data);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("cannot read protected data", e);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+
     /**
      * Returns true if for this context, the completeness of the required digests should be checked. This means that if this returns true,
      * only the digests returned by getRequiredDigests() should be present in an evidence record. If false is returned, other hashes in the
@@ -232,6 +439,27 @@ public class ErValidationContext extends ValidationContext<EvidenceRecord>
      */
     public byte[] singleProtectedData()
     {
-        return protectedDataByID.size() == 1 ? protectedDataByID.values().iterator().next() : null;
+        if (protectedDataByID.size() != 1)
+        {
+            return null;
+        }
+        try
+        {
+            return protectedDataByID.values().iterator().next().getBytes();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("cannot read protected data", e);
+        }
+    }
+
+    /**
+     * Digest calculation for a single protected data object.
+     */
+    @FunctionalInterface
+    private interface DigestFunction<T>
+    {
+
+        T apply(ProtectedData data) throws NoSuchAlgorithmException, IOException;
     }
 }
@@ -26,12 +26,10 @@ import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.function.Supplier;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,13 +41,16 @@ import de.bund.bsi.tr_esor.checktool.parser.BinaryParser;
 import de.bund.bsi.tr_esor.checktool.parser.CmsSignatureParser;
 import de.bund.bsi.tr_esor.checktool.parser.EvidenceRecordTypeParser;
 import de.bund.bsi.tr_esor.checktool.parser.Parser;
+import de.bund.bsi.tr_esor.checktool.parser.PeekWindow;
 import de.bund.bsi.tr_esor.checktool.parser.UnsupportedXaipParser;
 import de.bund.bsi.tr_esor.checktool.parser.XaipParser;
 import de.bund.bsi.tr_esor.checktool.xml.LXaipReader;
 
 
 /**
- * Factory for parsers.
+ * Factory for parsers. The beginning of each input is read once, the parsers which may handle it are selected by magic bytes or XML root
+ * element and decide on that shared beginning. Instances of the built-in parsers which keep no state except their input are cached per
+ * thread because they are not thread safe, configured parsers are created for each input because their state is unknown.
  *
  * @author TT
  */
@@ -60,29 +61,41 @@ public final class ParserFactory
 
     private static final ParserFactory INSTANCE = new ParserFactory();
 
-    private static final String ALL_PROFILE_KEY = "all";
+    /**
+     * Candidate parsers by local name of the XML root element.
+     */
+    private static final Map<String, List<Function<ParserSet, Parser<?>>>> BY_XML_ROOT = Map.of("XAIP",
+        List.of(ParserSet::createXaipParser, s -> s.unsupportedXaip),
+        "evidenceRecord",
+        List.of(s -> s.evidenceRecordType));
 
-    private final Map<String, List<Supplier<Parser<?>>>> parsersByProfile = new HashMap<>();
+    /**
+     * Candidate parsers for XML input with a root element not within the first bytes.
+     */
+    private static final List<Function<ParserSet, Parser<?>>> FOR_XML = List.of(ParserSet::createXaipParser,
+        s -> s.unsupportedXaip,
+        s -> s.evidenceRecordType);
+
+    /**
+     * Candidate parsers for input starting with a DER encoded SEQUENCE.
+     */
+    private static final List<Function<ParserSet, Parser<?>>> FOR_DER_SEQUENCE = List.of(s -> s.asn1EvidenceRecord, s -> s.cms);
+
+    private final Map<String, LXaipReader> lXaipReaders = new HashMap<>();
 
     private final List<Class<Parser<?>>> configured = new ArrayList<>();
 
     private final Map<String, List<Class<Parser<?>>>> configuredByProfile = new HashMap<>();
 
+    private final ThreadLocal<Map<String, ParserSet>> parserSets = ThreadLocal.withInitial(HashMap::new);
+
 
     private ParserFactory()
     {
-        var parserForAllProfiles = new ArrayList<Supplier<Parser<?>>>();
-        parserForAllProfiles.add(UnsupportedXaipParser::new);
-        parserForAllProfiles.add(EvidenceRecordTypeParser::new);
-        parserForAllProfiles.add(ASN1EvidenceRecordParser::new);
-        parserForAllProfiles.add(CmsSignatureParser::new);
-        parserForAllProfiles.add(BinaryParser::new); // Make sure this is the last one!
-        parsersByProfile.put(ALL_PROFILE_KEY, parserForAllProfiles);
         var conf = Configurator.getInstance();
         for (var name : conf.getSupportedProfileNames())
         {
-            var lXaipReader = new LXaipReader(Configurator.getInstance().getLXaipDataDirectory(name));
-            parsersByProfile.put(name, List.of(() -> new XaipParser(lXaipReader)));
+            lXaipReaders.put(name, new LXaipReader(conf.getLXaipDataDirectory(name)));
             configuredByProfile.put(name, loadClasses(conf.getParsers(name)));
         }
         configured.addAll(loadClasses(conf.getParsers()));
@@ -97,20 +110,52 @@ public final class ParserFactory
     }
 
     /**
-     * Parses given input by trying all parsers of the specified profile and returns the result of the first parser which can parse the
-     * input.
+     * Parses given input by trying the parsers of the specified profile which are suitable for the beginning of the input and returns the
+     * result of the first parser which can parse the input. Configured parsers are always tried first.
+     *
+     * @param ins must support mark/reset
      */
     public static Object parse(InputStream ins, String profileName) throws IOException
     {
-        for (var parser : ParserFactory.getInstance().getAvailableParsers(profileName))
+        return parse(ins, profileName, true);
+    }
+
+    /**
+     * Same as {@link #parse(InputStream, String)} but returns <code>null</code> instead of reading the whole input into a byte array if no
+     * parser except the {@link BinaryParser} can parse it. Use this if the caller can provide the content of binary input more efficiently
+     * itself.
+     *
+     * @param ins must support mark/reset
+     */
+    public static Object parseUnlessBinary(InputStream ins, String profileName) throws IOException
+    {
+        return parse(ins, profileName, false);
+    }
+
+    private static Object parse(InputStream ins, String profileName, boolean readBinary) throws IOException
+    {
+        var peek = PeekWindow.read(ins);
+        var parsers = getInstance().getParserSet(profileName);
+        try
         {
-            parser.setInput(ins);
-            if (parser.canParse())
+            for (var parser : getInstance().getCandidates(profileName, parsers, peek))
             {
-                return parser.parse();
+                if (!readBinary && parser instanceof BinaryParser)
+                {
+                    return null;
+                }
+                parser.setInput(ins);
+                if (parser.canParse(peek))
+                {
+                    return parser.parse();
+                }
             }
+            return null; // unreachable: each content is at least application/octet-stream
+        }
+        finally
+        {
+            parsers.clearInput();
         }
-        return null; // unreachable: each content is at least application/octet-stream
     }
 
     @SuppressWarnings("unchecked")
@@ -138,65 +183,123 @@ public final class ParserFactory
      */
     public Iterable<Parser<?>> getAvailableParsers(String profileName)
     {
-        List<Supplier<Parser<?>>> internal = new ArrayList<>();
-        if (parsersByProfile.containsKey(profileName))
+        var parsers = getParserSet(profileName);
+        var result = createConfiguredParsers(profileName);
+        FOR_XML.forEach(f -> result.add(f.apply(parsers)));
+        FOR_DER_SEQUENCE.forEach(f -> result.add(f.apply(parsers)));
+        result.add(parsers.binary);
+        return result;
+    }
+
+    /**
+     * Returns the parsers which may parse an input starting with given bytes, the {@link BinaryParser} comes last.
+     */
+    private List<Parser<?>> getCandidates(String profileName, ParserSet parsers, PeekWindow peek)
+    {
+        var result = createConfiguredParsers(profileName);
+        List<Function<ParserSet, Parser<?>>> builtIn = List.of();
+        var root = peek.getRootElement();
+        if (root != null)
         {
-            internal.addAll(parsersByProfile.get(profileName));
+            builtIn = BY_XML_ROOT.getOrDefault(root, List.of());
         }
-        else
+        else if (peek.isXml())
         {
-            internal.addAll(parsersByProfile.get(Configurator.getInstance().getDefaultProfileName()));
+            builtIn = FOR_XML;
         }
-        internal.addAll(parsersByProfile.get(ALL_PROFILE_KEY));
-        List<Class<Parser<?>>> fromConf = new ArrayList<>();
-        Optional.ofNullable(configuredByProfile.get(profileName)).ifPresent(fromConf::addAll);
-        fromConf.addAll(configured);
-        return () -> new Parsers(internal, fromConf);
+        else if (peek.isDerSequence())
+        {
+            builtIn = FOR_DER_SEQUENCE;
+        }
+        builtIn.forEach(f -> result.add(f.apply(parsers)));
+        result.add(parsers.binary);
+        return result;
     }
 
-
-    private static class Parsers implements Iterator<Parser<?>>
+    private ParserSet getParserSet(String profileName)
     {
+        return parserSets.get().computeIfAbsent(profileName, this::createParserSet);
+    }
 
-        private final List<Supplier<Parser<?>>> internal;
+    private ParserSet createParserSet(String profileName)
+    {
+        var lXaipReader = lXaipReaders.get(profileName);
+        if (lXaipReader == null)
+        {
+            lXaipReader = lXaipReaders.get(Configurator.getInstance().getDefaultProfileName());
+        }
+        return new ParserSet(lXaipReader);
+    }
 
-        private final List<Class<Parser<?>>> configured;
+    /**
+     * Returns new instances of the configured parsers for a profile, those configured for the profile come first.
+     */
+    private List<Parser<?>> createConfiguredParsers(String profileName)
+    {
+        List<Parser<?>> result = new ArrayList<>();
+        for (var parserClass : Optional.ofNullable(configuredByProfile.get(profileName)).orElse(List.of()))
+        {
+            result.add(instantiate(parserClass));
+        }
+        for (var parserClass : configured)
+        {
+            result.add(instantiate(parserClass));
+        }
+        return result;
+    }
 
-        Parsers(List<Supplier<Parser<?>>> internal, List<Class<Parser<?>>> configured)
+    private static Parser<?> instantiate(Class<Parser<?>> parserClass)
+    {
+        try
+        {
+            return parserClass.getDeclaredConstructor().newInstance();
+        }
+        catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e)
         {
-            this.internal = internal;
-            this.configured = configured;
+            throw new IllegalStateException(e);
         }
+    }
 
-        @Override
-        public boolean hasNext()
+    /**
+     * Built-in parser instances of one profile used by one thread.
+     */
+    private static final class ParserSet
+    {
+
+        final LXaipReader lXaipReader;
+
+        final Parser<?> unsupportedXaip = new UnsupportedXaipParser();
+
+        final Parser<?> evidenceRecordType = new EvidenceRecordTypeParser();
+
+        final Parser<?> asn1EvidenceRecord = new ASN1EvidenceRecordParser();
+
+        final Parser<?> cms = new CmsSignatureParser();
+
+        final Parser<?> binary = new BinaryParser();
+
+        ParserSet(LXaipReader lXaipReader)
         {
-            return !(internal.isEmpty() && configured.isEmpty());
+            this.lXaipReader = lXaipReader;
         }
 
-        @Override
-        public Parser<?> next()
+        /**
+         * Drops the references to the last input so that it does not stay reachable from long-living threads.
+         */
+        void clearInput()
         {
-            if (!configured.isEmpty())
+            for (var parser : List.of(unsupportedXaip, evidenceRecordType, asn1EvidenceRecord, cms, binary))
             {
-                try
-                {
-                    return configured.remove(0).getDeclaredConstructor().newInstance();
-                }
-                catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e)
-                {
-                    throw new IllegalStateException(e);
-                }
-            }
-            if (!internal.isEmpty())
-            {
-                return internal.remove(0).get();
+                parser.setInput(null);
             }
-            throw new NoSuchElementException();
         }
 
+        /**
+         * Returns a new XAIP parser because each instance keeps the DOM of the last parsed XAIP for its serializer.
+         */
+        Parser<?> createXaipParser()
+        {
+            return new XaipParser(lXaipReader);
+        }
     }
-
-    // In case of too many implemented parsers, rewrite the factory to filter the parsers for requested types.
-
 }
@@ -53,8 +53,19 @@ public final class ValidationScheduler
     @SuppressWarnings("PMD.NullAssignment")
     public static VerificationReportType validate(List<ValidationContext<?>> contexts)
     {
-        var reports = contexts.stream().map(ValidationScheduler::doValidation).collect(Collectors.toList());
-        return VRCreator.createReport(reports, contexts.isEmpty() ? null : contexts.get(0).getReturnVerificationReport());
+        return VRCreator.createReport(validateToReportParts(contexts),
+            contexts.isEmpty() ? null : contexts.get(0).getReturnVerificationReport());
+    }
+
+    /**
+     * Validates all the given objects and their children and returns the internal reports, one per context. Use this method if no XML
+     * verification report is needed.
+     *
+     * @param contexts sorted out elements and required data to validate each one
+     */
+    public static List<ReportPart> validateToReportParts(List<ValidationContext<?>> contexts)
+    {
+        return contexts.stream().map(ValidationScheduler::doValidation).collect(Collectors.toList());
     }
 
     private static <T> ReportPart doValidation(ValidationContext<T> context)
@@ -154,6 +154,11 @@ public final class ValidatorFactory
             ProfileNames.BASIS_ERS);
     }
 
+    /**
+     * Hash creator for the configuration it was created from, replaced when another configuration is loaded.
+     */
+    private volatile ConfiguredHashCreator hashCreator;
+
     private ValidatorFactory()
     {
         // nobody else
@@ -193,19 +198,22 @@ public final class ValidatorFactory
     }
 
     /**
-     * Returns the configured instance of {@link HashCreator}.
+     * Returns the configured instance of {@link HashCreator}. The instance is created once per loaded configuration and shared by all
+     * callers, so it must be thread safe as required by the interface.
      *
      * @throws ReflectiveOperationException
      */
     public HashCreator getHashCreator() throws ReflectiveOperationException
     {
-        var config = Configurator.getInstance();
-        var cnf = config.getHashCreator();
-        if (cnf == null)
+        var cnf = Configurator.getInstance().getHashCreator();
+        var current = hashCreator;
+        if (current != null && current.config == cnf)
         {
-            return new LocalHashCreator();
+            return current.instance;
         }
-        return (HashCreator)createInstance(cnf, Class.forName(cnf.getClassName()));
+        var instance = cnf == null ? new LocalHashCreator() : (HashCreator)createInstance(cnf, Class.forName(cnf.getClassName()));
+        hashCreator = new ConfiguredHashCreator(cnf, instance);
+        return instance;
     }
 
     /**
@@ -234,4 +242,21 @@ public final class ValidatorFactory
             return clazz.getDeclaredConstructor().newInstance();
         }
     }
+
+    /**
+     * Hash creator together with the configuration element it was created from.
+     */
+    private static final class ConfiguredHashCreator
+    {
+
+        private final ConfigurableObjectType config;
+
+        private final HashCreator instance;
+
+        ConfiguredHashCreator(ConfigurableObjectType config, HashCreator instance)
+        {
+            this.config = config;
+            this.instance = instance;
+        }
+    }
 }
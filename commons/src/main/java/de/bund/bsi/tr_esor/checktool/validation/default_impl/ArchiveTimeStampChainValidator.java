@@ -22,11 +22,13 @@
 package de.bund.bsi.tr_esor.checktool.validation.default_impl;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +43,7 @@ import de.bund.bsi.tr_esor.checktool.validation.ErValidationContext;
 import de.bund.bsi.tr_esor.checktool.validation.ValidationResultMajor;
 import de.bund.bsi.tr_esor.checktool.validation.report.ATSChainReport;
 import de.bund.bsi.tr_esor.checktool.validation.report.ArchiveTimeStampReport;
+import de.bund.bsi.tr_esor.checktool.validation.report.BsiResultMinor;
 import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
 import de.bund.bsi.tr_esor.checktool.validation.report.ReportPart.MinorPriority;
 
@@ -68,6 +71,12 @@ public class ArchiveTimeStampChainValidator extends BaseValidator<ArchiveTimeSta
         {
             return report;
         }
+        if (!toCheck.get(0).isTimeStampTokenDecodable())
+        {
+            // the digest algorithm of the chain is unknown, so only the broken ATS itself can be reported
+            report.addChild(callValidator(toCheck.get(0), ref.newChild("0"), ArchiveTimeStampReport.class));
+            return report;
+        }
         DigestsToCover digestsToCover;
         var digestOid = toCheck.get(0).getOidFromTimeStamp();
 
@@ -96,7 +105,17 @@ public class ArchiveTimeStampChainValidator extends BaseValidator<ArchiveTimeSta
             report.updateCodes(ValidationResultMajor.INDETERMINED,
                 "http://www.bsi.bund.de/ecard/api/1.1/resultminor/al/common#parameterError",
                 MinorPriority.MOST_IMPORTANT,
-                "unsupported digest oid: " + digestOid,
+                "unsupported digest oid: " + digestOid + Optional.ofNullable(e.getMessage()).map(m -> " (" + m + ")").orElse(""),
+                ref);
+            return report;
+        }
+        catch (UncheckedIOException e)
+        {
+            LOG.error("cannot read protected data", e);
+            report.updateCodes(ValidationResultMajor.INDETERMINED,
+                BsiResultMinor.INTERNAL_ERROR.getUri(),
+                MinorPriority.MOST_IMPORTANT,
+                "cannot read protected data: " + e.getCause().getMessage(),
                 ref);
             return report;
         }
@@ -22,6 +22,7 @@
 package de.bund.bsi.tr_esor.checktool.validation.default_impl;
 
 import java.util.Date;
+import java.util.stream.Collectors;
 
 import de.bund.bsi.tr_esor.checktool.data.ArchiveTimeStamp;
 import de.bund.bsi.tr_esor.checktool.data.ArchiveTimeStampSequence;
@@ -48,6 +49,10 @@ public class ArchiveTimeStampSequenceValidator extends BaseValidator<ArchiveTime
             return report;
         }
         setupSecuredTimes(toCheck);
+        ctx.prepareRequiredDigests(toCheck.stream()
+            .filter(chain -> !chain.isEmpty() && chain.get(0).isTimeStampTokenDecodable())
+            .map(chain -> chain.get(0).getOidFromTimeStamp())
+            .collect(Collectors.toList()));
         for (var i = 0; i < toCheck.size(); i++)
         {
             var chain = toCheck.get(i);
@@ -64,7 +69,7 @@ public class ArchiveTimeStampSequenceValidator extends BaseValidator<ArchiveTime
 
     /**
      * For each ATS in the sequence, write into the context the time at which that ATS surely existed (because there is another time stamp
-     * proving that).
+     * proving that). An ATS whose time stamp token cannot be decoded proves nothing, it is reported as invalid by its own validator.
      *
      * @param toCheck
      */
@@ -75,6 +80,10 @@ public class ArchiveTimeStampSequenceValidator extends BaseValidator<ArchiveTime
         {
             for (var ats : chain)
             {
+                if (!ats.isTimeStampTokenDecodable())
+                {
+                    continue;
+                }
                 var secure = ats.getSignDateFromTimeStamp();
                 if (lastAts != null)
                 {
@@ -83,12 +92,15 @@ public class ArchiveTimeStampSequenceValidator extends BaseValidator<ArchiveTime
                 lastAts = ats;
             }
         }
-        ctx.setSecureData(lastAts, new Date());
+        if (lastAts != null)
+        {
+            ctx.setSecureData(lastAts, new Date());
+        }
     }
 
     /**
-     * Returns the hash value of the ATS sequence up the before current position (null if there is none) using digest algorithm of current
-     * ATS.
+     * Returns the hash value of the ATS sequence up the before current position (null if there is none or the time stamp token of the
+     * current ATS cannot be decoded) using digest algorithm of current ATS.
      *
      * @param toCheck
      * @param pos
@@ -97,7 +109,7 @@ public class ArchiveTimeStampSequenceValidator extends BaseValidator<ArchiveTime
      */
     private byte[] computeHashOfSequenceSoFar(ArchiveTimeStampSequence toCheck, int pos, Reference ref, ATSSequenceReport report)
     {
-        if (pos == 0)
+        if (pos == 0 || !toCheck.get(pos).get(0).isTimeStampTokenDecodable())
         {
             return null;
         }
@@ -21,6 +21,7 @@
  */
 package de.bund.bsi.tr_esor.checktool.validation.default_impl;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -31,6 +32,8 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import de.bund.bsi.tr_esor.checktool.conf.HashSortingMode;
 import de.bund.bsi.tr_esor.checktool.data.AlgorithmUsage;
@@ -63,6 +66,8 @@ import de.bund.bsi.tr_esor.checktool.xml.XmlHelper;
 public class ArchiveTimeStampValidator extends BaseValidator<ArchiveTimeStamp, ErValidationContext, ArchiveTimeStampReport>
 {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveTimeStampValidator.class);
+
     private byte[] lastTimestampsContent;
 
     private byte[] archiveTimestampSequenceHashSoFar;
@@ -88,6 +93,17 @@ public class ArchiveTimeStampValidator extends BaseValidator<ArchiveTimeStamp, E
     {
         atsReport = new ArchiveTimeStampReport(ref);
         formatOk = new FormatOkReport(ref);
+        try
+        {
+            ats.decodeTimeStampToken();
+        }
+        catch (IOException e)
+        {
+            LOG.debug("cannot decode time stamp token", e);
+            setInvalidFormat(formatOk, ref.newChild("tsp"), e.getMessage());
+            atsReport.setFormatOk(formatOk);
+            return atsReport;
+        }
         var secureDate = ctx.getSecureDate(ats);
 
         checkAscendingSecureDate(ats.getSignDateFromTimeStamp(), secureDate, ref);
@@ -173,6 +189,7 @@ public class ArchiveTimeStampValidator extends BaseValidator<ArchiveTimeStamp, E
             {
                 var validator = (BaseTimeStampValidator)v;
                 validator.setSourceOfRootHash(sourceOfRootHash(ats, atsID));
+                validator.setDecodedTimeStamp(ats.getDecodedTimeStamp());
             }
         }, TimeStampReport.class));
         // CHECKSTYLE:ON
@@ -21,12 +21,10 @@
  */
 package de.bund.bsi.tr_esor.checktool.validation.default_impl;
 
-import org.bouncycastle.asn1.cms.ContentInfo;
-import org.bouncycastle.asn1.cms.SignedData;
 import org.bouncycastle.tsp.TimeStampToken;
 
 import de.bund.bsi.tr_esor.checktool.Toolbox;
-import de.bund.bsi.tr_esor.checktool.data.CAdESReader;
+import de.bund.bsi.tr_esor.checktool.data.DecodedTimeStamp;
 import de.bund.bsi.tr_esor.checktool.validation.ErValidationContext;
 import de.bund.bsi.tr_esor.checktool.validation.default_impl.basis.ers.ContentInfoChecker;
 import de.bund.bsi.tr_esor.checktool.validation.report.FormatOkReport;
@@ -43,6 +41,23 @@ public abstract class BaseTimeStampValidator extends BaseValidator<TimeStampToke
 
     protected byte[] sourceOfRootHash;
 
+    private DecodedTimeStamp decodedTimeStamp;
+
+    /**
+     * Returns the decoded view of given token. The view provided by the caller is used if it belongs to that token, otherwise the token
+     * is decoded once for this validator.
+     *
+     * @param ts
+     */
+    protected DecodedTimeStamp decoded(TimeStampToken ts)
+    {
+        if (decodedTimeStamp == null || decodedTimeStamp.getToken() != ts)
+        {
+            decodedTimeStamp = new DecodedTimeStamp(ts);
+        }
+        return decodedTimeStamp;
+    }
+
     /**
      * Checks the unsigned attributes of a time stamp for presence of certificate and revocation info.
      *
@@ -50,7 +65,8 @@ public abstract class BaseTimeStampValidator extends BaseValidator<TimeStampToke
      */
     protected void checkUnsignedAttributes(TimeStampToken ts, FormatOkReport formatOk)
     {
-        var signedData = SignedData.getInstance(ContentInfo.getInstance(ts.toCMSSignedData().toASN1Structure()).getContent());
+        var decoded = decoded(ts);
+        var signedData = decoded.getSignedData();
         if (!ContentInfoChecker.SUPPORTED_CMS_VERSION.equals(signedData.getVersion()))
         {
             if (!ContentInfoChecker.SUPPORTED_CMS_VERSION_5.equals(signedData.getVersion()))
@@ -74,7 +90,7 @@ public abstract class BaseTimeStampValidator extends BaseValidator<TimeStampToke
             }
         }
 
-        var reader = new CAdESReader(ts.toCMSSignedData());
+        var reader = decoded.getCAdESReader();
         if (!reader.hasCertificateValues() && (signedData.getCertificates() == null || signedData.getCertificates().size() == 0))
         {
             formatOk.invalidate("Missing certificates in time stamp", formatOk.getReference());
@@ -95,4 +111,9 @@ public abstract class BaseTimeStampValidator extends BaseValidator<TimeStampToke
     {
         this.sourceOfRootHash = sourceOfRootHash;
     }
+
+    void setDecodedTimeStamp(DecodedTimeStamp decodedTimeStamp)
+    {
+        this.decodedTimeStamp = decodedTimeStamp;
+    }
 }
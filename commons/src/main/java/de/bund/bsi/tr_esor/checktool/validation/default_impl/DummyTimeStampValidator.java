@@ -25,18 +25,13 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
-import java.util.Collection;
 
 import oasis.names.tc.dss._1_0.core.schema.InternationalStringType;
 import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.CertificatePathValidityType;
 import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.SignatureValidityType;
 import oasis.names.tc.dss_x._1_0.profiles.verificationreport.schema_.VerificationResultType;
 
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
 import org.bouncycastle.cms.CMSSignerDigestMismatchException;
-import org.bouncycastle.cms.SignerInformationVerifier;
 import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.OperatorCreationException;
@@ -67,6 +62,8 @@ public class DummyTimeStampValidator extends BaseTimeStampValidator
 
     private static final Logger LOG = LoggerFactory.getLogger(DummyTimeStampValidator.class);
 
+    private static final BouncyCastleProvider PROVIDER = new BouncyCastleProvider();
+
     @Override
     protected TimeStampReport validateInternal(Reference ref, TimeStampToken toCheck)
     {
@@ -108,14 +105,15 @@ public class DummyTimeStampValidator extends BaseTimeStampValidator
 
     private SignatureValidityType doValidateSigMathOK(TimeStampToken toCheck)
     {
-        Collection<X509CertificateHolder> tstMatches = toCheck.getCertificates().getMatches(toCheck.getSID());
-        X509CertificateHolder holder = tstMatches.iterator().next();
+        var decoded = decoded(toCheck);
         try
         {
-            X509Certificate tstCert = new JcaX509CertificateConverter().getCertificate(holder);
-            SignerInformationVerifier siv = new JcaSimpleSignerInfoVerifierBuilder().setProvider(new BouncyCastleProvider()).build(tstCert);
+            var tstCert = decoded.getX509SignerCertificate();
+            var siv = new JcaSimpleSignerInfoVerifierBuilder().setProvider(PROVIDER).build(tstCert);
+            // verifies the signature and the binding of the signing certificate in one go
             toCheck.validate(siv);
-            return verifyCorrectSigningCertificate(toCheck, tstCert);
+            LOG.debug("timestamp signature verified");
+            return signatureValidityWithResult(verificationResultOk());
         }
         catch (CertificateException ex)
         {
@@ -138,29 +136,6 @@ public class DummyTimeStampValidator extends BaseTimeStampValidator
         }
     }
 
-    private SignatureValidityType verifyCorrectSigningCertificate(TimeStampToken toCheck, X509Certificate tstCert)
-    {
-        for (var signer : toCheck.toCMSSignedData().getSignerInfos().getSigners())
-        {
-            try
-            {
-                if (signer.verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider(new BouncyCastleProvider()).build(tstCert)))
-                {
-                    LOG.debug("timestamp signature verified");
-                    return signatureValidityWithResult(verificationResultOk());
-                }
-            }
-            catch (Exception e)
-            {
-                LOG.error("building the signer information verifier for timestamp verification failed");
-                return signatureValidityWithResult(verificationResultInternalError(e));
-            }
-        }
-
-        LOG.warn("validation of given time stamp failed");
-        return signatureValidityWithResult(verificationResultSignatureNotOK());
-    }
-
     private SignatureValidityType handleTspException(TSPException tspException)
     {
         if (tspException.getCause() instanceof CMSSignerDigestMismatchException)
@@ -173,8 +148,9 @@ public class DummyTimeStampValidator extends BaseTimeStampValidator
 
     private boolean checkAtsHashMatches(TimeStampToken toCheck) throws NoSuchAlgorithmException
     {
-        var hashAlgorithm = toCheck.getTimeStampInfo().getHashAlgorithm();
-        var hashInTimestamp = toCheck.getTimeStampInfo().getMessageImprintDigest();
+        var timeStampInfo = decoded(toCheck).getTimeStampInfo();
+        var hashAlgorithm = timeStampInfo.getHashAlgorithm();
+        var hashInTimestamp = timeStampInfo.getMessageImprintDigest();
         var calculatedHash = new LocalHashCreator().calculateHash(sourceOfRootHash, hashAlgorithm.getAlgorithm().getId());
         return MessageDigest.isEqual(hashInTimestamp, calculatedHash);
     }
@@ -27,7 +27,6 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -75,6 +74,7 @@ import de.bund.bsi.ecard.api._1.SignatureObject;
 import de.bund.bsi.ecard.api._1.VerifyRequest;
 import de.bund.bsi.ecard.api._1.VerifyResponse;
 import de.bund.bsi.tr_esor.checktool.conf.Configurator;
+import de.bund.bsi.tr_esor.checktool.data.DecodedTimeStamp;
 import de.bund.bsi.tr_esor.checktool.data.TspQuality;
 import de.bund.bsi.tr_esor.checktool.entry.ReportDetailLevel;
 import de.bund.bsi.tr_esor.checktool.validation.ErValidationContext;
@@ -273,7 +273,8 @@ public class ECardTimeStampValidator extends BaseTimeStampValidator
 
     void fillCertificatePathValidity(CertificatePathValidityType certificatePathValidityType, TimeStampToken timeStampToken)
     {
-        Collection<X509CertificateHolder> certs = timeStampToken.getCertificates().getMatches(null);
+        var decoded = decoded(timeStampToken);
+        var certs = decoded.getCertificates();
         if (certificatePathValidityType.getPathValidityDetail() == null)
         {
             return;
@@ -290,7 +291,7 @@ public class ECardTimeStampValidator extends BaseTimeStampValidator
                     validityTypes.add(certificateValidityType);
                    continue;
                 }
-                retrieveOcspResponse(certificateValidityType, matchingCertificate.get(), certs);
+                retrieveOcspResponse(certificateValidityType, matchingCertificate.get(), decoded);
             }
             validityTypes.add(certificateValidityType);
         }
@@ -298,14 +299,15 @@ public class ECardTimeStampValidator extends BaseTimeStampValidator
         validityTypes.forEach(v -> certificatePathValidityType.getPathValidityDetail().getCertificateValidity().add(v));
     }
 
-    private void retrieveOcspResponse(CertificateValidityType certificatePathValidityType, X509CertificateHolder certificateHolder, Collection<X509CertificateHolder> certChain)
+    private void retrieveOcspResponse(CertificateValidityType certificatePathValidityType,
+                                      X509CertificateHolder certificateHolder,
+                                      DecodedTimeStamp timeStamp)
     {
         try
         {
             var onlineOcspRequester = new OnlineOcspRequester();
             var certificate = new JcaX509CertificateConverter().getCertificate(certificateHolder);
-            var x509CertChain = convertCertChain(certChain);
-            var issuerCertificate = findIssuerCertificate(certificate, x509CertChain);
+            var issuerCertificate = findIssuerCertificate(certificate, timeStamp.getX509Certificates());
             var ocspResponse = onlineOcspRequester.retrieveOcspResponseFromIncludedUrl(certificate, issuerCertificate);
             if (ocspResponse != null)
             {
@@ -321,20 +323,6 @@ public class ECardTimeStampValidator extends BaseTimeStampValidator
         }
     }
 
-    private List<X509Certificate> convertCertChain(Collection<X509CertificateHolder> certificates)
-    {
-        var results = new ArrayList<X509Certificate>();
-        for (var certificate : certificates)
-        {
-            try
-            {
-                results.add(new JcaX509CertificateConverter().getCertificate(certificate));
-            }
-            catch (CertificateException ignored) { }
-        }
-        return results;
-    }
-
     X509Certificate findIssuerCertificate(X509Certificate certificate, List<X509Certificate> certificateChain)
     {
         if (certificateChain.isEmpty())
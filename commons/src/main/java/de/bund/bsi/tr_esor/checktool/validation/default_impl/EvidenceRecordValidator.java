@@ -66,8 +66,22 @@ public class EvidenceRecordValidator extends BaseValidator<EvidenceRecord, ErVal
         else
         {
             checkVersion(er.getVersion(), detailReport);
-            checkCryptoInfo(er.getCryptoInfo(), detailReport);
-            checkEncryptionInfo(er.getEncryptionInfo(), detailReport);
+            try
+            {
+                checkCryptoInfo(er.getCryptoInfo(), detailReport);
+            }
+            catch (IllegalStateException e)
+            {
+                ctx.getFormatOk().invalidate(e.getMessage(), reference);
+            }
+            try
+            {
+                checkEncryptionInfo(er.getEncryptionInfo(), detailReport);
+            }
+            catch (IllegalStateException e)
+            {
+                ctx.getFormatOk().invalidate(e.getMessage(), reference);
+            }
             ctx.setDeclaredDigestOIDs(er.getDigestAlgorithms());
             checkTimeStampSequence(er.getAtss(), detailReport);
             checkDigestAlgorithmValidity(er, detailReport);
@@ -40,6 +40,6 @@ public class BasisErsDummyTimeStampValidator extends DummyTimeStampValidator
     protected void checkUnsignedAttributes(TimeStampToken ts, FormatOkReport formatOk)
     {
         var contentInfoChecker = new ContentInfoChecker(formatOk);
-        contentInfoChecker.checkContentInfo(formatOk.getReference(), ts.toCMSSignedData().toASN1Structure());
+        contentInfoChecker.checkContentInfo(formatOk.getReference(), decoded(ts));
     }
 }
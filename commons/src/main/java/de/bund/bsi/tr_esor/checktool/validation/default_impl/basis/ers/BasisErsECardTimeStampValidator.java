@@ -60,7 +60,7 @@ public class BasisErsECardTimeStampValidator extends ECardTimeStampValidator
     {
         super.checkUnsignedAttributes(ts, formatOk);
         var contentInfoChecker = new ContentInfoChecker(formatOk);
-        contentInfoChecker.checkContentInfo(formatOk.getReference(), ts.toCMSSignedData().toASN1Structure());
+        contentInfoChecker.checkContentInfo(formatOk.getReference(), decoded(ts));
 
     }
 }
@@ -49,6 +49,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.bund.bsi.tr_esor.checktool.Toolbox;
+import de.bund.bsi.tr_esor.checktool.data.DecodedTimeStamp;
 import de.bund.bsi.tr_esor.checktool.validation.report.FormatOkReport;
 import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
 
@@ -124,6 +125,18 @@ public class ContentInfoChecker
         }
     }
 
+    /**
+     * Verifies the content info of given time stamp, re-using its decoded signed data.
+     *
+     * @param ref
+     * @param timeStamp
+     */
+    public void checkContentInfo(Reference ref, DecodedTimeStamp timeStamp)
+    {
+        checkContentType(ref.newChild("contentType"), timeStamp.getContentInfo().getContentType());
+        checkSignedData(ref.newChild("content"), timeStamp.getSignedData());
+    }
+
     private void checkContentType(Reference ref, ASN1ObjectIdentifier contentType)
     {
         if (!OID_PKCS7_SIGNEDDATA.equals(contentType.getId()))
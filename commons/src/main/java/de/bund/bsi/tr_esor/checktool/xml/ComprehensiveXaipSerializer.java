@@ -24,8 +24,12 @@ package de.bund.bsi.tr_esor.checktool.xml;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.TransformerException;
@@ -55,7 +59,8 @@ import oasis.names.tc.dss._1_0.core.schema.SignatureObject;
 
 /**
  * Serializes XAIP elements for creating hash values. <br> WARNING: Note that for each serialization this class has to create a new instance
- * of {@link Canonicalizer} because that one might produce incorrect output when used more than once.
+ * of {@link Canonicalizer} because that one might produce incorrect output when used more than once. <br> Instances are not thread safe
+ * because the DOM is not, use {@link #copy()} to serialize elements concurrently.
  *
  * @author TT
  */
@@ -64,6 +69,16 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
 
     private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
 
+    /** Local names of the indexed XAIP elements mapped to the names of their ID attributes. */
+    private static final Map<String, String> ID_ATTRIBUTES = Map.of("dataObject",
+        "dataObjectID",
+        "metaDataObject",
+        "metaDataID",
+        "credential",
+        "credentialID",
+        "versionManifest",
+        "VersionID");
+
     static
     {
         if (!Init.isInitialized())
@@ -72,36 +87,122 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
         }
     }
 
-    private final String canonicalizationAlgo;
+    private final Document document;
 
-    private final Document xaip;
+    private final String canonicalizationAlgo;
 
     private final LXaipReader lXaipReader;
 
-    private final boolean rewriteNamespaces;
+    private final NamespaceMapper namespaceMapper;
+
+    /**
+     * Indexed elements by local name and ID. Namespace rewriting only changes prefixes and namespace declarations, thus the indexed nodes
+     * stay valid.
+     */
+    private final Map<String, Node> nodesById = new HashMap<>();
+
+    /**
+     * Elements whose namespace prefixes have been rewritten in the DOM of a copy and still have to be rewritten in this DOM, so that this
+     * instance serializes them the same way as if it had serialized them itself.
+     */
+    private final Queue<Object> rewrittenByCopies = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Queue of the instance this one is a copy of, <code>null</code> for an original.
+     */
+    private final Queue<Object> rewrittenForSource;
 
     /**
      * Instances are created by the parser exclusively.
      */
     public ComprehensiveXaipSerializer(Document xaip, String canonicalizationAlgo, LXaipReader lXaipReader)
     {
-        Objects.requireNonNull(xaip, "DOM document containg the XAIP");
-        this.canonicalizationAlgo = canonicalizationAlgo;
-        this.xaip = xaip;
-        this.lXaipReader = lXaipReader;
-        this.rewriteNamespaces = false;
+        this(xaip, canonicalizationAlgo, lXaipReader, false);
     }
 
     /**
      * Instances are created by the parser exclusively.
      */
     public ComprehensiveXaipSerializer(Document xaip, String canonicalizationAlgo, LXaipReader lXaipReader, boolean rewriteNamespaces)
+    {
+        this(xaip,
+            canonicalizationAlgo,
+            lXaipReader,
+            rewriteNamespaces ? new NamespaceMapper(Configurator.getInstance().getXMLNSPrefixes()) : null,
+            null);
+    }
+
+    private ComprehensiveXaipSerializer(Document xaip, String canonicalizationAlgo, LXaipReader lXaipReader,
+        NamespaceMapper namespaceMapper, Queue<Object> rewrittenForSource)
     {
         Objects.requireNonNull(xaip, "DOM document containg the XAIP");
+        this.document = xaip;
         this.canonicalizationAlgo = canonicalizationAlgo;
-        this.xaip = xaip;
         this.lXaipReader = lXaipReader;
-        this.rewriteNamespaces = rewriteNamespaces;
+        this.namespaceMapper = namespaceMapper;
+        this.rewrittenForSource = rewrittenForSource;
+        indexNodes(xaip.getDocumentElement());
+    }
+
+    /**
+     * Returns a serializer working on its own deep copy of the DOM. Each thread serializing elements concurrently needs a copy of its own
+     * because the DOM is not thread safe, even reading it may change internal caches. Namespace prefixes rewritten by the copy are
+     * rewritten in this instance as well before it is used next time. While copies are created, this instance must not be used otherwise.
+     */
+    @Override
+    public synchronized XaipSerializer copy()
+    {
+        applyRewritesOfCopies();
+        return new ComprehensiveXaipSerializer((Document)document.cloneNode(true),
+            canonicalizationAlgo,
+            lXaipReader,
+            namespaceMapper,
+            rewrittenByCopies);
+    }
+
+    private synchronized void applyRewritesOfCopies()
+    {
+        for (var value = rewrittenByCopies.poll(); value != null; value = rewrittenByCopies.poll())
+        {
+            var elem = elementToSerialize(value);
+            if (elem instanceof Element)
+            {
+                namespaceMapper.setNSPrefixRecursively((Element)elem);
+            }
+        }
+    }
+
+    /**
+     * Registers all XAIP elements with ID below given node, the first occurrence in document order wins.
+     */
+    private void indexNodes(Node node)
+    {
+        var idAttribute = ID_ATTRIBUTES.get(node.getLocalName());
+        if (idAttribute != null)
+        {
+            Optional.ofNullable(node.getAttributes())
+                .map(attrs -> attrs.getNamedItem(idAttribute))
+                .map(Node::getTextContent)
+                .ifPresent(id -> nodesById.putIfAbsent(key(node.getLocalName(), id), node));
+        }
+        var children = node.getChildNodes();
+        for (var i = 0; i < children.getLength(); i++)
+        {
+            if (children.item(i).getNodeType() == Node.ELEMENT_NODE)
+            {
+                indexNodes(children.item(i));
+            }
+        }
+    }
+
+    private static String key(String localName, String id)
+    {
+        return localName + ':' + id;
+    }
+
+    private Node getNodeById(String localName, String id)
+    {
+        return nodesById.get(key(localName, id));
     }
 
     /**
@@ -110,8 +211,9 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
     @Override
     public byte[] serializeXmlSignatureFromCredential(String credentialId, SignatureObject sig) throws TransformerException
     {
-        var credNode = getNodeByLocalNameAndId(xaip, "credential", "credentialID", credentialId);
-        var sigNode = getNodeByLocalNameAndId(credNode, "Signature", null, null);
+        applyRewritesOfCopies();
+        var credNode = getNodeById("credential", credentialId);
+        var sigNode = getNodeByLocalName(credNode, "Signature");
 
         return toBytes(sigNode);
     }
@@ -136,6 +238,7 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
      */
     public byte[] serialize(Object value) throws CanonicalizationException, JAXBException, InvalidCanonicalizerException, IOException
     {
+        applyRewritesOfCopies();
         return serialize(value, canonicalizer(canonicalizationAlgo));
     }
 
@@ -144,65 +247,87 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
      *
      * @param value must be a data object, meta, credential or manifest
      */
-    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
     private byte[] serialize(Object value, Canonicalizer can) throws CanonicalizationException, IOException
+    {
+        var binaryData = readBinaryData(value);
+        if (binaryData != null)
+        {
+            return binaryData;
+        }
+        var elem = elementToSerialize(value);
+        if (namespaceMapper != null && elem instanceof Element)
+        {
+            namespaceMapper.setNSPrefixRecursively((Element)elem);
+            if (rewrittenForSource != null)
+            {
+                rewrittenForSource.add(value);
+            }
+        }
+
+        return XmlHelper.canonicalizeSubtree(can, elem);
+    }
+
+    /**
+     * Returns the content of the XAIP element if it is given as binary data or within the LXAIP data directory, <code>null</code>
+     * otherwise.
+     */
+    private byte[] readBinaryData(Object value) throws IOException
+    {
+        if (value instanceof DataObjectType)
+        {
+            return Toolbox.readBinaryData(lXaipReader, (DataObjectType)value);
+        }
+        if (value instanceof MetaDataObjectType)
+        {
+            var meta = (MetaDataObjectType)value;
+            return LXaipReader.isValidLXaipElement(meta, meta.getMetaDataID()) ? lXaipReader.readBinaryData(meta, meta.getMetaDataID())
+                : null;
+        }
+        if (value instanceof CredentialType)
+        {
+            var cred = (CredentialType)value;
+            return LXaipReader.isValidLXaipElement(cred, cred.getCredentialID()) ? lXaipReader.readBinaryData(cred, cred.getCredentialID())
+                : null;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the DOM node which represents the XAIP element in serialized form.
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private Node elementToSerialize(Object value)
     {
         Node elem = null;
         if (value instanceof DataObjectType)
         {
             var data = (DataObjectType)value;
-            var binaryData = Toolbox.readBinaryData(lXaipReader, data);
-            if (binaryData != null)
-            {
-                return binaryData;
-            }
             if (data.getXmlData() == null)
             {
                 throw new IllegalArgumentException("Data objects must contain either base64 binary or xml data");
             }
-            elem = getNodeByLocalNameAndId(xaip, "dataObject", "dataObjectID", data.getDataObjectID());
+            elem = getNodeById("dataObject", data.getDataObjectID());
             // we use the whole xmlData object because TR-ESOR does not specify otherwise
-            elem = getNodeByLocalNameAndId(elem, "xmlData", null, null);
+            elem = getNodeByLocalName(elem, "xmlData");
             elem = onlyChildElementOrThrow(elem.getChildNodes(), data.getDataObjectID());
         }
         if (value instanceof MetaDataObjectType)
         {
-            var meta = (MetaDataObjectType)value;
-            if (LXaipReader.isValidLXaipElement(meta, meta.getMetaDataID()))
-            {
-                return lXaipReader.readBinaryData(meta, meta.getMetaDataID());
-            }
-            elem = getNodeByLocalNameAndId(xaip, "metaDataObject", "metaDataID", meta.getMetaDataID());
+            elem = getNodeById("metaDataObject", ((MetaDataObjectType)value).getMetaDataID());
         }
         if (value instanceof CredentialType)
         {
-            var cred = (CredentialType)value;
-            if (LXaipReader.isValidLXaipElement(cred, cred.getCredentialID()))
-            {
-                return lXaipReader.readBinaryData(cred, cred.getCredentialID());
-            }
-            else
-            {
-                elem = getNodeByLocalNameAndId(xaip, "credential", "credentialID", cred.getCredentialID());
-            }
+            elem = getNodeById("credential", ((CredentialType)value).getCredentialID());
         }
         if (value instanceof VersionManifestType)
         {
-            var mani = (VersionManifestType)value;
-            elem = getNodeByLocalNameAndId(xaip, "versionManifest", "VersionID", mani.getVersionID());
+            elem = getNodeById("versionManifest", ((VersionManifestType)value).getVersionID());
         }
         if (elem == null)
         {
             throw new IllegalArgumentException("Unsupported type " + value.getClass().getName());
         }
-
-        if (rewriteNamespaces && elem instanceof Element)
-        {
-            var namespaceMapper = new NamespaceMapper(Configurator.getInstance().getXMLNSPrefixes());
-            namespaceMapper.setNSPrefixRecursively((Element)elem);
-        }
-
-        return XmlHelper.canonicalizeSubtree(can, elem);
+        return elem;
     }
 
     /**
@@ -215,6 +340,7 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
     public byte[] serializeForSignatureVerification(Object value)
         throws CanonicalizationException, InvalidCanonicalizerException, IOException
     {
+        applyRewritesOfCopies();
         if (value instanceof MetaDataObjectType)
         {
             var meta = (MetaDataObjectType)value;
@@ -225,10 +351,10 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
             }
             if (meta.getXmlMetaData() != null)
             {
-                var metaNode = getNodeByLocalNameAndId(xaip, "metaDataObject", "metaDataID", meta.getMetaDataID());
+                var metaNode = getNodeById("metaDataObject", meta.getMetaDataID());
                 if (hasChildElements(metaNode))
                 {
-                    var xmlNode = getNodeByLocalNameAndId(metaNode, "xmlMetaData", null, null);
+                    var xmlNode = getNodeByLocalName(metaNode, "xmlMetaData");
                     var onlyChild = onlyChildElementOrThrow(xmlNode.getChildNodes(), meta.getMetaDataID());
                     return XmlHelper.canonicalizeSubtree(canonicalizer(canonicalizationAlgo), onlyChild);
                 }
@@ -278,14 +404,9 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
         return exclusiveElement;
     }
 
-    private static Node getNodeByLocalNameAndId(Document xaip, String localName, String idAttribute, String id)
+    private static Node getNodeByLocalName(Node node, String localName)
     {
-        return getNodeByLocalNameAndId(xaip.getDocumentElement(), localName, idAttribute, id);
-    }
-
-    private static Node getNodeByLocalNameAndId(Node node, String localName, String idAttribute, String id)
-    {
-        if (localName.equals(node.getLocalName()) && (idAttribute == null || hasAttribute(node, idAttribute, id)))
+        if (localName.equals(node.getLocalName()))
         {
             return node;
         }
@@ -294,7 +415,7 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
         {
             if (children.item(i).getNodeType() == Node.ELEMENT_NODE)
             {
-                var result = getNodeByLocalNameAndId(children.item(i), localName, idAttribute, id);
+                var result = getNodeByLocalName(children.item(i), localName);
                 if (result != null)
                 {
                     return result;
@@ -303,13 +424,4 @@ public class ComprehensiveXaipSerializer implements XaipSerializer
         }
         return null;
     }
-
-    private static boolean hasAttribute(Node node, String idAttribute, String id)
-    {
-        return Optional.ofNullable(node.getAttributes())
-            .map(attrs -> attrs.getNamedItem(idAttribute))
-            .map(Node::getTextContent)
-            .filter(id::equals)
-            .isPresent();
-    }
 }
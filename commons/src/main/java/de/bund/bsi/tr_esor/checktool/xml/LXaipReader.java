@@ -1,6 +1,6 @@
 package de.bund.bsi.tr_esor.checktool.xml;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -10,9 +10,9 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.etsi.uri._02918.v1_2.DataObjectReferenceType;
-import org.w3._2000._09.xmldsig_.DigestMethodType;
 
 import de.bund.bsi.tr_esor.checktool.hash.Algorithms;
+import de.bund.bsi.tr_esor.checktool.hash.HashCreator;
 import de.bund.bsi.tr_esor.checktool.hash.LocalHashCreator;
 import de.bund.bsi.tr_esor.xaip.CredentialType;
 import de.bund.bsi.tr_esor.xaip.DataObjectType;
@@ -55,19 +55,24 @@ public class LXaipReader
         var dataObjectReference = dataObjectReferenceFrom(data);
         var path = resolvePath(dataObjectReference.getURI(), id);
 
-        try (InputStream fi = new FileInputStream(path.toFile());
-            InputStream ins = new BufferedInputStream(fi))
+        try (InputStream ins = new FileInputStream(path.toFile()))
         {
-            var binaryData = ins.readAllBytes();
-            var digestCorrect = isDigestCorrect(binaryData, dataObjectReference.getDigestMethod(), dataObjectReference.getDigestValue());
-            if (!digestCorrect)
+            var hasher = new LocalHashCreator().start(Algorithms.toOid(dataObjectReference.getDigestMethod().getAlgorithm()));
+            var binaryData = new ByteArrayOutputStream();
+            var buffer = new byte[HashCreator.STREAM_BUFFER_SIZE];
+            for (var read = ins.read(buffer); read >= 0; read = ins.read(buffer))
+            {
+                hasher.update(buffer, 0, read);
+                binaryData.write(buffer, 0, read);
+            }
+            if (!Arrays.equals(hasher.finish(), dataObjectReference.getDigestValue()))
             {
                 throw new LXaipDigestMismatchException(String.format(
                     "The calculated digest value of the LXAIP data object (id: %s) does not match the embedded digest",
                     id), id);
             }
 
-            return binaryData;
+            return binaryData.toByteArray();
         }
         catch (IOException e)
         {
@@ -110,14 +115,7 @@ public class LXaipReader
         }
     }
 
-    private boolean isDigestCorrect(byte[] binaryData, DigestMethodType digestMethod, byte[] digestValue) throws NoSuchAlgorithmException
-    {
-        var digestAlgorithm = digestMethod.getAlgorithm();
-        var hash = new LocalHashCreator().calculateHash(binaryData, Algorithms.toOid(digestAlgorithm));
-        return Arrays.equals(hash, digestValue);
-    }
-
-    private static boolean isLXaip(Object data)
+    static boolean isLXaip(Object data)
     {
         List<Object> xmlData = null;
         if (data instanceof DataObjectType)
@@ -52,7 +52,6 @@ import de.bund.bsi.tr_esor.checktool.validation.report.ReportPart;
 import de.bund.bsi.tr_esor.checktool.validation.report.SignatureReportPart;
 import de.bund.bsi.tr_esor.checktool.validation.signatures.ECardResultMinor;
 
-import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
 import jakarta.xml.bind.util.JAXBSource;
 import oasis.names.tc.dss._1_0.core.schema.Result;
@@ -77,24 +76,18 @@ public final class VRCreator
 
     private static final Logger LOG = LoggerFactory.getLogger(VRCreator.class);
 
-    private static Schema schema;
-
-    static
+    private VRCreator()
     {
-        try
-        {
-            schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
-                .newSchema(VRCreator.class.getResource("/oasis-dssx-1.0-profiles-verification-report-cs1.xsd"));
-        }
-        catch (SAXException e)
-        {
-            LOG.error("Failed to load schema", e);
-        }
+        // static only
     }
 
-    private VRCreator()
+    /**
+     * Compiles the verification report schema unless already done. Calling this method is optional, the schema is compiled on first use
+     * otherwise.
+     */
+    public static void preloadSchema()
     {
-        // static only
+        LOG.debug("verification report schema available: {}", SchemaHolder.SCHEMA != null);
     }
 
     /**
@@ -125,10 +118,14 @@ public final class VRCreator
     {
         try
         {
-            var validator = schema.newValidator();
+            if (SchemaHolder.SCHEMA == null)
+            {
+                return;
+            }
+            var validator = SchemaHolder.SCHEMA.newValidator();
             validator.setErrorHandler(new LoggingErrorHandler(LOG));
             var factory = XmlHelper.FACTORY_OASIS_VR;
-            var context = JAXBContext.newInstance(factory.getClass().getPackage().getName());
+            var context = XmlHelper.getContext(factory.getClass().getPackage().getName());
             validator.validate(new JAXBSource(context, factory.createVerificationReport(report)));
         }
         catch (SAXException | JAXBException | IOException e)
@@ -293,7 +290,10 @@ public final class VRCreator
             .equals(Optional.ofNullable(returnVR).map(ReturnVerificationReport::getReportDetailLevel).orElse(""));
     }
 
-    private static Result translateResult(VerificationResultType input)
+    /**
+     * Translates an internal result into the result of an individual report as given in the verification report.
+     */
+    public static Result translateResult(VerificationResultType input)
     {
         var result = XmlHelper.FACTORY_DSS.createResult();
         if (OasisDssResultMajor.REQUESTER_ERROR.toString().equals(result.getResultMajor())
@@ -381,6 +381,34 @@ public final class VRCreator
         }
     }
 
+    /**
+     * Holds the compiled schema. Compiling the schema takes a noticeable part of the start up time, so it is done on first use only.
+     */
+    private static final class SchemaHolder
+    {
+
+        static final Schema SCHEMA = loadSchema();
+
+        private SchemaHolder()
+        {
+            // static only
+        }
+
+        private static Schema loadSchema()
+        {
+            try
+            {
+                return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                    .newSchema(VRCreator.class.getResource("/oasis-dssx-1.0-profiles-verification-report-cs1.xsd"));
+            }
+            catch (SAXException e)
+            {
+                LOG.error("Failed to load schema", e);
+                return null;
+            }
+        }
+    }
+
     private static class LoggingErrorHandler implements ErrorHandler
     {
 
@@ -0,0 +1,251 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.xml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import de.bund.bsi.tr_esor.xaip.CredentialType;
+import de.bund.bsi.tr_esor.xaip.DataObjectType;
+import de.bund.bsi.tr_esor.xaip.MetaDataObjectType;
+import de.bund.bsi.tr_esor.xaip.PackageInfoUnitType;
+import de.bund.bsi.tr_esor.xaip.VersionManifestType;
+import de.bund.bsi.tr_esor.xaip.XAIPType;
+
+import oasis.names.tc.dss._1_0.core.schema.SignatureObject;
+
+
+/**
+ * Immutable structural index of a parsed XAIP. Collects in a single walk over the model what the readers need repeatedly: objects by ID,
+ * protected objects by version, credentials by related object and credentials by kind. Lists keep document order.
+ *
+ * @author TT
+ */
+public final class XaipIndex
+{
+
+    /**
+     * Kinds of credentials which are handled differently when collecting validation tasks.
+     */
+    public enum CredentialKind
+    {
+        /** Credential containing an evidence record. */
+        EVIDENCE_RECORD,
+        /** Credential containing a supported signature object (base64 signature, XML signature or time stamp). */
+        SIGNATURE,
+        /** Credential whose content is stored outside the XAIP (LXAIP data object reference). */
+        LXAIP_REFERENCE,
+        /** Any other credential, for instance certificate or revocation values. */
+        OTHER
+    }
+
+    private final Map<String, Object> objectsById;
+
+    private final Map<String, VersionManifestType> versions;
+
+    private final Map<String, List<Object>> protectedObjectsByVersion;
+
+    private final Map<Object, List<CredentialType>> credentialsByRelatedObject;
+
+    private final List<CredentialType> credentials;
+
+    private final Map<CredentialType, CredentialKind> credentialKinds;
+
+    private final List<DataObjectType> dataObjects;
+
+    private final List<MetaDataObjectType> metaDataObjects;
+
+    private XaipIndex(XAIPType xaip)
+    {
+        var byId = new HashMap<String, Object>();
+        var versionMap = new LinkedHashMap<String, VersionManifestType>();
+        var protectedMap = new HashMap<String, List<Object>>();
+        var header = xaip.getPackageHeader();
+        if (header != null)
+        {
+            for (var manifest : header.getVersionManifest())
+            {
+                byId.putIfAbsent(manifest.getVersionID(), manifest);
+                versionMap.putIfAbsent(manifest.getVersionID(), manifest);
+                var pointed = new ArrayList<Object>();
+                addPointers(manifest.getPackageInfoUnit(), pointed);
+                protectedMap.putIfAbsent(manifest.getVersionID(), Collections.unmodifiableList(pointed));
+            }
+        }
+
+        var data = Optional.ofNullable(xaip.getDataObjectsSection()).map(s -> s.getDataObject()).orElse(List.of());
+        data.forEach(d -> byId.putIfAbsent(d.getDataObjectID(), d));
+        var meta = Optional.ofNullable(xaip.getMetaDataSection()).map(s -> s.getMetaDataObject()).orElse(List.of());
+        meta.forEach(m -> byId.putIfAbsent(m.getMetaDataID(), m));
+
+        var related = new IdentityHashMap<Object, List<CredentialType>>();
+        var kinds = new IdentityHashMap<CredentialType, CredentialKind>();
+        var creds = Optional.ofNullable(xaip.getCredentialsSection()).map(s -> s.getCredential()).orElse(List.of());
+        for (var cred : creds)
+        {
+            byId.putIfAbsent(cred.getCredentialID(), cred);
+            kinds.put(cred, kindOf(cred));
+            for (var ro : cred.getRelatedObjects())
+            {
+                related.computeIfAbsent(ro, k -> new ArrayList<>()).add(cred);
+            }
+        }
+        related.replaceAll((k, v) -> Collections.unmodifiableList(v));
+
+        objectsById = Collections.unmodifiableMap(byId);
+        versions = Collections.unmodifiableMap(versionMap);
+        protectedObjectsByVersion = Collections.unmodifiableMap(protectedMap);
+        credentialsByRelatedObject = Collections.unmodifiableMap(related);
+        credentials = Collections.unmodifiableList(creds);
+        credentialKinds = Collections.unmodifiableMap(kinds);
+        dataObjects = Collections.unmodifiableList(data);
+        metaDataObjects = Collections.unmodifiableList(meta);
+    }
+
+    /**
+     * Builds the index for given XAIP. The XAIP must not be modified structurally afterwards.
+     */
+    public static XaipIndex of(XAIPType xaip)
+    {
+        return new XaipIndex(xaip);
+    }
+
+    private static CredentialKind kindOf(CredentialType cred)
+    {
+        if (cred.getEvidenceRecord() != null)
+        {
+            return CredentialKind.EVIDENCE_RECORD;
+        }
+        if (LXaipReader.isLXaip(cred))
+        {
+            return CredentialKind.LXAIP_REFERENCE;
+        }
+        var sig = cred.getSignatureObject();
+        if (sig != null && isSupportedSignatureObject(sig))
+        {
+            return CredentialKind.SIGNATURE;
+        }
+        return CredentialKind.OTHER;
+    }
+
+    private static boolean isSupportedSignatureObject(SignatureObject sigObj)
+    {
+        return sigObj.getBase64Signature() != null || sigObj.getSignature() != null || sigObj.getTimestamp() != null;
+    }
+
+    private static void addPointers(List<PackageInfoUnitType> packageInfoUnit, List<Object> pointed)
+    {
+        for (var info : packageInfoUnit)
+        {
+            info.getProtectedObjectPointer().forEach(p -> pointed.add(p.getValue()));
+            addPointers(info.getPackageInfoUnit(), pointed);
+        }
+    }
+
+    /**
+     * Returns the data object, meta data object, credential or version manifest with given ID, <code>null</code> if there is none.
+     */
+    public Object getObject(String id)
+    {
+        return objectsById.get(id);
+    }
+
+    /**
+     * Returns the version manifest with given ID, <code>null</code> if there is none.
+     */
+    public VersionManifestType getVersionManifest(String versionId)
+    {
+        return versions.get(versionId);
+    }
+
+    /**
+     * Returns the IDs of all versions in document order.
+     */
+    public List<String> getVersionIds()
+    {
+        return new ArrayList<>(versions.keySet());
+    }
+
+    /**
+     * Returns the objects referenced by protected object pointers of the specified version, including nested package info units.
+     */
+    public List<Object> getProtectedObjects(String versionId)
+    {
+        return protectedObjectsByVersion.getOrDefault(versionId, List.of());
+    }
+
+    /**
+     * Returns the credentials listing given object as related object.
+     */
+    public List<CredentialType> getCredentialsRelatedTo(Object relatedObject)
+    {
+        return credentialsByRelatedObject.getOrDefault(relatedObject, List.of());
+    }
+
+    /**
+     * Returns the credentials of the specified kinds in document order.
+     */
+    public List<CredentialType> getCredentials(CredentialKind kind, CredentialKind... moreKinds)
+    {
+        var wanted = EnumSet.of(kind, moreKinds);
+        var result = new ArrayList<CredentialType>();
+        for (var cred : credentials)
+        {
+            if (wanted.contains(credentialKinds.get(cred)))
+            {
+                result.add(cred);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the kind of given credential, <code>null</code> if it does not belong to the indexed XAIP.
+     */
+    public CredentialKind getKind(CredentialType credential)
+    {
+        return credentialKinds.get(credential);
+    }
+
+    /**
+     * Returns all data objects.
+     */
+    public List<DataObjectType> getDataObjects()
+    {
+        return dataObjects;
+    }
+
+    /**
+     * Returns all meta data objects.
+     */
+    public List<MetaDataObjectType> getMetaDataObjects()
+    {
+        return metaDataObjects;
+    }
+}
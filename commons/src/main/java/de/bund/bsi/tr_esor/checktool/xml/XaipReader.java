@@ -22,17 +22,20 @@
 package de.bund.bsi.tr_esor.checktool.xml;
 
 import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.xml.security.Init;
-import org.apache.xml.security.c14n.CanonicalizationException;
 import org.apache.xml.security.c14n.Canonicalizer;
 import org.apache.xml.security.c14n.InvalidCanonicalizerException;
 import org.apache.xml.security.exceptions.XMLSecurityException;
@@ -44,21 +47,21 @@ import org.etsi.uri._01903.v1_3.RevocationValuesType;
 
 import de.bund.bsi.tr_esor.checktool.Toolbox;
 import de.bund.bsi.tr_esor.checktool.conf.Configurator;
+import de.bund.bsi.tr_esor.checktool.conf.ProtectedDataPool;
 import de.bund.bsi.tr_esor.checktool.data.InlineSignedData;
 import de.bund.bsi.tr_esor.checktool.data.InlineSignedDataObject;
 import de.bund.bsi.tr_esor.checktool.data.InlineSignedMetaDataObject;
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
 import de.bund.bsi.tr_esor.checktool.validation.VersionNotFoundException;
 import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
+import de.bund.bsi.tr_esor.checktool.xml.XaipIndex.CredentialKind;
 import de.bund.bsi.tr_esor.xaip.CredentialType;
-import de.bund.bsi.tr_esor.xaip.CredentialsSectionType;
 import de.bund.bsi.tr_esor.xaip.DataObjectType;
 import de.bund.bsi.tr_esor.xaip.EvidenceRecordType;
 import de.bund.bsi.tr_esor.xaip.MetaDataObjectType;
-import de.bund.bsi.tr_esor.xaip.PackageInfoUnitType;
 import de.bund.bsi.tr_esor.xaip.VersionManifestType;
 import de.bund.bsi.tr_esor.xaip.XAIPType;
 
-import jakarta.xml.bind.JAXBElement;
 import jakarta.xml.bind.JAXBException;
 import oasis.names.tc.dss._1_0.core.schema.Base64Signature;
 import oasis.names.tc.dss._1_0.core.schema.SignatureObject;
@@ -93,8 +96,12 @@ public class XaipReader
 
     private final NamespaceMapper namespaceMapper;
 
+    private final XaipIndex index;
+
+    private final LXaipReader lXaipReader;
+
     /**
-     * Create a new reader instance for XAIP.
+     * Create a new reader instance for XAIP. The XAIP is indexed once, so use the same reader for all questions about it.
      */
     public XaipReader(XAIPType xaip, Reference reference, String profileName)
     {
@@ -102,6 +109,8 @@ public class XaipReader
         this.reference = reference;
         this.profileName = profileName;
         this.namespaceMapper = new NamespaceMapper(Configurator.getInstance().getXMLNSPrefixes());
+        this.index = XaipIndex.of(xaip);
+        this.lXaipReader = new LXaipReader(Configurator.getInstance().getLXaipDataDirectory(profileName));
     }
 
     /**
@@ -109,14 +118,8 @@ public class XaipReader
      */
     public Map<Reference, CredentialType> getEvidenceRecords()
     {
-        if (xaip.getCredentialsSection() == null)
-        {
-            return Collections.emptyMap();
-        }
-        return xaip.getCredentialsSection()
-            .getCredential()
+        return index.getCredentials(CredentialKind.EVIDENCE_RECORD)
             .stream()
-            .filter(cred -> cred.getEvidenceRecord() != null)
             .collect(Collectors.toMap(this::createRefForEr, Function.identity()));
     }
 
@@ -124,30 +127,18 @@ public class XaipReader
     public List<InlineSignedData> findPotentiallyInlineSignedElements()
     {
         var results = new ArrayList<InlineSignedData>();
-        var dataSection = xaip.getDataObjectsSection();
-        var lXaipReader = new LXaipReader(Configurator.getInstance().getLXaipDataDirectory(profileName));
-
-        if (dataSection != null)
+        for (var data : index.getDataObjects())
         {
-            for (var data : dataSection.getDataObject())
+            if (LXaipReader.isValidLXaipElement(data, data.getDataObjectID()) || data.getBinaryData() != null)
             {
-                if ((lXaipReader.isValidLXaipElement(data, data.getDataObjectID()) || data.getBinaryData() != null))
-                {
-                    results.add(new InlineSignedDataObject(new Reference(data.getDataObjectID()), lXaipReader, data));
-                }
+                results.add(new InlineSignedDataObject(new Reference(data.getDataObjectID()), lXaipReader, data));
             }
         }
-
-        var metaDataSection = xaip.getMetaDataSection();
-
-        if (metaDataSection != null)
+        for (var meta : index.getMetaDataObjects())
         {
-            for (var meta : metaDataSection.getMetaDataObject())
+            if (LXaipReader.isValidLXaipElement(meta, meta.getMetaDataID()) || meta.getBinaryMetaData() != null)
             {
-                if ((lXaipReader.isValidLXaipElement(meta, meta.getMetaDataID()) || meta.getBinaryMetaData() != null))
-                {
-                    results.add(new InlineSignedMetaDataObject(new Reference(meta.getMetaDataID()), lXaipReader, meta));
-                }
+                results.add(new InlineSignedMetaDataObject(new Reference(meta.getMetaDataID()), lXaipReader, meta));
             }
         }
         return results;
@@ -157,17 +148,9 @@ public class XaipReader
     public List<CredentialType> findDetachedSignatures()
     {
         var results = new ArrayList<CredentialType>();
-        CredentialsSectionType credentialSection = xaip.getCredentialsSection();
-        if (credentialSection == null)
-        {
-            return List.of();
-        }
-
-        var lXaipReader = new LXaipReader(Configurator.getInstance().getLXaipDataDirectory(profileName));
-        for (CredentialType cred : credentialSection.getCredential())
+        for (var cred : index.getCredentials(CredentialKind.SIGNATURE, CredentialKind.LXAIP_REFERENCE))
         {
-            if (lXaipReader.isValidLXaipElement(cred, cred.getCredentialID())
-                || cred.getSignatureObject() != null && isSupportedSignatureObject(cred.getSignatureObject()))
+            if (index.getKind(cred) == CredentialKind.SIGNATURE || LXaipReader.isValidLXaipElement(cred, cred.getCredentialID()))
             {
                 results.add(cred);
             }
@@ -175,19 +158,9 @@ public class XaipReader
         return results;
     }
 
-    private boolean isSupportedSignatureObject(SignatureObject sigObj)
-    {
-        return sigObj.getBase64Signature() != null || sigObj.getSignature() != null || sigObj.getTimestamp() != null;
-    }
-
-
     private boolean hasDetachedSignature(Object data)
     {
-        return xaip.getCredentialsSection() != null && xaip.getCredentialsSection()
-            .getCredential()
-            .stream()
-            .map(CredentialType::getRelatedObjects)
-            .anyMatch(ro -> ro.contains(data));
+        return !index.getCredentialsRelatedTo(data).isEmpty();
     }
 
     private Reference createRefForEr(CredentialType cred)
@@ -206,77 +179,153 @@ public class XaipReader
 
     /**
      * Returns a map containing all protected elements of the specified version represented as canonicalized byte arrays. Key is respective
-     * ID.
+     * ID. Inline binary data objects are not copied but read from the parsed XAIP when they are hashed. The elements are prepared in
+     * parallel using the {@link ProtectedDataPool}. XML elements are serialized on a few {@link XaipSerializer#copy() copies} of the
+     * serializer, each used by one thread at a time, because the DOM is not thread safe. The map iterates in the order of the protected
+     * objects.
      */
-    public Map<Reference, byte[]> prepareProtectedElements(String versionId, XaipSerializer serializer)
+    public Map<Reference, ProtectedData> prepareProtectedElements(String versionId, XaipSerializer serializer)
         throws JAXBException, XMLSecurityException, IOException
     {
-        Map<Reference, byte[]> result = new HashMap<>();
-        var manifest = getVersionManifest(versionId);
-        List<JAXBElement<Object>> pointer = new ArrayList<>();
-        addPointers(manifest.getPackageInfoUnit(), pointer);
+        getVersionManifest(versionId);
 
         var algorithm = xaip.getPackageHeader().getCanonicalizationMethod().getAlgorithm();
-        var canon = Canonicalizer.getInstance(algorithm);
-        var lXaipReader = new LXaipReader(Configurator.getInstance().getLXaipDataDirectory(profileName));
+        // checked before the elements are prepared in the pool, so that an unsupported algorithm fails the whole version even if none of
+        // its elements needs to be canonicalized
+        checkCanonicalizationAlgorithm(algorithm);
+        var objects = index.getProtectedObjects(versionId);
 
-        for (var p : pointer)
+        List<Map.Entry<Reference, ProtectedData>> prepared;
+        try
+        {
+            if (objects.size() > 1 && ProtectedDataPool.isParallel())
+            {
+                var copies = new SerializerCopies(serializer);
+                prepared = ProtectedDataPool.get().submit(() -> prepareAll(objects.parallelStream(), algorithm, copies::serialize)).join();
+            }
+            else
+            {
+                prepared = prepareAll(objects.stream(), algorithm, serializer::serialize);
+            }
+        }
+        catch (RuntimeException e)
         {
-            Reference id = null;
-            var value = p.getValue();
+            throw unwrapPreparationFailure(e);
+        }
 
-            if (value instanceof DataObjectType)
+        Map<Reference, ProtectedData> result = new LinkedHashMap<>();
+        for (var entry : prepared)
+        {
+            if (entry != null)
             {
-                var data = (DataObjectType)value;
-                var binaryData = Toolbox.readBinaryData(lXaipReader, data);
-                result.put(createRef("dataObjectID", data.getDataObjectID()), binaryData);
-                continue;
+                result.put(entry.getKey(), entry.getValue());
             }
-            if (value instanceof MetaDataObjectType)
+        }
+        return result;
+    }
+
+    /**
+     * Throws if the given canonicalization algorithm is not supported.
+     */
+    private static void checkCanonicalizationAlgorithm(String algorithm) throws InvalidCanonicalizerException
+    {
+        Canonicalizer.getInstance(algorithm);
+    }
+
+    private List<Map.Entry<Reference, ProtectedData>> prepareAll(Stream<Object> objects, String algorithm, ElementSerializer serializer)
+    {
+        return objects.map(value -> prepareUnchecked(value, algorithm, serializer)).collect(Collectors.toList());
+    }
+
+    private Map.Entry<Reference, ProtectedData> prepareUnchecked(Object value, String algorithm, ElementSerializer serializer)
+    {
+        try
+        {
+            return prepare(value, algorithm, serializer);
+        }
+        catch (JAXBException | XMLSecurityException | IOException | RuntimeException e)
+        {
+            throw new PreparationFailure(e);
+        }
+    }
+
+    /**
+     * Returns the exception thrown while preparing an element. Checked exceptions are thrown directly.
+     */
+    private static RuntimeException unwrapPreparationFailure(RuntimeException e) throws JAXBException, XMLSecurityException, IOException
+    {
+        for (Throwable t = e; t != null; t = t.getCause())
+        {
+            if (t instanceof PreparationFailure)
             {
-                var meta = (MetaDataObjectType)value;
-                var binaryData = Toolbox.readBinaryData(lXaipReader, meta);
-                if (binaryData != null)
+                var cause = t.getCause();
+                if (cause instanceof JAXBException)
                 {
-                    result.put(createRef("metaDataID", meta.getMetaDataID()), binaryData);
-                    continue;
+                    throw (JAXBException)cause;
                 }
-                else
+                if (cause instanceof XMLSecurityException)
                 {
-                    id = createRef("metaDataID", meta.getMetaDataID());
+                    throw (XMLSecurityException)cause;
                 }
+                if (cause instanceof IOException)
+                {
+                    throw (IOException)cause;
+                }
+                return (RuntimeException)cause;
             }
-            if (value instanceof CredentialType)
-            {
-                id = createRef("credentialID", ((CredentialType)value).getCredentialID());
-                result.put(id, handleCredentialForHashing((CredentialType)value, canon, serializer));
-                continue;
-            }
-            if (value instanceof VersionManifestType)
-            {
-                var mani = (VersionManifestType)value;
-                id = createRef("versionID", mani.getVersionID());
-            }
-            if (value instanceof EncapsulatedPKIDataType)
-            {
-                id = createRef("EncapsulatedPKIData", ((EncapsulatedPKIDataType)value).getId());
-                result.put(id, ((EncapsulatedPKIDataType)value).getValue());
-                continue;
-            }
+        }
+        return e;
+    }
 
-            if (id != null)
+    /**
+     * Returns the entry for given protected object, <code>null</code> for unsupported objects.
+     */
+    private Map.Entry<Reference, ProtectedData> prepare(Object value, String algorithm, ElementSerializer serializer)
+        throws JAXBException, XMLSecurityException, IOException
+    {
+        if (value instanceof DataObjectType)
+        {
+            var data = (DataObjectType)value;
+            var ref = createRef("dataObjectID", data.getDataObjectID());
+            if (!LXaipReader.isValidLXaipElement(data, data.getDataObjectID()) && data.getBinaryData() != null)
             {
-                result.put(id, serializer.serialize(value));
+                return new SimpleImmutableEntry<>(ref, ProtectedData.of(data.getBinaryData().getValue()));
             }
+            return entry(ref, Toolbox.readBinaryData(lXaipReader, data));
         }
-        return result;
+        if (value instanceof MetaDataObjectType)
+        {
+            var meta = (MetaDataObjectType)value;
+            var binaryData = Toolbox.readBinaryData(lXaipReader, meta);
+            return entry(createRef("metaDataID", meta.getMetaDataID()), binaryData == null ? serializer.serialize(meta) : binaryData);
+        }
+        if (value instanceof CredentialType)
+        {
+            var cred = (CredentialType)value;
+            return entry(createRef("credentialID", cred.getCredentialID()), handleCredentialForHashing(cred, algorithm, serializer));
+        }
+        if (value instanceof VersionManifestType)
+        {
+            var mani = (VersionManifestType)value;
+            return entry(createRef("versionID", mani.getVersionID()), serializer.serialize(mani));
+        }
+        if (value instanceof EncapsulatedPKIDataType)
+        {
+            var pkiData = (EncapsulatedPKIDataType)value;
+            return entry(createRef("EncapsulatedPKIData", pkiData.getId()), pkiData.getValue());
+        }
+        return null;
+    }
+
+    private static Map.Entry<Reference, ProtectedData> entry(Reference id, byte[] data)
+    {
+        return new SimpleImmutableEntry<>(id, data == null ? null : ProtectedData.of(data));
     }
 
-    private byte[] handleCredentialForHashing(CredentialType cred, Canonicalizer canon, XaipSerializer serializer)
-        throws JAXBException, CanonicalizationException, IOException, InvalidCanonicalizerException
+    private byte[] handleCredentialForHashing(CredentialType cred, String algorithm, ElementSerializer serializer)
+        throws JAXBException, XMLSecurityException, IOException
     {
-        var lXaipReader = new LXaipReader(Configurator.getInstance().getLXaipDataDirectory(profileName));
-        if (lXaipReader.isValidLXaipElement(cred, cred.getCredentialID()))
+        if (LXaipReader.isValidLXaipElement(cred, cred.getCredentialID()))
         {
             return lXaipReader.readBinaryData(cred, cred.getCredentialID());
         }
@@ -302,7 +351,7 @@ public class XaipReader
             Optional.ofNullable(cred.getCertificateValues()).map(CertificateValuesType::getEncapsulatedX509CertificateOrOtherCertificate);
         if (certs.isPresent())
         {
-            return handleCertificates(cred, certs.get(), canon);
+            return handleCertificates(cred, certs.get(), algorithm);
         }
 
         // CRL Values
@@ -344,8 +393,8 @@ public class XaipReader
         return serializer.serialize(cred);
     }
 
-    private byte[] handleCertificates(CredentialType cred, List<Object> certs, Canonicalizer canon)
-        throws JAXBException, CanonicalizationException, IOException
+    private byte[] handleCertificates(CredentialType cred, List<Object> certs, String algorithm)
+        throws JAXBException, XMLSecurityException, IOException
     {
         var numberOfBinaryCertificates = certs.stream().filter(EncapsulatedPKIDataType.class::isInstance).count();
         if (numberOfBinaryCertificates > 1)
@@ -368,7 +417,7 @@ public class XaipReader
 
         var element = XmlHelper.toElement(cred, CONTEXT_PATH, XmlHelper.FACTORY_XAIP::createCredential);
         namespaceMapper.setNSPrefixRecursively(element);
-        return XmlHelper.canonicalizeSubtree(canon, element);
+        return XmlHelper.canonicalizeSubtree(Canonicalizer.getInstance(algorithm), element);
     }
 
     private Reference createRef(String attributeName, String id)
@@ -381,22 +430,9 @@ public class XaipReader
         return ref;
     }
 
-    private void addPointers(List<PackageInfoUnitType> packageInfoUnit, List<JAXBElement<Object>> pointer)
-    {
-        for (var info : packageInfoUnit)
-        {
-            pointer.addAll(info.getProtectedObjectPointer());
-            addPointers(info.getPackageInfoUnit(), pointer);
-        }
-    }
-
     private VersionManifestType getVersionManifest(String versionId)
     {
-        return xaip.getPackageHeader()
-            .getVersionManifest()
-            .stream()
-            .filter(man -> man.getVersionID().equals(versionId))
-            .findAny()
+        return Optional.ofNullable(index.getVersionManifest(versionId))
             .orElseThrow(() -> new VersionNotFoundException(versionId, listVersions()));
     }
 
@@ -410,10 +446,8 @@ public class XaipReader
      */
     public String getVersion()
     {
-        return xaip.getPackageHeader()
-            .getVersionManifest()
+        return index.getVersionIds()
             .stream()
-            .map(VersionManifestType::getVersionID)
             .sorted((a, b) -> b.compareTo(a))
             .findFirst()
             .orElse(null);
@@ -424,6 +458,89 @@ public class XaipReader
      */
     public List<String> listVersions()
     {
-        return xaip.getPackageHeader().getVersionManifest().stream().map(VersionManifestType::getVersionID).collect(Collectors.toList());
+        return index.getVersionIds();
+    }
+
+    /**
+     * Carries any exception thrown while preparing a protected element out of the pool.
+     */
+    private static final class PreparationFailure extends RuntimeException
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        PreparationFailure(Exception cause)
+        {
+            super(cause);
+        }
+    }
+
+    /**
+     * Serializes a XAIP element while protected elements are prepared.
+     */
+    @FunctionalInterface
+    private interface ElementSerializer
+    {
+
+        byte[] serialize(Object value) throws JAXBException, XMLSecurityException, IOException;
+    }
+
+    /**
+     * Serializes on copies of a serializer so that each thread works on a DOM of its own. Each copy holds a complete DOM, so at most
+     * {@link #MAX_COPIES} copies are created no matter how many threads the pool has. A copy is used by one thread at a time and is handed
+     * on to the next task afterwards, further threads wait for a copy to become idle. Serializers which do not support copies are used by
+     * one thread at a time instead.
+     */
+    private static final class SerializerCopies
+    {
+
+        /**
+         * Canonicalization scales well up to a few threads, more copies would mainly cost heap.
+         */
+        private static final int MAX_COPIES = 4;
+
+        private final XaipSerializer source;
+
+        private final Queue<XaipSerializer> idle = new ConcurrentLinkedQueue<>();
+
+        private final Semaphore permits = new Semaphore(MAX_COPIES);
+
+        SerializerCopies(XaipSerializer source)
+        {
+            this.source = source;
+        }
+
+        byte[] serialize(Object value) throws JAXBException, XMLSecurityException, IOException
+        {
+            // each permit holder uses at most one copy and returns it before releasing the permit
+            permits.acquireUninterruptibly();
+            try
+            {
+                var copy = idle.poll();
+                if (copy == null)
+                {
+                    copy = source.copy();
+                }
+                if (copy == null)
+                {
+                    synchronized (source)
+                    {
+                        return source.serialize(value);
+                    }
+                }
+                try
+                {
+                    return copy.serialize(value);
+                }
+                finally
+                {
+                    idle.add(copy);
+                }
+            }
+            finally
+            {
+                permits.release();
+            }
+        }
     }
 }
@@ -39,4 +39,14 @@ public interface XaipSerializer
      */
     byte[] serializeForSignatureVerification(Object value)
         throws CanonicalizationException, InvalidCanonicalizerException, IOException, JAXBException;
+
+    /**
+     * Returns a serializer which can be used concurrently to this one and produces the same output.
+     *
+     * @return <code>null</code> if this serializer does not support copies and must be used by one thread at a time
+     */
+    default XaipSerializer copy()
+    {
+        return null;
+    }
 }
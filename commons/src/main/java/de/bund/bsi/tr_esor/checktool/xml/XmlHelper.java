@@ -28,8 +28,8 @@ import java.io.OutputStream;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import javax.xml.datatype.DatatypeConfigurationException;
@@ -113,7 +113,7 @@ public final class XmlHelper
      */
     public static final org.etsi.uri._02918.v1_2.ObjectFactory FACTORY_ASIC = new org.etsi.uri._02918.v1_2.ObjectFactory();
 
-    private static final Map<String, JAXBContext> CACHE = new HashMap<>();
+    private static final Map<String, JAXBContext> CACHE = new ConcurrentHashMap<>();
 
     private XmlHelper()
     {
@@ -146,13 +146,37 @@ public final class XmlHelper
             FACTORY_XAIP.getClass().getPackage().getName() + ":" + FACTORY_ASIC.getClass().getPackage().getName());
     }
 
-    private static JAXBContext getContext(String path) throws JAXBException
+    /**
+     * Creates the JAXB contexts for XAIP and verification report which are needed by each validation. Calling this method is optional,
+     * the contexts are created on first use otherwise.
+     *
+     * @throws JAXBException
+     */
+    public static void preloadContexts() throws JAXBException
+    {
+        getContext(FACTORY_XAIP.getClass().getPackage().getName() + ":" + FACTORY_ASIC.getClass().getPackage().getName());
+        getContext(FACTORY_OASIS_VR.getClass().getPackage().getName() + ":" + FACTORY_ESOR_VR.getClass().getPackage().getName());
+        getContext(FACTORY_OASIS_VR.getClass().getPackage().getName());
+    }
+
+    /**
+     * Returns a JAXB context for given context path. Creating a context is expensive, so each context is created once and shared
+     * afterwards, contexts are thread safe.
+     *
+     * @param path JAXB context path (i.e. the package name(s) of the JAXB classes)
+     * @throws JAXBException
+     */
+    public static JAXBContext getContext(String path) throws JAXBException
     {
         var result = CACHE.get(path);
         if (result == null)
         {
             result = JAXBContext.newInstance(path);
-            CACHE.put(path, result);
+            var existing = CACHE.putIfAbsent(path, result);
+            if (existing != null)
+            {
+                result = existing;
+            }
         }
         return result;
     }
@@ -21,8 +21,17 @@
  */
 package de.bund.bsi.tr_esor.checktool.data;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
 import org.junit.Test;
 
 import de.bund.bsi.tr_esor.checktool.TestUtils;
@@ -50,6 +59,39 @@ public class TestArchiveTimeStampSequence
         assertTrue("Encoded ATSS is found in EvidenceRecord", findInArray(erBytes, atss));
     }
 
+    /**
+     * Asserts that the encodings of ATS and time stamp token are taken from the parsed structure, created once and equal to the original
+     * data.
+     */
+    @Test
+    public void keepsEncodings() throws Exception
+    {
+        var erBytes = TestUtils.decodeTestResource("/bin/example.ers.b64");
+        var ats = new ASN1EvidenceRecordParser().parse(erBytes).getAtss().get(0).get(0);
+
+        assertTrue("encoded ATS is found in EvidenceRecord", findInArray(erBytes, ats.getEncoded()));
+        assertTrue("encoded TSP is found in EvidenceRecord", findInArray(erBytes, ats.getContentOfTimeStampField()));
+        assertSame(ats.getEncoded(), ats.getEncoded());
+        assertSame(ats.getContentOfTimeStampField(), ats.getContentOfTimeStampField());
+        assertArrayEquals(ats.getEncoded(), ats.toASN1Primitive().getEncoded(ASN1Encoding.DER));
+        assertNotNull(ats.getSignDateFromTimeStamp());
+        assertSame(ats.getTimeStampToken(), ats.getTimeStampToken());
+    }
+
+    /**
+     * Asserts that SEQUENCEs of encoded elements are encoded as bouncycastle does for short and long definite lengths.
+     */
+    @Test
+    public void encodesDerSequence() throws Exception
+    {
+        for (var size : new int[]{0, 100, 200, 70_000})
+        {
+            var octets = new DEROctetString(new byte[size]).getEncoded();
+            var expected = new DERSequence(new ASN1Encodable[]{new DEROctetString(new byte[size]), new DEROctetString(new byte[size])});
+            assertArrayEquals(expected.getEncoded(), ASN1Utils.encodeDerSequence(List.of(octets, octets)));
+        }
+    }
+
     @SuppressWarnings("PMD.AssignmentInOperand")
     private boolean findInArray(byte[] haystack, byte[] needle)
     {
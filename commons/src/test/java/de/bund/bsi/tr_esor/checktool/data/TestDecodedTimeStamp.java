@@ -0,0 +1,65 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.data;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.Test;
+
+import de.bund.bsi.tr_esor.checktool.TestUtils;
+import de.bund.bsi.tr_esor.checktool.parser.ASN1EvidenceRecordParser;
+
+
+/**
+ * Unit test for {@link DecodedTimeStamp}.
+ *
+ * @author TT
+ */
+public class TestDecodedTimeStamp
+{
+
+    /**
+     * Asserts that an archive time stamp decodes its time stamp token once and that the view provides the parts needed by the checks.
+     */
+    @Test
+    public void decodedOncePerArchiveTimeStamp() throws Exception
+    {
+        var er = new ASN1EvidenceRecordParser().parse(TestUtils.decodeTestResource("/bin/example.ers.b64"));
+        var ats = er.getAtss().get(0).get(0);
+
+        var decoded = ats.getDecodedTimeStamp();
+        assertThat(ats.getDecodedTimeStamp(), sameInstance(decoded));
+        assertThat(decoded.getToken(), sameInstance(ats.getTimeStampToken()));
+        assertThat(decoded.getTimeStampInfo().getGenTime(), is(ats.getSignDateFromTimeStamp()));
+        assertThat(decoded.getSignedData().getSignerInfos().size(), is(1));
+        assertThat(decoded.getSigners().size(), is(1));
+        assertThat(decoded.getSignerCertificate(), notNullValue());
+        assertThat(decoded.getX509SignerCertificate().getSerialNumber(), is(decoded.getSignerCertificate().getSerialNumber()));
+        assertThat(decoded.getX509Certificates(), not(empty()));
+        assertThat(decoded.getX509Certificates(), sameInstance(decoded.getX509Certificates()));
+    }
+}
@@ -4,11 +4,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.FileInputStream;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Random;
 
 import org.junit.Test;
 
+import de.bund.bsi.tr_esor.checktool.TestUtils;
 import de.bund.bsi.tr_esor.checktool.conf.Configurator;
+import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
 import de.bund.bsi.tr_esor.checktool.validation.signatures.DetachedSignatureValidationContext;
 import de.bund.bsi.tr_esor.checktool.validation.signatures.InlineSignatureValidationContext;
 
@@ -40,6 +44,27 @@ public class TestInputPreparator
         assertThat(validations).filteredOn(DetachedSignatureValidationContext.class::isInstance).isEmpty();
     }
 
+    @Test
+    public void readsLargeBinaryDataFromMappedFile() throws Exception
+    {
+        TestUtils.loadDefaultConfig();
+        var content = new byte[3 * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        var file = Files.createTempFile("large", ".bin");
+        try
+        {
+            Files.write(file, content);
+            var params = new FileParameterFinder(file, null, null);
+
+            assertThat(params.getBinaryDocuments()).hasSize(1);
+            assertThat(params.getBinaryDocuments().get(new Reference("command line parameter data")).getBytes()).isEqualTo(content);
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
     private ParameterFinder prepareParams(String pathToConfig, String pathToData, String profileName) throws Exception
     {
         var configurator = Configurator.getInstance();
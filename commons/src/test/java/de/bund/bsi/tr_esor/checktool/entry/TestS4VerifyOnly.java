@@ -39,6 +39,7 @@ import static org.junit.Assert.fail;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
 import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -341,6 +342,22 @@ public class TestS4VerifyOnly
         assertUnsupported("archiveUpdate", () -> s4.archiveUpdate(null));
     }
 
+    /**
+     * Asserts that an evidence record for some binary content can be validated if only the precomputed digest of the content is sent as
+     * DocumentHash.
+     */
+    @Test
+    public void verifyErForDocumentHash() throws Exception
+    {
+        var digest = MessageDigest.getInstance("SHA-256").digest(TestUtils.decodeTestResource("/bin/example.tif.b64"));
+        var report = callVerify(r -> {
+            addReturnVR(r, null, ReportDetailLevel.ALL_DETAILS);
+            setBase64SignatureObject("/bin/example.ers.b64", r);
+            addDocumentHash(digest, "http://www.w3.org/2001/04/xmlenc#sha256", r);
+        }, BsiResultMajor.WARNING.getUri());
+        checkReportFor(report, "SignatureObject/Base64Signature/Value", OasisDssResultMajor.INSUFFICIENT_INFORMATION.getUri(), true);
+    }
+
     /**
      * Just a macro for sending a request
      *
@@ -449,6 +466,20 @@ public class TestS4VerifyOnly
         document.setBase64Data(value);
     }
 
+    private void addDocumentHash(byte[] digest, String algorithm, VerifyRequest request)
+    {
+        if (request.getInputDocuments() == null)
+        {
+            request.setInputDocuments(XmlHelper.FACTORY_DSS.createInputDocuments());
+        }
+        var documentHash = XmlHelper.FACTORY_DSS.createDocumentHash();
+        var digestMethod = XmlHelper.FACTORY_DSIG.createDigestMethodType();
+        digestMethod.setAlgorithm(algorithm);
+        documentHash.setDigestMethod(digestMethod);
+        documentHash.setDigestValue(digest);
+        request.getInputDocuments().getDocumentOrTransformedDataOrDocumentHash().add(documentHash);
+    }
+
     private void setXmlSignatureObject(String path, VerifyRequest r)
     {
         var sigObject = XmlHelper.FACTORY_DSS.createSignatureObject();
@@ -24,6 +24,8 @@ package de.bund.bsi.tr_esor.checktool.hash;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
@@ -62,6 +64,36 @@ public class HashCreatorTest
         assertThat("SHA512 hash", sha512hash, is(expectedSha512hash));
     }
 
+    /**
+     * Asserts that streams, buffers and incremental hashing give the same result as hashing the whole array, both for the local hash
+     * creator and for the default adapters of a creator which only hashes arrays.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStreamingVariants() throws Exception
+    {
+        var testData = "Something to hash".getBytes(StandardCharsets.UTF_8);
+        var sha256 = "2.16.840.1.101.3.4.2.1";
+        var expected = Base64.getDecoder().decode("KiM2HJ3YhN10kF0+7S4MkwIgEZjzZSmgNDhLdIqpGes=");
+        HashCreator arrayOnly = (data, oid) -> new LocalHashCreator().calculateHash(data, oid);
+        for (var hashCreator : new HashCreator[]{new LocalHashCreator(), arrayOnly})
+        {
+            assertThat("stream", hashCreator.calculateHash(new ByteArrayInputStream(testData), sha256), is(expected));
+            var direct = ByteBuffer.allocateDirect(testData.length).put(testData).flip();
+            assertThat("direct buffer", hashCreator.calculateHash(direct, sha256), is(expected));
+            assertThat("buffer consumed", direct.hasRemaining(), is(false));
+            assertThat("read-only buffer", hashCreator.calculateHash(ByteBuffer.wrap(testData).asReadOnlyBuffer(), sha256), is(expected));
+
+            var hasher = hashCreator.start(sha256);
+            hasher.update(testData, 0, 5);
+            hasher.update(ByteBuffer.wrap(testData, 5, 7));
+            hasher.update(new byte[]{testData[12], testData[13]});
+            hasher.update(testData, 14, testData.length - 14);
+            assertThat("incremental", hasher.finish(), is(expected));
+        }
+    }
+
     /**
      * Tests that an unsupported OID results in a NoSuchAlgorithmException.
      *
@@ -76,4 +108,19 @@ public class HashCreatorTest
             .isThrownBy(() -> hashCreator.calculateHash(testData, "1.3.3.7.1"))
             .withMessage("1.3.3.7.1 MessageDigest not available");
     }
+
+    /**
+     * Asserts that supported algorithms can be looked up, both for the local hash creator and for the default of a creator which only
+     * hashes arrays.
+     */
+    @Test
+    public void testSupports()
+    {
+        HashCreator arrayOnly = (data, oid) -> new LocalHashCreator().calculateHash(data, oid);
+        for (var hashCreator : new HashCreator[]{new LocalHashCreator(), arrayOnly})
+        {
+            assertThat("SHA256", hashCreator.supports("2.16.840.1.101.3.4.2.1"), is(true));
+            assertThat("unknown OID", hashCreator.supports("1.3.3.7.1"), is(false));
+        }
+    }
 }
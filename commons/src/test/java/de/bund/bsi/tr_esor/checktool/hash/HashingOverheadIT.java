@@ -0,0 +1,107 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.hash;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.MessageDigest;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.bund.bsi.tr_esor.checktool.TestUtils;
+import de.bund.bsi.tr_esor.checktool.validation.ValidatorFactory;
+
+
+/**
+ * Micro benchmark for the overhead of hashing a single hash tree node, which is two concatenated SHA-256 values. Compares looking up the
+ * digest from the providers for each node, as the hash creator did before, with the shared hash creator cloning a digest prototype. The
+ * measured times are logged only, they are not asserted because wall-clock times vary too much on shared build machines.
+ *
+ * @author TT
+ */
+public class HashingOverheadIT
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(HashingOverheadIT.class);
+
+    private static final String SHA256 = "2.16.840.1.101.3.4.2.1";
+
+    private static final int WARMUP_ROUNDS = 200_000;
+
+    private static final int MEASURED_ROUNDS = 1_000_000;
+
+    private static final byte[] NODE = new byte[64];
+
+    /**
+     * Loads configuration.
+     */
+    @BeforeClass
+    public static void setUpStatic() throws Exception
+    {
+        TestUtils.loadDefaultConfig();
+    }
+
+    /**
+     * Measures nanoseconds per node for both ways.
+     */
+    @Test
+    public void compareNodeHashing() throws Exception
+    {
+        NodeHasher lookup = data -> MessageDigest.getInstance(SHA256).digest(data);
+        NodeHasher cached = data -> ValidatorFactory.getInstance().getHashCreator().calculateHash(data, SHA256);
+
+        measure(lookup, WARMUP_ROUNDS);
+        measure(cached, WARMUP_ROUNDS);
+        var lookupNanos = measure(lookup, MEASURED_ROUNDS);
+        var cachedNanos = measure(cached, MEASURED_ROUNDS);
+        LOG.info("hashing one node: {} ns with digest lookup, {} ns with cached hash creator and digest prototype",
+            lookupNanos,
+            cachedNanos);
+    }
+
+    private static double measure(NodeHasher hasher, int rounds) throws Exception
+    {
+        var sink = 0;
+        var start = System.nanoTime();
+        for (var i = 0; i < rounds; i++)
+        {
+            NODE[i % NODE.length]++;
+            sink += hasher.hash(NODE)[0];
+        }
+        var elapsed = System.nanoTime() - start;
+        assertThat(sink).isNotEqualTo(Integer.MIN_VALUE);
+        return (double)elapsed / rounds;
+    }
+
+    /**
+     * Hashes one node.
+     */
+    @FunctionalInterface
+    private interface NodeHasher
+    {
+
+        byte[] hash(byte[] data) throws Exception;
+    }
+}
@@ -24,28 +24,48 @@ package de.bund.bsi.tr_esor.checktool.parser;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Scanner;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.cms.CMSSignedData;
 import org.junit.Test;
+import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 import de.bund.bsi.tr_esor.checktool.TestUtils;
+import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+import de.bund.bsi.tr_esor.checktool.data.ArchiveTimeStampSequence;
 import de.bund.bsi.tr_esor.checktool.data.EvidenceRecord;
+import de.bund.bsi.tr_esor.checktool.data.UnsupportedData;
 import de.bund.bsi.tr_esor.checktool.data.XaipAndSerializer;
+import de.bund.bsi.tr_esor.checktool.entry.CmsSignedDataReader;
 import de.bund.bsi.tr_esor.checktool.entry.IsValidXML;
 import de.bund.bsi.tr_esor.checktool.validation.ParserFactory;
+import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
+import de.bund.bsi.tr_esor.checktool.xml.ComprehensiveXaipSerializer;
 import de.bund.bsi.tr_esor.checktool.xml.LXaipReader;
 import de.bund.bsi.tr_esor.xaip.EvidenceRecordType;
 
+import jakarta.activation.FileDataSource;
+
 
 /**
  * Unit tests for parsers.
@@ -91,6 +111,39 @@ public class TestParsers
         assertThat("count", count, is(6));
     }
 
+    /**
+     * Asserts that the factory selects the parser by the beginning of the input.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void factorySelectsParserByContent() throws Exception
+    {
+        TestUtils.loadDefaultConfig();
+        assertThat(parseResource("/xaip/xaip_ok_ers.xml"), instanceOf(XaipAndSerializer.class));
+        assertThat(parseResource("/xaip/esor11/xaip_ok.xml"), instanceOf(UnsupportedData.class));
+        assertThat(parseResource("/bin/example.er.xml"), instanceOf(EvidenceRecordType.class));
+        assertThat(parse(TestUtils.decodeTestResource("/bin/example.ers.b64")), instanceOf(EvidenceRecord.class));
+        assertThat(parse(TestUtils.decodeTestResource("/cms/encapsulated_with_er.p7s.b64")), instanceOf(CMSSignedData.class));
+        assertThat(parse("<ns:Comment xmlns:ns=\"urn:unknown\">no XAIP</ns:Comment>".getBytes(StandardCharsets.UTF_8)),
+            instanceOf(byte[].class));
+        assertThat(parse(new byte[0]), instanceOf(byte[].class));
+    }
+
+    /**
+     * Asserts that the root element is found behind prolog, comments and byte order mark but not in other content.
+     */
+    @Test
+    public void peekWindowFindsRootElement() throws IOException
+    {
+        assertThat(peek("\uFEFF<?xml version=\"1.0\"?>\n<!-- <a> -->\n<xaip:XAIP xmlns:xaip=\"urn:x\">").getRootElement(), is("XAIP"));
+        assertThat(peek("<evidenceRecord>").getRootElement(), is("evidenceRecord"));
+        assertThat(peek("<!-- unterminated").getRootElement(), nullValue());
+        assertThat(peek("<!-- unterminated").isXml(), is(true));
+        assertThat(peek("plain text <XAIP>").getRootElement(), nullValue());
+        assertThat(peek("plain text <XAIP>").isXml(), is(false));
+    }
+
     /**
      * Checks methods of XaipParser.
      *
@@ -140,6 +193,118 @@ public class TestParsers
         }
     }
 
+    /**
+     * Asserts that the XAIP parser serializes elements like a serializer working on a completely parsed DOM, although the binary data
+     * objects are left out of its DOM.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void xaipParserBuildsDomAndJaxbInOnePass() throws Exception
+    {
+        var parser = new XaipParser(null);
+        XaipAndSerializer parsed;
+        try (var ins = TestParsers.class.getResourceAsStream("/xaip/xaip_ok_ers.xml"))
+        {
+            parser.setInput(ins);
+            parsed = parser.parse();
+        }
+        var dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document document;
+        try (var ins = TestParsers.class.getResourceAsStream("/xaip/xaip_ok_ers.xml"))
+        {
+            document = dbf.newDocumentBuilder().parse(ins);
+        }
+        var fromCompleteDom = new ComprehensiveXaipSerializer(document, "http://www.w3.org/2001/10/xml-exc-c14n#", null);
+
+        var xaip = parsed.getXaip();
+        var credential = xaip.getCredentialsSection().getCredential().get(0);
+        var manifest = xaip.getPackageHeader().getVersionManifest().get(0);
+        var dataObject = xaip.getDataObjectsSection().getDataObject().get(0);
+        assertThat(parsed.getSerializer().serialize(credential), is(fromCompleteDom.serialize(credential)));
+        assertThat(parsed.getSerializer().serialize(manifest), is(fromCompleteDom.serialize(manifest)));
+        assertThat(new String(parsed.getSerializer().serialize(dataObject), StandardCharsets.UTF_8), is("my name is\n"));
+    }
+
+    /**
+     * Asserts that large binary data objects are decoded into temporary files while parsing and still serialize to their content.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void xaipParserSpillsLargeBinaryData() throws Exception
+    {
+        var parser = new XaipParser(null).withSpillThreshold(4);
+        try (var ins = TestParsers.class.getResourceAsStream("/xaip/xaip_ok_ers.xml"))
+        {
+            parser.setInput(ins);
+            var parsed = parser.parse();
+            var dataObject = parsed.getXaip().getDataObjectsSection().getDataObject().get(0);
+            assertThat(dataObject.getBinaryData().getValue().getDataSource(), instanceOf(FileDataSource.class));
+            assertThat(new String(parsed.getSerializer().serialize(dataObject), StandardCharsets.UTF_8), is("my name is\n"));
+        }
+    }
+
+    /**
+     * Asserts that streaming an evidence record chain by chain yields the same time stamp sequence as parsing the whole record at once.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void asn1ErParserStreamsChains() throws IOException
+    {
+        var erBytes = TestUtils.decodeTestResource("/bin/basis_ers.b64");
+        var complete = ASN1Sequence.getInstance(erBytes);
+        var expected = new ArchiveTimeStampSequence(complete.getObjectAt(complete.size() - 1));
+
+        var parser = new ASN1EvidenceRecordParser();
+        parser.setInput(new ByteArrayInputStream(erBytes));
+        var er = parser.parse();
+        assertThat(er.getAtss().size(), is(expected.size()));
+        assertThat(er.getAtss().getEncoded(), is(expected.getEncoded()));
+        assertThat(er.getCryptoInfo(), nullValue());
+    }
+
+    /**
+     * Asserts that evidence records exceeding the size limits are rejected.
+     */
+    @Test
+    public void asn1ErParserEnforcesLimits()
+    {
+        var erBytes = TestUtils.decodeTestResource("/bin/example.ers.b64");
+        var tooLong = new ASN1EvidenceRecordParser().withLimits(erBytes.length - 1, 100);
+        tooLong.setInput(new ByteArrayInputStream(erBytes));
+        assertThrows(IOException.class, tooLong::parse);
+        assertThrows(IOException.class, () -> tooLong.parse(erBytes));
+
+        var tooManyTimeStamps = new ASN1EvidenceRecordParser().withLimits(erBytes.length, 0);
+        assertThrows(IOException.class, () -> tooManyTimeStamps.parse(erBytes));
+    }
+
+    /**
+     * Asserts that evidence records with additional elements in the root sequence or with data after the root sequence are rejected.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void asn1ErParserRejectsExtraData() throws IOException
+    {
+        var erBytes = TestUtils.decodeTestResource("/bin/example.ers.b64");
+        var trailing = Arrays.copyOf(erBytes, erBytes.length + 2);
+        trailing[erBytes.length] = 0x30;
+        var parser = new ASN1EvidenceRecordParser();
+        assertThrows(IOException.class, () -> parser.parse(trailing));
+        parser.setInput(new ByteArrayInputStream(trailing));
+        assertThrows(IOException.class, parser::parse);
+
+        var elements = new ASN1EncodableVector();
+        ASN1Sequence.getInstance(erBytes).forEach(elements::add);
+        elements.add(DERNull.INSTANCE);
+        var extraElement = new DERSequence(elements).getEncoded();
+        assertThrows(IOException.class, () -> parser.parse(extraElement));
+    }
+
     /**
      * Assert that the {@link CmsSignatureParser} recognizes which files it can parse.
      *
@@ -161,6 +326,52 @@ public class TestParsers
         }
     }
 
+    /**
+     * Asserts that CMS signed data with large encapsulated content is parsed without holding the content in memory and that the content
+     * info protected by each embedded evidence record is encoded exactly as after a complete parse.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void cmsParserStreamsLargeContent() throws Exception
+    {
+        var bytes = TestUtils.decodeTestResource("/cms/encapsulated_with_er.p7s.b64");
+        var parser = new CmsSignatureParser().withSpillThreshold(4);
+        parser.setInput(new ByteArrayInputStream(bytes));
+        var streamed = parser.parse();
+        var complete = new CMSSignedData(bytes);
+        assertThat(streamed, instanceOf(StreamedCmsSignedData.class));
+        assertThat(streamed.getEncoded(), is(complete.getEncoded()));
+
+        var expected = new CmsSignedDataReader(complete, new Reference("cms"));
+        var sut = new CmsSignedDataReader(streamed, new Reference("cms"));
+        var ers = sut.getEmbeddedErs();
+        assertFalse("embedded ERs", ers.isEmpty());
+        assertThat(ers.keySet(), is(expected.getEmbeddedErs().keySet()));
+        for (var erRef : ers.keySet())
+        {
+            assertThat(sut.getContentInfoProtectedByEr(erRef).getBytes(), is(expected.getContentInfoProtectedByEr(erRef).getBytes()));
+        }
+    }
+
+    private static Object parseResource(String path) throws IOException
+    {
+        try (var ins = new BufferedInputStream(TestParsers.class.getResourceAsStream(path)))
+        {
+            return ParserFactory.parse(ins, ProfileNames.RFC4998);
+        }
+    }
+
+    private static Object parse(byte[] content) throws IOException
+    {
+        return ParserFactory.parse(new ByteArrayInputStream(content), ProfileNames.RFC4998);
+    }
+
+    private static PeekWindow peek(String content) throws IOException
+    {
+        return PeekWindow.read(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
     private InputStream getBinaryStream(String path)
     {
         return new ByteArrayInputStream(TestUtils.decodeTestResource(path));
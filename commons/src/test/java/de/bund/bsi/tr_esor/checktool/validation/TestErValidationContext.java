@@ -0,0 +1,168 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.validation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.bund.bsi.tr_esor.checktool.TestUtils;
+import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
+import de.bund.bsi.tr_esor.checktool.hash.LocalHashCreator;
+import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+
+
+/**
+ * Tests the digest calculation of the evidence record validation context.
+ *
+ * @author TT
+ */
+public class TestErValidationContext
+{
+
+    private static final String SHA1 = "1.3.14.3.2.26";
+
+    private static final String SHA256 = "2.16.840.1.101.3.4.2.1";
+
+    private static final String SHA384 = "2.16.840.1.101.3.4.2.2";
+
+    private static final String SHA512 = "2.16.840.1.101.3.4.2.3";
+
+    /**
+     * Loads configuration.
+     */
+    @BeforeClass
+    public static void setUpStatic() throws Exception
+    {
+        TestUtils.loadDefaultConfig();
+    }
+
+    /**
+     * Asserts that protected data is read and hashed only once per algorithm, no matter how many chains ask for the digests, and that
+     * adding more data invalidates the computed digests.
+     */
+    @Test
+    public void computesRequiredDigestsOncePerAlgorithm() throws Exception
+    {
+        var content = "protected content".getBytes(StandardCharsets.UTF_8);
+        var opened = new AtomicInteger();
+        var sut = new ErValidationContext(new Reference("er"), null, ProfileNames.RFC4998, null, false);
+        sut.addProtectedData(new Reference("data"), ProtectedData.of(new DataHandler(new CountingDataSource(content, opened))));
+
+        var first = sut.getRequiredDigests(SHA256);
+        assertThat(sut.getRequiredDigests(SHA256), sameInstance(first));
+        assertThat(opened.get(), is(1));
+        assertThat(first.get(new Reference("data")), is(new LocalHashCreator().calculateHash(content, SHA256)));
+
+        sut.getRequiredDigests(SHA1);
+        assertThat(opened.get(), is(2));
+
+        sut.addProtectedData(new Reference("other"), content);
+        assertThat(sut.getRequiredDigests(SHA256).size(), is(2));
+        assertThat(opened.get(), is(3));
+    }
+
+    /**
+     * Asserts that digests for several algorithms are computed with a single read of the protected data, even if an unsupported algorithm
+     * is among them, and that the unsupported algorithm is still reported when its digests are requested.
+     */
+    @Test
+    public void preparesDigestsOfSeveralAlgorithmsInOneRead() throws Exception
+    {
+        var content = "protected content".getBytes(StandardCharsets.UTF_8);
+        var opened = new AtomicInteger();
+        var sut = new ErValidationContext(new Reference("er"), null, ProfileNames.RFC4998, null, false);
+        sut.addProtectedData(new Reference("data"), ProtectedData.of(new DataHandler(new CountingDataSource(content, opened))));
+
+        sut.prepareRequiredDigests(Arrays.asList(SHA256, null, SHA1, SHA256));
+        assertThat(opened.get(), is(1));
+        assertThat(sut.getRequiredDigests(SHA1).get(new Reference("data")), is(new LocalHashCreator().calculateHash(content, SHA1)));
+        assertThat(sut.getRequiredDigests(SHA256).get(new Reference("data")), is(new LocalHashCreator().calculateHash(content, SHA256)));
+        assertThat(opened.get(), is(1));
+
+        sut.prepareRequiredDigests(List.of(SHA512, "1.3.3.7.1", SHA384));
+        assertThat(opened.get(), is(2));
+        assertThat(sut.getRequiredDigests(SHA512).get(new Reference("data")), is(new LocalHashCreator().calculateHash(content, SHA512)));
+        assertThat(sut.getRequiredDigests(SHA384).get(new Reference("data")), is(new LocalHashCreator().calculateHash(content, SHA384)));
+        assertThat(opened.get(), is(2));
+        assertThrows(NoSuchAlgorithmException.class, () -> sut.getRequiredDigests("1.3.3.7.1"));
+    }
+
+    /**
+     * Data source counting how often its content is read.
+     */
+    private static final class CountingDataSource implements DataSource
+    {
+
+        private final byte[] content;
+
+        private final AtomicInteger opened;
+
+        CountingDataSource(byte[] content, AtomicInteger opened)
+        {
+            this.content = content;
+            this.opened = opened;
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public OutputStream getOutputStream()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getContentType()
+        {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public String getName()
+        {
+            return "counting";
+        }
+    }
+}
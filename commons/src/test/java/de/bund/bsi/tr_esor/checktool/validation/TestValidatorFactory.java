@@ -24,6 +24,7 @@ package de.bund.bsi.tr_esor.checktool.validation;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -92,6 +93,7 @@ public class TestValidatorFactory
     public void canGetHashCreator() throws Exception
     {
         assertThat("HashCreator instance from test config", systemUnderTest.getHashCreator(), instanceOf(OtherHashCreator.class));
+        assertThat("cached instance", systemUnderTest.getHashCreator(), sameInstance(systemUnderTest.getHashCreator()));
         TestUtils.loadDefaultConfig();
         assertThat("HashCreator instance from empty config", systemUnderTest.getHashCreator(), instanceOf(LocalHashCreator.class));
     }
@@ -22,19 +22,30 @@
 package de.bund.bsi.tr_esor.checktool.validation.default_impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.bouncycastle.cms.CMSSignedData;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import de.bund.bsi.tr_esor.checktool.TestUtils;
 import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
 import de.bund.bsi.tr_esor.checktool.parser.ASN1EvidenceRecordParser;
 import de.bund.bsi.tr_esor.checktool.validation.ErValidationContext;
 import de.bund.bsi.tr_esor.checktool.validation.ValidationResultMajor;
+import de.bund.bsi.tr_esor.checktool.validation.report.ATSSequenceReport;
 import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
 import de.bund.bsi.tr_esor.checktool.validation.report.ReportPart;
 
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+
 
 /**
  * Tests the validation capabilities for ArchiveTimeStampSequences.
@@ -78,4 +89,95 @@ public class TestArchiveTimeStampSequenceValidator
         }
     }
 
+    /**
+     * Asserts that a time stamp whose TSTInfo cannot be decoded is reported as invalid instead of aborting the validation.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUndecodableTstInfo() throws Exception
+    {
+        var erBytes = TestUtils.decodeTestResource("/bin/example.ers.b64");
+        var ats = new ASN1EvidenceRecordParser().parse(erBytes).getAtss().get(0).get(0);
+        var tstInfo = (byte[])new CMSSignedData(ats.getContentOfTimeStampField()).getSignedContent().getContent();
+        // TSTInfo starts with version 1 followed by the policy OID, turn that OID into an octet string
+        var policyTag = indexOf(erBytes, tstInfo) + indexOf(tstInfo, new byte[]{0x02, 0x01, 0x01, 0x06}) + 3;
+        erBytes[policyTag] = 0x04;
+
+        var er = new ASN1EvidenceRecordParser().parse(erBytes);
+        var ctx = new ErValidationContext(new Reference("dummy"), er, ProfileNames.RFC4998, null, false);
+        ctx.setDeclaredDigestOIDs(er.getDigestAlgorithms());
+        var atssv = new ArchiveTimeStampSequenceValidator();
+        atssv.setContext(ctx);
+        ATSSequenceReport report = atssv.validate(new Reference("dummy"), er.getAtss());
+        assertThat(report.getOverallResult().getResultMajor(), is(ValidationResultMajor.INVALID.toString()));
+        assertThat(report.getSummarizedMessage(), containsString("not valid (ATS-3)"));
+    }
+
+    /**
+     * Asserts that protected data which cannot be read is reported as internal error instead of aborting the validation.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUnreadableProtectedData() throws Exception
+    {
+        var er = new ASN1EvidenceRecordParser().parse(TestUtils.decodeTestResource("/bin/example.ers.b64"));
+        var ctx = new ErValidationContext(new Reference("dummy"), er, ProfileNames.RFC4998, null, false);
+        ctx.setDeclaredDigestOIDs(er.getDigestAlgorithms());
+        ctx.addProtectedData(new Reference("data"), ProtectedData.of(new DataHandler(new UnreadableDataSource())));
+        var atssv = new ArchiveTimeStampSequenceValidator();
+        atssv.setContext(ctx);
+        ATSSequenceReport report = atssv.validate(new Reference("dummy"), er.getAtss());
+        assertThat(report.getOverallResult().getResultMajor(), is(ValidationResultMajor.INDETERMINED.toString()));
+        assertThat(report.getSummarizedMessage(), containsString("cannot read protected data: disk failure"));
+    }
+
+    private static int indexOf(byte[] data, byte[] part)
+    {
+        for (var i = 0; i <= data.length - part.length; i++)
+        {
+            var found = true;
+            for (var j = 0; j < part.length && found; j++)
+            {
+                found = data[i + j] == part[j];
+            }
+            if (found)
+            {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("part not found");
+    }
+
+    /**
+     * Data source failing on each read.
+     */
+    private static final class UnreadableDataSource implements DataSource
+    {
+
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            throw new IOException("disk failure");
+        }
+
+        @Override
+        public OutputStream getOutputStream()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getContentType()
+        {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public String getName()
+        {
+            return "unreadable";
+        }
+    }
 }
@@ -29,7 +29,10 @@ import static org.junit.Assert.assertTrue;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.List;
 
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -180,6 +183,31 @@ public class TestEvidenceRecordValidator
             containsString("atss/0/0/hashTree: hash tree root hash does not match timestamp"));
     }
 
+    /**
+     * Asserts that an invalid crypto info does not prevent the check of the encryption info.
+     */
+    @Test
+    public void testInvalidCryptoAndEncryptionInfo() throws Exception
+    {
+        var parsed = new ASN1EvidenceRecordParser().parse(TestUtils.decodeTestResource("/bin/example.ers.b64"));
+        var notTagged = new byte[]{0x05, 0x00};
+        var er = EvidenceRecord.withEncodedInfos(parsed.getVersion(),
+            List.of(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256)),
+            parsed.getAtss(),
+            notTagged,
+            notTagged);
+        var validator = createValidator();
+        validator.setContext(new ErValidationContext(new Reference("dummy"),
+            er,
+            ProfileNames.RFC4998,
+            TestUtils.createReturnVerificationReport(),
+            false));
+        var report = validator.validate(new Reference("dummy"), er);
+        assertThat(report.getOverallResult().getResultMajor(), is(ValidationResultMajor.INVALID.toString()));
+        assertThat(report.getSummarizedMessage(), containsString("invalid crypto info"));
+        assertThat(report.getSummarizedMessage(), containsString("invalid encryption info"));
+    }
+
     /**
      * Asserts that a broken configuration or implementation (delegation not possible) leads to correct report. We simulate that by
      * executing a faked callValidator() line.
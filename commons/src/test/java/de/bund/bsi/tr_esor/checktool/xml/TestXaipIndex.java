@@ -0,0 +1,106 @@
+/*-
+ * Copyright (c) 2017
+ * Federal Office for Information Security (BSI),
+ * Godesberger Allee 185-189,
+ * 53175 Bonn, Germany,
+ * phone: +49 228 99 9582-0,
+ * fax: +49 228 99 9582-5400,
+ * e-mail: bsi@bsi.bund.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.bund.bsi.tr_esor.checktool.xml;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import de.bund.bsi.tr_esor.checktool.Toolbox;
+import de.bund.bsi.tr_esor.checktool.xml.XaipIndex.CredentialKind;
+import de.bund.bsi.tr_esor.xaip.CredentialType;
+import de.bund.bsi.tr_esor.xaip.XAIPType;
+
+
+/**
+ * Tests the structural index of XAIPs.
+ *
+ * @author TT
+ */
+public class TestXaipIndex
+{
+
+    /**
+     * Asserts that objects are found by ID and protected objects are listed per version.
+     */
+    @Test
+    public void indexesObjectsAndVersions() throws Exception
+    {
+        var xaip = xaip("/xaip/xaip_ok_sig_ers_2version.xml");
+        var sut = XaipIndex.of(xaip);
+
+        assertThat(sut.getVersionIds(), contains("V001", "V002"));
+        assertThat(sut.getVersionManifest("V002"), sameInstance(xaip.getPackageHeader().getVersionManifest().get(1)));
+        assertThat(sut.getVersionManifest("V003"), nullValue());
+        assertThat(sut.getProtectedObjects("V002").stream().map(Toolbox::getId).collect(Collectors.toList()),
+            contains("Impfausweis_V001",
+                "HundesteuerAnmeldung_V001",
+                "fileSize_V001",
+                "Hundename_V002",
+                "V002",
+                "Impfausweissignature_V001",
+                "Impfausweissignature_report_V001"));
+        assertThat(sut.getProtectedObjects("V003"), empty());
+        assertThat(sut.getObject("Impfausweis_V001"), sameInstance(xaip.getDataObjectsSection().getDataObject().get(0)));
+        assertThat(sut.getObject("unknown"), nullValue());
+    }
+
+    /**
+     * Asserts that credentials are classified and can be found by their related objects.
+     */
+    @Test
+    public void indexesCredentials() throws Exception
+    {
+        var sut = XaipIndex.of(xaip("/xaip/xaip_ok_sig_ers_2version.xml"));
+
+        assertThat(ids(sut.getCredentials(CredentialKind.SIGNATURE)), contains("Impfausweissignature_V001"));
+        assertThat(ids(sut.getCredentials(CredentialKind.EVIDENCE_RECORD)),
+            contains("ER_2.16.840.1.101.3.4.2.1_V001", "ER_2.16.840.1.101.3.4.2.1_V002"));
+        assertThat(ids(sut.getCredentials(CredentialKind.OTHER, CredentialKind.SIGNATURE)),
+            contains("Impfausweissignature_V001", "Impfausweissignature_report_V001"));
+
+        var signature = (CredentialType)sut.getObject("Impfausweissignature_V001");
+        assertThat(sut.getKind(signature), is(CredentialKind.SIGNATURE));
+        assertThat(ids(sut.getCredentialsRelatedTo(sut.getObject("Impfausweis_V001"))), contains("Impfausweissignature_V001"));
+        assertThat(ids(sut.getCredentialsRelatedTo(signature)), contains("Impfausweissignature_report_V001"));
+        assertThat(sut.getCredentialsRelatedTo(sut.getObject("HundesteuerAnmeldung_V001")), hasSize(0));
+    }
+
+    private static List<String> ids(List<CredentialType> credentials)
+    {
+        return credentials.stream().map(CredentialType::getCredentialID).collect(Collectors.toList());
+    }
+
+    private static XAIPType xaip(String file) throws Exception
+    {
+        return XmlHelper.parseXaip(TestXaipIndex.class.getResourceAsStream(file));
+    }
+}
@@ -22,6 +22,7 @@
 package de.bund.bsi.tr_esor.checktool.xml;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
@@ -29,10 +30,14 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThrows;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+
 import org.hamcrest.Matcher;
 import org.junit.Before;
 import org.junit.Test;
@@ -40,6 +45,7 @@ import org.junit.Test;
 import de.bund.bsi.tr_esor.checktool.TestUtils;
 import de.bund.bsi.tr_esor.checktool.conf.Configurator;
 import de.bund.bsi.tr_esor.checktool.conf.ProfileNames;
+import de.bund.bsi.tr_esor.checktool.data.ProtectedData;
 import de.bund.bsi.tr_esor.checktool.parser.XaipParser;
 import de.bund.bsi.tr_esor.checktool.validation.VersionNotFoundException;
 import de.bund.bsi.tr_esor.checktool.validation.report.Reference;
@@ -167,9 +173,73 @@ public class TestXaipReader
             startsWith("Dies ist ein Testdokument mit qualifizierter Signatur"));
     }
 
-    private void checkElement(Map<Reference, byte[]> protectedElements, String field, Matcher<String> expected)
+    /**
+     * Asserts that preparing the elements in parallel gives the complete and same result each time.
+     */
+    @Test
+    public void preparesProtectedElementsDeterministically() throws Exception
+    {
+        var parser = new XaipParser(null);
+        try (var input = getClass().getResourceAsStream("/xaip/xaip_ok_sig_ers_2version.xml"))
+        {
+            assertThat(input, notNullValue());
+            parser.setInput(input);
+            sut = new XaipReader(parser.parse().getXaip(), REFERENCE, PROFILE_NAME);
+        }
+        var serializer = parser.createSerializer();
+
+        var first = sut.prepareProtectedElements("V002", serializer);
+        assertThat(first.keySet().stream().map(Reference::toString).sorted().collect(Collectors.toList()),
+            contains(REFERENCE.newChild("credentialID:Impfausweissignature_V001").toString(),
+                REFERENCE.newChild("credentialID:Impfausweissignature_report_V001").toString(),
+                REFERENCE.newChild("dataObjectID:HundesteuerAnmeldung_V001").toString(),
+                REFERENCE.newChild("dataObjectID:Impfausweis_V001").toString(),
+                REFERENCE.newChild("metaDataID:Hundename_V002").toString(),
+                REFERENCE.newChild("metaDataID:fileSize_V001").toString(),
+                REFERENCE.newChild("versionID:V002").toString()));
+        for (var i = 0; i < 3; i++)
+        {
+            var again = sut.prepareProtectedElements("V002", serializer);
+            assertThat(again.keySet(), is(first.keySet()));
+            for (var entry : first.entrySet())
+            {
+                assertThat(entry.getKey().toString(), again.get(entry.getKey()).getBytes(), is(entry.getValue().getBytes()));
+            }
+        }
+        checkElement(first, "credentialID:Impfausweissignature_report_V001", startsWith("<xaip:credential"));
+    }
+
+    /**
+     * Asserts that a copy of a serializer produces the same output as the original and that namespace prefixes rewritten by the copy are
+     * rewritten in the DOM of the original as well.
+     */
+    @Test
+    public void copiedSerializerRewritesNamespacesOfOriginal() throws Exception
+    {
+        String content;
+        try (var input = getClass().getResourceAsStream("/xaip/xaip_ok_ers.xml"))
+        {
+            content = new String(input.readAllBytes(), StandardCharsets.UTF_8).replace("xmlns:xaip=", "xmlns:x=").replace("xaip:", "x:");
+        }
+        var bytes = content.getBytes(StandardCharsets.UTF_8);
+        var dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        var document = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(bytes));
+        var manifest = XmlHelper.parseXaip(new ByteArrayInputStream(bytes)).getPackageHeader().getVersionManifest().get(0);
+        var original = new ComprehensiveXaipSerializer(document, "http://www.w3.org/2001/10/xml-exc-c14n#", null, true);
+
+        var fromCopy = original.copy().serialize(manifest);
+        assertThat(new String(fromCopy, StandardCharsets.UTF_8), startsWith("<xaip:versionManifest"));
+        original.copy();
+        assertThat(document.getElementsByTagNameNS("http://www.bsi.bund.de/tr-esor/xaip", "versionManifest").item(0).getPrefix(),
+            is("xaip"));
+        assertThat(original.serialize(manifest), is(fromCopy));
+    }
+
+    private void checkElement(Map<Reference, ProtectedData> protectedElements, String field, Matcher<String> expected) throws IOException
     {
-        assertThat("Content of " + field, new String(protectedElements.get(REFERENCE.newChild(field)), StandardCharsets.UTF_8), expected);
+        var content = protectedElements.get(REFERENCE.newChild(field)).getBytes();
+        assertThat("Content of " + field, new String(content, StandardCharsets.UTF_8), expected);
     }
 
     private static XAIPType xaip(String file) throws Exception